@@ -0,0 +1,128 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.BoardService;
+
+/**
+ * Load test of the servlet stack: many games at once, one JSON move per
+ * operation, with Tomcat on its platform thread pool or on virtual threads
+ * (VIRTUAL_THREADS, only effective on Java 21+). Run it with more client
+ * threads than server.tomcat.threads.max to see the pool limit, e.g.
+ * -Djmh.args="ConcurrentGamesBenchmark -t 400 -prof gc".
+ *
+ * Besides the throughput and the allocation rate (-prof gc) it prints the
+ * peak thread count and the heap in use at the end of each trial.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(256)
+@Fork(1)
+public class ConcurrentGamesBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean virtualThreads;
+
+	private ConfigurableApplicationContext context;
+	private BoardService boardService;
+	private String baseUrl;
+
+	/**
+	 * One game per client thread
+	 */
+	@State(Scope.Thread)
+	public static class Game {
+		private final SplittableRandom random = new SplittableRandom();
+		private final byte[] buffer = new byte[8192];
+		private Board board;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		System.setProperty("http.maxConnections", "1024");
+		context = SpringApplication.run(MancalaApplication.class, "--server.port=0", "--logging.level.root=WARN",
+				"--VIRTUAL_THREADS=" + virtualThreads, "--spring.datasource.hikari.maximum-pool-size=32");
+		boardService = context.getBean(BoardService.class);
+		baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+		ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.gc();
+		System.out.printf("%nvirtualThreads=%s peak threads=%d heap used=%dMB%n", virtualThreads,
+				ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+		context.close();
+	}
+
+	@Benchmark
+	public int move(final Game game) throws IOException {
+		if (game.board == null || game.board.getNextPlayer() == PlayerType.FINISHED) {
+			game.board = boardService.retriveNewBoard();
+		}
+		final PlayerType player = game.board.getNextPlayer();
+		final Integer[] half = player == PlayerType.TOP ? game.board.getTopPlayerBoard()
+				: game.board.getBottomPlayerBoard();
+		int house = game.random.nextInt(6);
+		while (half[house] == 0) {
+			house = (house + 1) % 6;
+		}
+
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+				baseUrl + "/api/boards/" + game.board.getId() + "/moves").openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(("{\"player\":\"" + player + "\",\"house\":" + (house + 1) + "}")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		int read = 0;
+		try (InputStream in = connection.getInputStream()) {
+			for (int n; (n = in.read(game.buffer)) > 0;) {
+				read += n;
+			}
+		}
+		if (connection.getResponseCode() != 200) {
+			throw new IllegalStateException("HTTP " + connection.getResponseCode());
+		}
+		game.board = boardService.retrieveBoard(game.board.getId());
+		return read;
+	}
+}
@@ -0,0 +1,66 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.service.BoardServiceImpl;
+
+/**
+ * Whole random games, from retriveNewBoard to FINISHED, through the service
+ * with a stubbed repository.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private BoardRepository repository;
+	private BoardServiceImpl service;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		repository = StubBoards.repository();
+		service = StubBoards.service(repository);
+	}
+
+	@Benchmark
+	public int randomGame() {
+		Board board = service.retriveNewBoard();
+		int moves = 0;
+		while (board.getNextPlayer() != PlayerType.FINISHED) {
+			final Integer[] half = board.getNextPlayer() == PlayerType.TOP ? board.getTopPlayerBoard()
+					: board.getBottomPlayerBoard();
+			int house = random.nextInt(6);
+			while (half[house] == 0) {
+				house = (house + 1) % 6;
+			}
+			board = service.applyGame(board.getId(), board.getNextPlayer(), house + 1);
+			moves++;
+		}
+		repository.delete(board);
+		return moves;
+	}
+}
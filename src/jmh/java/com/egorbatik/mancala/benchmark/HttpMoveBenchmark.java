@@ -0,0 +1,94 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.BoardService;
+
+/**
+ * The browser path of a move: GET /apply and the redirected GET /board, over
+ * HTTP against the whole application (Spring MVC, Thymeleaf, cache and H2).
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpMoveBenchmark {
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private ConfigurableApplicationContext context;
+	private BoardService boardService;
+	private String baseUrl;
+	private Board board;
+	private final byte[] buffer = new byte[8192];
+
+	@Setup(Level.Trial)
+	public void setup() {
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		context = SpringApplication.run(MancalaApplication.class, "--server.port=0", "--logging.level.root=WARN");
+		boardService = context.getBean(BoardService.class);
+		baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+		board = boardService.retriveNewBoard();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public int applyAndRender() throws IOException {
+		if (board.getNextPlayer() == PlayerType.FINISHED) {
+			board = boardService.retriveNewBoard();
+		}
+		final PlayerType player = board.getNextPlayer();
+		final Integer[] half = player == PlayerType.TOP ? board.getTopPlayerBoard() : board.getBottomPlayerBoard();
+		int house = random.nextInt(6);
+		while (half[house] == 0) {
+			house = (house + 1) % 6;
+		}
+
+		// Follows the redirect to /board
+		final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/apply?board_id=" + board.getId()
+				+ "&player=" + player.name().toLowerCase() + "&house=" + (house + 1)).openConnection();
+		int read = 0;
+		try (InputStream in = connection.getInputStream()) {
+			for (int n; (n = in.read(buffer)) > 0;) {
+				read += n;
+			}
+		}
+		if (connection.getResponseCode() != 200) {
+			throw new IllegalStateException("HTTP " + connection.getResponseCode());
+		}
+		board = boardService.retrieveBoard(board.getId());
+		return read;
+	}
+}
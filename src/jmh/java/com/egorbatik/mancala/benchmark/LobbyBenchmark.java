@@ -0,0 +1,61 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.egorbatik.mancala.service.LobbyTicket;
+import com.egorbatik.mancala.service.MatchmakingService;
+
+/**
+ * Players joining the lobby from several threads, every join is an enqueue
+ * and every second one a pairing (two dequeues) with a stubbed board. With
+ * "bands" players spread over that many rating bands.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LobbyBenchmark {
+
+	@Param({ "1", "8" })
+	public int bands;
+
+	private MatchmakingService lobby;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		lobby = StubBoards.lobby(0);
+	}
+
+	// Forgets the tickets of the last iteration
+	@TearDown(Level.Iteration)
+	public void sweep() {
+		lobby.sweep();
+	}
+
+	@Benchmark
+	public LobbyTicket join() {
+		return lobby.join(bands == 1 ? null : ThreadLocalRandom.current().nextInt(bands) * 200);
+	}
+}
@@ -0,0 +1,105 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.service.BoardServiceImpl;
+
+/**
+ * One random legal move per operation, on the bare engine and through
+ * BoardServiceImpl.applyGame with a stubbed repository. A finished game is
+ * reset in place. Runs on the standard and the large geometries.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	@Param({ "6", "12" })
+	private int houses;
+
+	@Param({ "6", "48" })
+	private int stones;
+
+	private MancalaEngine engine;
+	private int[] pits;
+	private int side;
+
+	private BoardRepository repository;
+	private BoardServiceImpl service;
+	private Board board;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		engine = MancalaEngine.forHouses(houses);
+		pits = new int[engine.pits()];
+		engine.fill(pits, stones);
+		side = MancalaEngine.TOP;
+		repository = StubBoards.repository();
+		service = StubBoards.service(repository, houses, stones);
+		board = service.retriveNewBoard();
+	}
+
+	private int randomHouse(final int[] pits, final int side) {
+		final int offset = engine.offset(side);
+		int house = random.nextInt(houses);
+		while (pits[offset + house] == 0) {
+			house = (house + 1) % houses;
+		}
+		return house;
+	}
+
+	private int randomHouse(final Board board) {
+		final Integer[] half = board.getNextPlayer() == PlayerType.TOP ? board.getTopPlayerBoard()
+				: board.getBottomPlayerBoard();
+		int house = random.nextInt(houses);
+		while (half[house] == 0) {
+			house = (house + 1) % houses;
+		}
+		return house;
+	}
+
+	@Benchmark
+	public int engineMove() {
+		if (side == MancalaEngine.FINISHED) {
+			engine.fill(pits, stones);
+			side = MancalaEngine.TOP;
+		}
+		side = MancalaEngine.nextSide(engine.move(pits, side, randomHouse(pits, side)));
+		return side;
+	}
+
+	@Benchmark
+	public Board applyGame() {
+		if (board.getNextPlayer() == PlayerType.FINISHED) {
+			repository.delete(board);
+			board = service.retriveNewBoard();
+		}
+		return service.applyGame(board.getId(), board.getNextPlayer(), randomHouse(board) + 1);
+	}
+}
@@ -0,0 +1,114 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+
+/**
+ * The board storage alone, under the write-behind cache: JPA over H2 against
+ * the memory-mapped file of the "mapped" profile. A save is the snapshot of a
+ * board after a move, a read is a cache miss.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+
+	private static final int BOARDS = 10000;
+
+	@Param({ "jpa", "mapped" })
+	public String store;
+
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private Path dir;
+	private ConfigurableApplicationContext context;
+	private BoardRepository repository;
+	private Board[] boards;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		dir = Files.createTempDirectory("mancala-storage");
+		context = new SpringApplicationBuilder(MancalaApplication.class).web(WebApplicationType.NONE)
+				.profiles("mapped".equals(store) ? "mapped" : "default")
+				.run("--logging.level.root=WARN", "--BOARD_STORE_FILE=" + dir.resolve("mancala.boards"));
+		repository = context.getBean("boardRepository", BoardRepository.class);
+		boards = new Board[BOARDS];
+		for (int i = 0; i < BOARDS; i++) {
+			final Board board = new Board();
+			final Integer[] top = new Integer[7];
+			final Integer[] bottom = new Integer[7];
+			Arrays.fill(top, 6);
+			Arrays.fill(bottom, 6);
+			top[6] = 0;
+			bottom[6] = 0;
+			board.setTopPlayerBoard(top);
+			board.setBottomPlayerBoard(bottom);
+			board.setNextPlayer(PlayerType.TOP);
+			board.setMoves(0);
+			board.setLastUpdate(System.currentTimeMillis());
+			boards[i] = repository.save(board);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		context.close();
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Benchmark
+	public Board save() {
+		final int index = random.nextInt(BOARDS);
+		final Board board = boards[index];
+		final int pit = random.nextInt(6);
+		board.getTopPlayerBoard()[pit] = board.getTopPlayerBoard()[pit] + 1;
+		board.setMoves(board.getMoves() + 1);
+		board.setLastUpdate(System.currentTimeMillis());
+		// JPA hands back a copy with the next version
+		return boards[index] = repository.save(board);
+	}
+
+	@Benchmark
+	public Board findById() {
+		return repository.findById(boards[random.nextInt(BOARDS)].getId()).get();
+	}
+}
@@ -0,0 +1,127 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.repository.MoveLogRepository;
+import com.egorbatik.mancala.service.BoardLocks;
+import com.egorbatik.mancala.service.BoardService;
+import com.egorbatik.mancala.service.BoardServiceImpl;
+import com.egorbatik.mancala.service.GameMetrics;
+import com.egorbatik.mancala.service.MatchmakingService;
+import com.egorbatik.mancala.service.MoveJournal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * BoardServiceImpl wired by hand over an in-memory BoardRepository stub, so the
+ * benchmarks measure the service and not the database.
+ *
+ * @author egorbatik
+ *
+ */
+final class StubBoards {
+
+	private StubBoards() {
+	}
+
+	static BoardRepository repository() {
+		final Map<Long, Board> boards = new ConcurrentHashMap<>();
+		final AtomicLong ids = new AtomicLong();
+		return (BoardRepository) Proxy.newProxyInstance(BoardRepository.class.getClassLoader(),
+				new Class<?>[] { BoardRepository.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "save":
+						final Board board = (Board) args[0];
+						if (board.getId() == null) {
+							board.setId(ids.incrementAndGet());
+						}
+						boards.put(board.getId(), board);
+						return board;
+					case "findById":
+						return Optional.ofNullable(boards.get(args[0]));
+					case "delete":
+						boards.remove(((Board) args[0]).getId());
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	// Appends are batched and dropped
+	static MoveJournal journal() {
+		final MoveLogRepository repository = (MoveLogRepository) Proxy.newProxyInstance(
+				MoveLogRepository.class.getClassLoader(), new Class<?>[] { MoveLogRepository.class },
+				(proxy, method, args) -> {
+					if ("saveAll".equals(method.getName())) {
+						return args[0];
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		final MoveJournal journal = new MoveJournal();
+		inject(journal, "moveLogRepository", repository);
+		inject(journal, "MOVE_LOG_MAX_PENDING", 1000);
+		return journal;
+	}
+
+	static BoardServiceImpl service(final BoardRepository repository) {
+		return service(repository, 6, 6);
+	}
+
+	static BoardServiceImpl service(final BoardRepository repository, final int houses, final int stones) {
+		final BoardServiceImpl service = new BoardServiceImpl();
+		inject(service, "boardRepository", repository);
+		inject(service, "boardLocks", new BoardLocks(1024));
+		inject(service, "eventPublisher", (ApplicationEventPublisher) event -> {
+		});
+		inject(service, "moveJournal", journal());
+		inject(service, "gameMetrics", new GameMetrics(new SimpleMeterRegistry()));
+		inject(service, "BOARD_SNAPSHOT_MOVES", 16);
+		inject(service, "STONES_PER_HOUSE", stones);
+		inject(service, "HOUSES", houses);
+		return service;
+	}
+
+	// Boards are handed out and forgotten, the lobby alone is measured
+	static MatchmakingService lobby(final long ticketTtlMs) {
+		final AtomicLong ids = new AtomicLong();
+		final BoardService boards = (BoardService) Proxy.newProxyInstance(BoardService.class.getClassLoader(),
+				new Class<?>[] { BoardService.class }, (proxy, method, args) -> {
+					if ("retriveNewBoard".equals(method.getName())) {
+						final Board board = new Board();
+						board.setId(ids.incrementAndGet());
+						return board;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		final MatchmakingService lobby = new MatchmakingService();
+		inject(lobby, "boardService", boards);
+		inject(lobby, "eventPublisher", (ApplicationEventPublisher) event -> {
+		});
+		inject(lobby, "meterRegistry", new SimpleMeterRegistry());
+		inject(lobby, "LOBBY_RATING_BAND", 200);
+		inject(lobby, "LOBBY_TICKET_TTL_MS", ticketTtlMs);
+		inject(lobby, "LOBBY_RESULT_TTL_MS", ticketTtlMs);
+		lobby.init();
+		return lobby;
+	}
+
+	private static void inject(final Object target, final String name, final Object value) {
+		try {
+			final Field field = target.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(target, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
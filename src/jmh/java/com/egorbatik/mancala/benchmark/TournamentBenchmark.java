@@ -0,0 +1,78 @@
+package com.egorbatik.mancala.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.service.BoardService;
+
+/**
+ * Boards of a tournament round over JPA and H2: one save per board against
+ * {@link BoardService#retriveNewBoards(int)}, which inserts them in JDBC
+ * batches. Scores are boards per second.
+ *
+ * @author egorbatik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TournamentBenchmark {
+
+	private static final int GAMES = 64;
+
+	@Param({ "single", "bulk" })
+	public String creation;
+
+	private ConfigurableApplicationContext context;
+	private BoardService boardService;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		context = new SpringApplicationBuilder(MancalaApplication.class).web(WebApplicationType.NONE)
+				.run("--logging.level.root=WARN");
+		boardService = context.getBean(BoardService.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(GAMES)
+	public List<Board> round() {
+		if ("bulk".equals(creation)) {
+			return boardService.retriveNewBoards(GAMES);
+		}
+		final List<Board> boards = new ArrayList<>(GAMES);
+		for (int i = 0; i < GAMES; i++) {
+			boards.add(boardService.retriveNewBoard());
+		}
+		return boards;
+	}
+}
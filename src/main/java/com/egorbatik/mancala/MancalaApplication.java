@@ -2,10 +2,10 @@ package com.egorbatik.mancala;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableJpaRepositories
+@EnableScheduling
 public class MancalaApplication {
 
   public static void main(String[] args) {
@@ -0,0 +1,43 @@
+package com.egorbatik.mancala;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The "reactive" profile serves the board API over R2DBC, but JPA keeps
+ * running for everything else (journal, archive, cleaner). Spring Boot drops
+ * the JDBC datasource once there is an R2DBC connection factory, so it's
+ * declared here from the same spring.datasource properties.
+ *
+ * Tomcat is on the classpath for the MVC stack and would be picked for
+ * WebFlux too, the reactive stack runs on Netty event loops.
+ *
+ * @author egorbatik
+ *
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfiguration {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public DataSource dataSource(final DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.egorbatik.mancala;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.repository.ReactiveBoardRepository;
+
+/**
+ * JPA repositories of the application. In the "mapped" profile the boards are
+ * stored by MappedBoardRepository, so no JPA BoardRepository is built and that
+ * one takes its "boardRepository" name.
+ *
+ * @author egorbatik
+ *
+ */
+public class RepositoryConfiguration {
+
+  @Configuration
+  @Profile("!mapped")
+  @EnableJpaRepositories(basePackageClasses = MancalaApplication.class)
+  static class Jpa {
+  }
+
+  // Explicit filters turn off the store detection, the R2DBC one is excluded by hand
+  @Configuration
+  @Profile("mapped")
+  @EnableJpaRepositories(basePackageClasses = MancalaApplication.class, excludeFilters = @ComponentScan.Filter(
+      type = FilterType.ASSIGNABLE_TYPE, classes = { BoardRepository.class, ReactiveBoardRepository.class }))
+  static class Mapped {
+  }
+
+}
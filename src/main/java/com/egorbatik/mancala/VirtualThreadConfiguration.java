@@ -0,0 +1,56 @@
+package com.egorbatik.mancala;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * VIRTUAL_THREADS=true runs every Tomcat request, and so the blocking
+ * BoardService and repository calls, on its own virtual thread instead of the
+ * platform thread pool. Concurrent games are no longer capped by
+ * server.tomcat.threads.max but by the connections (server.tomcat.max-connections)
+ * and the JDBC pool (spring.datasource.hikari.maximum-pool-size).
+ *
+ * Virtual threads need Java 21, the code is still built for 1.8 so they're
+ * looked up at runtime. On an older JVM the switch only logs a warning.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "VIRTUAL_THREADS", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+  /**
+   * One new virtual thread per task, null if the JVM has no virtual threads
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+    final ExecutorService executor = newVirtualThreadExecutor();
+    if (executor == null) {
+      log.warn("VIRTUAL_THREADS needs Java 21 or later, running on {} with the platform thread pool",
+          System.getProperty("java.version"));
+      return handler -> {
+      };
+    }
+    log.info("Requests run on virtual threads");
+    return handler -> handler.setExecutor(executor);
+  }
+
+}
@@ -0,0 +1,302 @@
+package com.egorbatik.mancala.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+
+/**
+ * Iterative deepening alpha-beta over the {@link MancalaEngine} rules.
+ *
+ * The {@link Position} is changed in place (make) and restored from a per-ply
+ * undo stack (unmake), nothing is allocated per node and the table key is the
+ * Zobrist hash the engine keeps while sowing. Root moves are
+ * searched in parallel on a fork-join pool and share the transposition table
+ * and the best score so far. An extra turn keeps the side, so the child score
+ * is not negated.
+ *
+ * With an {@link EndgameDatabase} of the geometry, positions with few stones
+ * left are not searched, their exact score is read.
+ *
+ * @author egorbatik
+ *
+ */
+public final class AlphaBetaSearch {
+
+	private static final int INFINITY = 1_000_000;
+
+	// Deadline checks every 1024 nodes
+	private static final int CHECK_MASK = 0x3FF;
+
+	private static final class Abort extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private Abort() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Abort ABORT = new Abort();
+
+	private final MancalaEngine engine;
+	private final TranspositionTable table;
+	private final ForkJoinPool pool;
+	private final EndgameDatabase endgame;
+
+	public AlphaBetaSearch(final MancalaEngine engine, final TranspositionTable table, final ForkJoinPool pool) {
+		this(engine, table, pool, null);
+	}
+
+	/**
+	 * @param endgame may be null, ignored if it's of another geometry
+	 */
+	public AlphaBetaSearch(final MancalaEngine engine, final TranspositionTable table, final ForkJoinPool pool,
+			final EndgameDatabase endgame) {
+		this.engine = engine;
+		this.table = table;
+		this.pool = pool;
+		this.endgame = endgame != null && endgame.getHouses() == engine.houses() ? endgame : null;
+	}
+
+	// Exact score of an endgame position or UNKNOWN
+	private int endgameScore(final int[] pits, final int side) {
+		if (endgame == null) {
+			return EndgameDatabase.UNKNOWN;
+		}
+		final int value = endgame.value(pits, side);
+		return value == EndgameDatabase.UNKNOWN ? value
+				: pits[engine.store(side)] - pits[engine.store(side ^ 1)] + value;
+	}
+
+	/**
+	 * One search thread: own undo stack and node counter
+	 */
+	private final class Searcher {
+		private final Position[] undo;
+		private final long deadline;
+		private long nodes;
+
+		private Searcher(final Position root, final int maxDepth, final long deadline) {
+			this.undo = new Position[maxDepth + 1];
+			for (int ply = 0; ply < undo.length; ply++) {
+				undo[ply] = root.copy();
+			}
+			this.deadline = deadline;
+		}
+
+		private int evaluate(final int[] pits, final int side) {
+			return pits[engine.store(side)] - pits[engine.store(side ^ 1)];
+		}
+
+		// Score of the position after a move of "side", from its point of view
+		private int child(final Position position, final int side, final int depth, final int alpha,
+				final int beta, final int ply) {
+			final int next = position.getSide();
+			if (next == MancalaEngine.FINISHED) {
+				return evaluate(position.getPits(), side);
+			}
+			if (next == side) {
+				return negamax(position, depth - 1, alpha, beta, ply + 1);
+			}
+			return -negamax(position, depth - 1, -beta, -alpha, ply + 1);
+		}
+
+		private int negamax(final Position position, final int depth, int alpha, final int beta, final int ply) {
+			if ((++nodes & CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+				throw ABORT;
+			}
+			final int[] pits = position.getPits();
+			final int side = position.getSide();
+			final int known = endgameScore(pits, side);
+			if (known != EndgameDatabase.UNKNOWN) {
+				return known;
+			}
+			if (depth == 0) {
+				return evaluate(pits, side);
+			}
+
+			final long key = position.getHash();
+			final long entry = table.probe(key);
+			int first = -1;
+			if (entry != 0L) {
+				first = TranspositionTable.move(entry);
+				if (TranspositionTable.depth(entry) >= depth) {
+					final int score = TranspositionTable.score(entry);
+					switch (TranspositionTable.flag(entry)) {
+					case TranspositionTable.EXACT:
+						return score;
+					case TranspositionTable.LOWER:
+						if (score >= beta) {
+							return score;
+						}
+						break;
+					default:
+						if (score <= alpha) {
+							return score;
+						}
+					}
+				}
+			}
+
+			final int originalAlpha = alpha;
+			final int offset = engine.offset(side);
+			final int houses = engine.houses();
+			final Position saved = undo[ply];
+			int best = -INFINITY;
+			int bestMove = 0;
+			// Table move first, then the houses in order
+			for (int i = -1; i < houses; i++) {
+				final int house = i < 0 ? first : i;
+				if (house < 0 || house >= houses || (i >= 0 && house == first) || pits[offset + house] == 0) {
+					continue;
+				}
+				saved.copyFrom(position);
+				engine.move(position, house);
+				final int score = child(position, side, depth, alpha, beta, ply);
+				position.copyFrom(saved);
+
+				if (score > best) {
+					best = score;
+					bestMove = house;
+				}
+				if (score > alpha) {
+					alpha = score;
+				}
+				if (alpha >= beta) {
+					break;
+				}
+			}
+
+			final int flag = best <= originalAlpha ? TranspositionTable.UPPER
+					: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(key, best, depth, flag, bestMove);
+			return best;
+		}
+	}
+
+	/**
+	 * One root move searched to a depth, sharing the best root score as alpha
+	 */
+	private final class RootTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final Position position;
+		private final int house;
+		private final int depth;
+		private final AtomicInteger bestScore;
+		private final Searcher searcher;
+
+		private RootTask(final Position root, final int house, final int depth, final AtomicInteger bestScore,
+				final Searcher searcher) {
+			this.position = root.copy();
+			this.house = house;
+			this.depth = depth;
+			this.bestScore = bestScore;
+			this.searcher = searcher;
+		}
+
+		@Override
+		protected Integer compute() {
+			final int side = position.getSide();
+			engine.move(position, house);
+			// One below the best so far: a score equal to it is still exact
+			final int score = searcher.child(position, side, depth, bestScore.get() - 1, INFINITY, 0);
+			bestScore.accumulateAndGet(score, Math::max);
+			return score;
+		}
+	}
+
+	/**
+	 * Searches the best move of "side" within the time budget.
+	 *
+	 * @param pits   board, not modified
+	 * @param side   TOP or BOTTOM, must have a legal move
+	 * @param budget nanoseconds, depth 1 is always completed (and exact within
+	 *               the endgame database)
+	 */
+	public SearchResult search(final int[] pits, final int side, final long budget, final int maxDepth) {
+		return search(Position.of(engine, pits.clone(), side), budget, maxDepth);
+	}
+
+	/**
+	 * Same as {@link #search(int[], int, long, int)} from a position already
+	 * hashed, not modified
+	 */
+	public SearchResult search(final Position root, final long budget, final int maxDepth) {
+		final int[] pits = root.getPits();
+		final int side = root.getSide();
+		final long start = System.nanoTime();
+		final long deadline = start + budget;
+		final int offset = engine.offset(side);
+
+		final List<Integer> moves = new ArrayList<>();
+		for (int house = 0; house < engine.houses(); house++) {
+			if (pits[offset + house] > 0) {
+				moves.add(house);
+			}
+		}
+		if (moves.isEmpty()) {
+			throw new IllegalArgumentException("No legal move");
+		}
+
+		long nodes = 0;
+		int bestMove = moves.get(0);
+		int bestScore = 0;
+		int completed = 0;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			final AtomicInteger alpha = new AtomicInteger(-INFINITY);
+			final List<RootTask> tasks = new ArrayList<>();
+			for (int house : moves) {
+				tasks.add(new RootTask(root, house, depth, alpha,
+						new Searcher(root, maxDepth, depth == 1 ? Long.MAX_VALUE : deadline)));
+			}
+			try {
+				pool.invoke(new RecursiveTask<Void>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected Void compute() {
+						invokeAll(tasks);
+						return null;
+					}
+				});
+			} catch (Abort e) {
+				for (RootTask task : tasks) {
+					nodes += task.searcher.nodes;
+				}
+				break;
+			}
+
+			int iterationMove = moves.get(0);
+			int iterationScore = -INFINITY;
+			for (RootTask task : tasks) {
+				nodes += task.searcher.nodes;
+				final int score = task.getRawResult();
+				if (score > iterationScore) {
+					iterationScore = score;
+					iterationMove = task.house;
+				}
+			}
+			bestMove = iterationMove;
+			bestScore = iterationScore;
+			completed = depth;
+
+			// Every child was read from the endgame database, deeper is the same
+			if (endgameScore(pits, side) != EndgameDatabase.UNKNOWN) {
+				break;
+			}
+
+			// Move the best root move first for the next iteration
+			moves.remove(Integer.valueOf(bestMove));
+			moves.add(0, bestMove);
+			if (System.nanoTime() > deadline) {
+				break;
+			}
+		}
+		return new SearchResult(bestMove + 1, bestScore, completed, nodes, System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,78 @@
+package com.egorbatik.mancala.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a file written by {@link EndgameGenerator}.
+ *
+ * The file is memory-mapped, nothing is loaded onto the heap and a lookup is a
+ * rank plus one byte read. Absolute reads don't touch the buffer position, so
+ * it's shared by every thread.
+ *
+ * @author egorbatik
+ *
+ */
+public final class EndgameDatabase {
+
+	// "MKEG"
+	static final int MAGIC = 0x4D4B4547;
+	static final int VERSION = 1;
+	static final int HEADER = 16;
+
+	// Value of a position out of the database
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private final ByteBuffer values;
+	private final EndgameIndex index;
+	private final int houses;
+	private final int maxStones;
+
+	private EndgameDatabase(final ByteBuffer values, final int houses, final int maxStones) {
+		this.values = values;
+		this.houses = houses;
+		this.maxStones = maxStones;
+		this.index = new EndgameIndex(houses, maxStones);
+	}
+
+	public static EndgameDatabase open(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping outlives the channel
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not an endgame database: " + path);
+			}
+			final int houses = buffer.getInt(8);
+			final int maxStones = buffer.getInt(12);
+			final EndgameDatabase database = new EndgameDatabase(buffer, houses, maxStones);
+			if (buffer.capacity() != HEADER + database.index.size()) {
+				throw new IOException("Truncated endgame database: " + path);
+			}
+			return database;
+		}
+	}
+
+	public int getHouses() {
+		return houses;
+	}
+
+	public int getMaxStones() {
+		return maxStones;
+	}
+
+	/**
+	 * Stones the side to move gets over its rival from the stones left on the
+	 * board, with perfect play by both. UNKNOWN with more than maxStones left.
+	 */
+	public int value(final int[] pits, final int side) {
+		final long rank = index.rank(pits, side);
+		if (rank < 0) {
+			return UNKNOWN;
+		}
+		return values.get(HEADER + (int) rank);
+	}
+}
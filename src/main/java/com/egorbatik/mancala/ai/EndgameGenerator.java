@@ -0,0 +1,184 @@
+package com.egorbatik.mancala.ai;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+
+/**
+ * Offline tool solving every position with at most N stones left on the board
+ * into an {@link EndgameDatabase} file: a header and one byte per position
+ * rank, the value for the side to move.
+ *
+ * Stones never go back on the cycle and crossing a store drops one in it, so
+ * a move either leaves fewer stones on the board or moves them closer to the
+ * stores: the positions form a DAG and are solved by a memoized walk,
+ * straight into the mapped file.
+ *
+ * Usage: EndgameGenerator [file] [max stones] [houses]
+ *
+ * @author egorbatik
+ *
+ */
+public final class EndgameGenerator {
+
+	private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+	// Deepest walk is bounded by the stones, but it's recursive
+	private static final long STACK_SIZE = 256L * 1024 * 1024;
+
+	private final MancalaEngine engine;
+	private final EndgameIndex index;
+	private final MappedByteBuffer values;
+
+	private EndgameGenerator(final MancalaEngine engine, final EndgameIndex index, final MappedByteBuffer values) {
+		this.engine = engine;
+		this.index = index;
+		this.values = values;
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Path path = Paths.get(args.length > 0 ? args[0] : "endgame.db");
+		final int maxStones = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+		final int houses = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		final long start = System.nanoTime();
+		final long positions = generate(path, houses, maxStones);
+		System.out.printf("%d positions up to %d stones written to %s in %d ms%n", positions, maxStones, path,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Solves and writes the database, replacing the file
+	 *
+	 * @return number of positions
+	 */
+	public static long generate(final Path path, final int houses, final int maxStones) throws IOException {
+		final MancalaEngine engine = MancalaEngine.forHouses(houses);
+		final EndgameIndex index = new EndgameIndex(houses, maxStones);
+		if (maxStones < 0 || maxStones > Byte.MAX_VALUE
+				|| EndgameDatabase.HEADER + index.size() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Endgame database too large");
+		}
+		final int size = (int) (EndgameDatabase.HEADER + index.size());
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final MappedByteBuffer values = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			for (int i = EndgameDatabase.HEADER; i < size; i++) {
+				values.put(i, UNSOLVED);
+			}
+
+			final EndgameGenerator generator = new EndgameGenerator(engine, index, values);
+			final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+			final Thread thread = new Thread(null, () -> {
+				try {
+					generator.solveAll(maxStones);
+				} catch (RuntimeException e) {
+					failure.set(e);
+				}
+			}, "endgame-generator", STACK_SIZE);
+			thread.start();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted", e);
+			}
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+
+			// Header last, a half written file is never valid
+			values.putInt(0, EndgameDatabase.MAGIC);
+			values.putInt(4, EndgameDatabase.VERSION);
+			values.putInt(8, houses);
+			values.putInt(12, maxStones);
+			values.force();
+		}
+		return index.size();
+	}
+
+	// Every house tuple in rank order (odometer over sum <= maxStones)
+	private void solveAll(final int maxStones) {
+		final int houses = engine.houses();
+		final int[] pits = new int[engine.pits()];
+		final int[] order = new int[houses * 2];
+		for (int i = 0; i < houses; i++) {
+			order[i] = engine.offset(MancalaEngine.TOP) + i;
+			order[houses + i] = engine.offset(MancalaEngine.BOTTOM) + i;
+		}
+		int sum = 0;
+		while (true) {
+			solve(pits);
+			int k = order.length - 1;
+			while (k >= 0 && sum == maxStones) {
+				sum -= pits[order[k]];
+				pits[order[k]] = 0;
+				k--;
+				if (k >= 0 && sum < maxStones) {
+					break;
+				}
+			}
+			if (k < 0) {
+				return;
+			}
+			pits[order[k]]++;
+			sum++;
+		}
+	}
+
+	// Value for TOP to move, pits are not modified
+	private int solve(final int[] pits) {
+		final int slot = EndgameDatabase.HEADER + (int) index.rank(pits, MancalaEngine.TOP);
+		final byte known = values.get(slot);
+		if (known != UNSOLVED) {
+			return known;
+		}
+
+		final int top = engine.offset(MancalaEngine.TOP);
+		int best = Integer.MIN_VALUE;
+		if (engine.isEmpty(pits, MancalaEngine.TOP)) {
+			// Only when enumerating, a game never gets here: the rival keeps its stones
+			best = 0;
+			for (int i = 0; i < engine.houses(); i++) {
+				best -= pits[engine.offset(MancalaEngine.BOTTOM) + i];
+			}
+		}
+		final int[] child = new int[pits.length];
+		for (int house = 0; house < engine.houses(); house++) {
+			if (pits[top + house] == 0) {
+				continue;
+			}
+			System.arraycopy(pits, 0, child, 0, pits.length);
+			child[engine.store(MancalaEngine.TOP)] = 0;
+			child[engine.store(MancalaEngine.BOTTOM)] = 0;
+			final int next = MancalaEngine.nextSide(engine.move(child, MancalaEngine.TOP, house));
+			final int gained = child[engine.store(MancalaEngine.TOP)] - child[engine.store(MancalaEngine.BOTTOM)];
+			final int score;
+			if (next == MancalaEngine.FINISHED) {
+				score = gained;
+			} else if (next == MancalaEngine.TOP) {
+				score = gained + solve(child);
+			} else {
+				score = gained - solve(mirror(child));
+			}
+			best = Math.max(best, score);
+		}
+		values.put(slot, (byte) best);
+		return best;
+	}
+
+	// Same position with the sides swapped, BOTTOM to move becomes TOP to move
+	private int[] mirror(final int[] pits) {
+		final int[] mirrored = new int[pits.length];
+		final int half = engine.half();
+		System.arraycopy(pits, 0, mirrored, half, half);
+		System.arraycopy(pits, half, mirrored, 0, half);
+		return mirrored;
+	}
+}
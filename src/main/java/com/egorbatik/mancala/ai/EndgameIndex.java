@@ -0,0 +1,67 @@
+package com.egorbatik.mancala.ai;
+
+/**
+ * Combinatorial rank of the houses of a position with at most "maxStones"
+ * stones on the board. Stores do not matter, they never move again.
+ *
+ * The mover houses come first, then the rival ones, so a position and its
+ * mirror share the rank. Tuples are ranked in lexicographic order: the rank
+ * adds, for every house, the tuples with fewer stones in it and the same
+ * prefix, counted with T(m, b) = C(b + m, m), the m-tuples summing at most b.
+ *
+ * @author egorbatik
+ *
+ */
+final class EndgameIndex {
+
+	private final int houses;
+	private final int maxStones;
+
+	// [m][b] -> m-tuples of sum <= b
+	private final long[][] tuples;
+
+	EndgameIndex(final int houses, final int maxStones) {
+		this.houses = houses;
+		this.maxStones = maxStones;
+		this.tuples = new long[houses * 2 + 1][maxStones + 1];
+		for (int b = 0; b <= maxStones; b++) {
+			tuples[0][b] = 1;
+		}
+		for (int m = 1; m <= houses * 2; m++) {
+			long sum = 0;
+			for (int b = 0; b <= maxStones; b++) {
+				sum += tuples[m - 1][b];
+				tuples[m][b] = sum;
+			}
+		}
+	}
+
+	long size() {
+		return tuples[houses * 2][maxStones];
+	}
+
+	/**
+	 * Rank of the position with "side" to move, -1 if it has too many stones
+	 *
+	 * @param pits full board, houses plus store per side
+	 */
+	long rank(final int[] pits, final int side) {
+		final int half = houses + 1;
+		int budget = maxStones;
+		int m = houses * 2;
+		long rank = 0;
+		for (int k = 0; k < 2; k++) {
+			final int offset = (side ^ k) * half;
+			for (int i = 0; i < houses; i++) {
+				final int stones = pits[offset + i];
+				if (stones > budget) {
+					return -1;
+				}
+				rank += tuples[m][budget] - tuples[m][budget - stones];
+				budget -= stones;
+				m--;
+			}
+		}
+		return rank;
+	}
+}
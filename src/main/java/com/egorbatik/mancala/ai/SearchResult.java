@@ -0,0 +1,29 @@
+package com.egorbatik.mancala.ai;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Best move found by a search, with its statistics
+ */
+@Getter
+@AllArgsConstructor
+public class SearchResult {
+
+	// 1 based, like BoardService.applyGame
+	private final int house;
+
+	// Own store minus rival store at the end of the principal line
+	private final int score;
+
+	// Last fully searched depth
+	private final int depth;
+
+	private final long nodes;
+
+	private final long elapsedNanos;
+
+	public long getNodesPerSecond() {
+		return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+	}
+}
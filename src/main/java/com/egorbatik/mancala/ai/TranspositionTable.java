@@ -0,0 +1,71 @@
+package com.egorbatik.mancala.ai;
+
+import java.util.Arrays;
+
+/**
+ * Lock-free transposition table shared by every search thread.
+ *
+ * Each slot is two longs: the packed entry and the key xor'ed with it. A torn
+ * write by two threads leaves a pair that doesn't verify, so it is read as a
+ * miss instead of a wrong entry.
+ *
+ * @author egorbatik
+ *
+ */
+public final class TranspositionTable {
+
+	public static final int EXACT = 0;
+	public static final int LOWER = 1;
+	public static final int UPPER = 2;
+
+	private final long[] keys;
+	private final long[] entries;
+	private final int mask;
+
+	public TranspositionTable(final int sizeBits) {
+		final int size = 1 << sizeBits;
+		this.keys = new long[size];
+		this.entries = new long[size];
+		this.mask = size - 1;
+	}
+
+	// Entry: score (32) | depth (8) | flag (2) | move (6) | valid (1)
+
+	public static int score(final long entry) {
+		return (int) (entry >> 32);
+	}
+
+	public static int depth(final long entry) {
+		return (int) (entry >>> 9) & 0xFF;
+	}
+
+	public static int flag(final long entry) {
+		return (int) (entry >>> 7) & 0x3;
+	}
+
+	public static int move(final long entry) {
+		return (int) (entry >>> 1) & 0x3F;
+	}
+
+	/**
+	 * @return the entry, or 0 when the position is not stored
+	 */
+	public long probe(final long key) {
+		final int index = (int) key & mask;
+		final long entry = entries[index];
+		return (keys[index] ^ entry) == key ? entry : 0L;
+	}
+
+	public void store(final long key, final int score, final int depth, final int flag, final int move) {
+		final int index = (int) key & mask;
+		final long entry = ((long) score << 32) | ((long) (depth & 0xFF) << 9) | ((long) flag << 7)
+				| ((long) (move & 0x3F) << 1) | 1L;
+		entries[index] = entry;
+		keys[index] = key ^ entry;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(entries, 0L);
+	}
+}
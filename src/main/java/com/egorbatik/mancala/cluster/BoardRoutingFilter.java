@@ -0,0 +1,195 @@
+package com.egorbatik.mancala.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the requests of the boards this node owns and forwards the others,
+ * as they came, to the owner in the {@link ClusterMembership} ring. Both the
+ * JSON API (/api/boards/{id}/...) and the pages (/board and /apply with a
+ * board_id) are routed, requests without a board (a new game, the export)
+ * are served where they land.
+ *
+ * A forwarded request for a board this node doesn't own in its own ring is
+ * answered 503 with Retry-After, as when the owner is unreachable: rings
+ * changing at different times never loop, and a node never serves a board
+ * it thinks belongs to another one.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "CLUSTER_NODES")
+public class BoardRoutingFilter extends OncePerRequestFilter {
+
+	public static final String FORWARDED_BY = "X-Mancala-Forwarded-By";
+
+	private static final Pattern API_BOARD = Pattern.compile("^/api/boards/(\\d+)(/.*)?$");
+
+	private static final String[] REQUEST_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT,
+			HttpHeaders.IF_NONE_MATCH };
+
+	private static final String[] RESPONSE_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG,
+			HttpHeaders.LOCATION, HttpHeaders.CACHE_CONTROL };
+
+	@Value("${CLUSTER_TIMEOUT_MS:500}")
+	private Integer CLUSTER_TIMEOUT_MS;
+
+	@Value("${CLUSTER_FORWARD_TIMEOUT_MS:30000}")
+	private Integer CLUSTER_FORWARD_TIMEOUT_MS;
+
+	@Autowired
+	private ClusterMembership clusterMembership;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final AtomicLong forwarded = new AtomicLong();
+
+	@PostConstruct
+	public void registerMetrics() {
+		FunctionCounter.builder("mancala.cluster.forwarded", this, BoardRoutingFilter::getForwarded)
+				.description("Requests forwarded to the owner of the board").register(meterRegistry);
+	}
+
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+			final FilterChain chain) throws ServletException, IOException {
+		final Long boardId = boardId(request);
+		if (boardId == null || clusterMembership.isLocal(boardId)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		if (request.getHeader(FORWARDED_BY) != null) {
+			// The sender's ring gives us the board, ours doesn't: retried once they agree
+			log.debug("Board {} forwarded by {} is owned by {}", boardId, request.getHeader(FORWARDED_BY),
+					clusterMembership.owner(boardId));
+			unavailable(response);
+			return;
+		}
+		forward(clusterMembership.owner(boardId), request, response);
+	}
+
+	private static void unavailable(final HttpServletResponse response) throws IOException {
+		response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+		response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+	}
+
+	// Board of the request, null when it has none
+	private static Long boardId(final HttpServletRequest request) {
+		final String path = request.getRequestURI().substring(request.getContextPath().length());
+		final Matcher matcher = API_BOARD.matcher(path);
+		if (matcher.matches()) {
+			return parse(matcher.group(1));
+		}
+		if ("/board".equals(path) || "/apply".equals(path)) {
+			return parse(request.getParameter("board_id"));
+		}
+		return null;
+	}
+
+	// Malformed ids are answered by the local controllers
+	private static Long parse(final String id) {
+		try {
+			return id == null ? null : Long.valueOf(id);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void forward(final String owner, final HttpServletRequest request, final HttpServletResponse response)
+			throws IOException {
+		final String query = request.getQueryString();
+		final URL url = new URL(owner + request.getRequestURI() + (query == null ? "" : "?" + query));
+		final boolean events = request.getRequestURI().endsWith("/events");
+		final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod(request.getMethod());
+		connection.setInstanceFollowRedirects(false);
+		connection.setConnectTimeout(CLUSTER_TIMEOUT_MS);
+		// Event streams stay open as long as the client listens
+		connection.setReadTimeout(events ? 0 : CLUSTER_FORWARD_TIMEOUT_MS);
+		for (String header : REQUEST_HEADERS) {
+			final String value = request.getHeader(header);
+			if (value != null) {
+				connection.setRequestProperty(header, value);
+			}
+		}
+		connection.setRequestProperty(FORWARDED_BY, clusterMembership.getSelf());
+		forwarded.incrementAndGet();
+
+		final int status;
+		try {
+			if (request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+				connection.setDoOutput(true);
+				try (OutputStream out = connection.getOutputStream()) {
+					copy(request.getInputStream(), out, false);
+				}
+			}
+			status = connection.getResponseCode();
+		} catch (IOException e) {
+			// The ring catches up on the next check
+			log.warn("Board owner {} unreachable: {}", owner, e.getMessage());
+			unavailable(response);
+			return;
+		}
+
+		response.setStatus(status);
+		for (String header : RESPONSE_HEADERS) {
+			final String value = connection.getHeaderField(header);
+			if (value != null) {
+				response.setHeader(header, value);
+			}
+		}
+		final InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			try (InputStream body = in) {
+				copy(body, response.getOutputStream(), events);
+			}
+		}
+	}
+
+	private static void copy(final InputStream in, final OutputStream out, final boolean flush) throws IOException {
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+			if (flush) {
+				// Events reach the client as the owner sends them
+				out.flush();
+			}
+		}
+	}
+
+	public long getForwarded() {
+		return forwarded.get();
+	}
+
+}
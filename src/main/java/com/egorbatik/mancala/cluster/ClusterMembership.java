@@ -0,0 +1,195 @@
+package com.egorbatik.mancala.cluster;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.repository.CachedBoardRepository;
+import com.egorbatik.mancala.service.BoardLocks;
+import com.egorbatik.mancala.service.MoveJournal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Nodes of the cluster (CLUSTER_NODES, base URLs) and which of them owns each
+ * board.
+ *
+ * Every CLUSTER_CHECK_MS the peers are asked for their health, the ring is
+ * built with the live ones only, so a node joining or leaving moves its ranges
+ * without any coordination: each node works the same ring out of the same
+ * answers. Boards this node no longer owns are handed off, dropped from the
+ * cache and their moves flushed to the journal, the new owner loads them from
+ * the shared database.
+ *
+ * Until every node has seen a change two of them can take the same board. A
+ * forwarded request is only served by a node owning the board in its own
+ * ring, the others answer 503 and the client comes back once the rings agree.
+ * Requests reaching both nodes directly are both served, so a clustered node
+ * writes every move right away (see {@link CachedBoardRepository}) with the
+ * Board version it loaded, and only answers it once that write went through.
+ * The node whose write is rejected drops its copy and answers the move as a
+ * conflict, and a move is only logged after its board was written. Every
+ * acknowledged move is in the stored board, and the board and its move log
+ * are one node's game, never a mix.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "CLUSTER_NODES")
+public class ClusterMembership {
+
+	@Value("${CLUSTER_NODES}")
+	private String CLUSTER_NODES;
+
+	@Value("${CLUSTER_SELF:http://localhost:${server.port:8080}}")
+	private String CLUSTER_SELF;
+
+	@Value("${CLUSTER_VIRTUAL_NODES:64}")
+	private Integer CLUSTER_VIRTUAL_NODES;
+
+	@Value("${CLUSTER_TIMEOUT_MS:500}")
+	private Integer CLUSTER_TIMEOUT_MS;
+
+	@Autowired
+	private CachedBoardRepository cachedBoardRepository;
+
+	@Autowired
+	private BoardLocks boardLocks;
+
+	@Autowired
+	private MoveJournal moveJournal;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private String self;
+
+	private Set<String> peers;
+
+	private volatile HashRing ring;
+
+	private final AtomicLong handedOff = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		self = normalize(CLUSTER_SELF);
+		peers = Arrays.stream(CLUSTER_NODES.split(",")).map(ClusterMembership::normalize)
+				.filter(node -> !node.isEmpty() && !node.equals(self))
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+		ring = HashRing.of(Collections.singleton(self), CLUSTER_VIRTUAL_NODES);
+		check();
+
+		Gauge.builder("mancala.cluster.nodes", this, membership -> membership.getRing().getNodes().size())
+				.description("Live nodes in the ring").register(meterRegistry);
+		FunctionCounter.builder("mancala.cluster.handed.off", this, ClusterMembership::getHandedOff)
+				.description("Boards handed off to their new owner").register(meterRegistry);
+	}
+
+	private static String normalize(final String node) {
+		final String trimmed = node.trim();
+		return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+	}
+
+	/**
+	 * Rebuilds the ring with the live nodes and hands off the boards owned by
+	 * others
+	 */
+	@Scheduled(fixedDelayString = "${CLUSTER_CHECK_MS:1000}")
+	public void check() {
+		final Set<String> live = new LinkedHashSet<>();
+		live.add(self);
+		for (String peer : peers) {
+			if (isAlive(peer)) {
+				live.add(peer);
+			}
+		}
+		if (!live.equals(ring.getNodes())) {
+			ring = HashRing.of(live, CLUSTER_VIRTUAL_NODES);
+			log.info("Cluster ring is now {}", ring.getNodes());
+		}
+		handOff();
+	}
+
+	private boolean isAlive(final String node) {
+		try {
+			final HttpURLConnection connection = (HttpURLConnection) new URL(node + "/actuator/health").openConnection();
+			connection.setConnectTimeout(CLUSTER_TIMEOUT_MS);
+			connection.setReadTimeout(CLUSTER_TIMEOUT_MS);
+			try {
+				return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	// Boards created here for another node, or whose range moved away
+	private void handOff() {
+		int count = 0;
+		for (Long id : cachedBoardRepository.getCachedIds()) {
+			if (isLocal(id)) {
+				continue;
+			}
+			final Lock lock = boardLocks.lockFor(id);
+			lock.lock();
+			try {
+				// One still being flushed is handed off on a later check
+				if (cachedBoardRepository.evict(id)) {
+					count++;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		if (count > 0) {
+			// The new owner replays the snapshot with the journal
+			moveJournal.flush();
+			handedOff.addAndGet(count);
+			log.debug("Handed off {} boards", count);
+		}
+	}
+
+	public String getSelf() {
+		return self;
+	}
+
+	public HashRing getRing() {
+		return ring;
+	}
+
+	public String owner(final long boardId) {
+		return ring.owner(boardId);
+	}
+
+	public boolean isLocal(final long boardId) {
+		return self.equals(owner(boardId));
+	}
+
+	public long getHandedOff() {
+		return handedOff.get();
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.egorbatik.mancala.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.egorbatik.mancala.engine.Zobrist;
+
+/**
+ * Consistent-hash ring of the nodes, immutable. Every node gets a number of
+ * virtual points on the ring and a board belongs to the first point at or
+ * after the hash of its id, so a node joining or leaving only moves the
+ * boards of its own ranges.
+ *
+ * @author egorbatik
+ *
+ */
+public final class HashRing {
+
+	private final Set<String> nodes;
+
+	// Sorted points and the node of each one
+	private final long[] points;
+	private final String[] owners;
+
+	private HashRing(final Set<String> nodes, final int virtualNodes) {
+		this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+		final long[][] sorted = new long[nodes.size() * virtualNodes][];
+		final String[] byIndex = this.nodes.toArray(new String[0]);
+		int k = 0;
+		for (int n = 0; n < byIndex.length; n++) {
+			final long seed = hash(byIndex[n]);
+			for (int v = 0; v < virtualNodes; v++) {
+				sorted[k++] = new long[] { Zobrist.mix(seed + v), n };
+			}
+		}
+		Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+		this.points = new long[sorted.length];
+		this.owners = new String[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			points[i] = sorted[i][0];
+			owners[i] = byIndex[(int) sorted[i][1]];
+		}
+	}
+
+	public static HashRing of(final Collection<String> nodes, final int virtualNodes) {
+		if (nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("Empty ring");
+		}
+		return new HashRing(new TreeSet<>(nodes), virtualNodes);
+	}
+
+	// Same on every JVM, unlike String.hashCode mixed alone
+	private static long hash(final String node) {
+		long hash = 0xCBF29CE484222325L;
+		for (byte b : node.getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+		}
+		return Zobrist.mix(hash);
+	}
+
+	/**
+	 * Node owning the board
+	 */
+	public String owner(final long boardId) {
+		final long key = Zobrist.mix(boardId);
+		int index = Arrays.binarySearch(points, key);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return owners[index == points.length ? 0 : index];
+	}
+
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+}
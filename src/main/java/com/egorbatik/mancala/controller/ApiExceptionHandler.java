@@ -0,0 +1,78 @@
+package com.egorbatik.mancala.controller;
+
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * Error mapping of the JSON API. The Thymeleaf flow keeps the default error
+ * page.
+ *
+ * @author egorbatik
+ *
+ */
+@RestControllerAdvice(assignableTypes = { BoardRestController.class, ReactiveBoardController.class,
+    StatelessBoardController.class, LobbyController.class, TournamentController.class })
+public class ApiExceptionHandler {
+
+  private static Map<String, String> error(final String error) {
+    return Collections.singletonMap("error", error);
+  }
+
+  /**
+   * Wrong turn, empty or unknown house, finished game
+   */
+  @ExceptionHandler(InvalidParameterException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Map<String, String> invalidMove(final InvalidParameterException e) {
+    return error("invalid move");
+  }
+
+  /**
+   * The board kept changing under a move (reactive stack)
+   */
+  @ExceptionHandler(ConcurrentModificationException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Map<String, String> concurrentMove(final ConcurrentModificationException e) {
+    return error("concurrent move");
+  }
+
+  /**
+   * Unknown board
+   */
+  @ExceptionHandler(NoSuchElementException.class)
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  public Map<String, String> notFound(final NoSuchElementException e) {
+    return error("board not found");
+  }
+
+  /**
+   * Unreadable body, unknown player or forged board token
+   */
+  @ExceptionHandler({ HttpMessageNotReadableException.class, ServerWebInputException.class,
+      IllegalArgumentException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Map<String, String> badRequest(final Exception e) {
+    return error("bad request");
+  }
+
+  /**
+   * Corrupted or truncated archive on import
+   */
+  @ExceptionHandler(IOException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Map<String, String> invalidArchive(final IOException e) {
+    return error(e.getMessage() == null ? "invalid archive" : e.getMessage());
+  }
+
+}
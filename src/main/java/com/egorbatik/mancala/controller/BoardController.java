@@ -1,39 +1,86 @@
 package com.egorbatik.mancala.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
 
 import com.egorbatik.mancala.model.Board;
 import com.egorbatik.mancala.model.PlayerType;
 import com.egorbatik.mancala.service.BoardService;
+import com.egorbatik.mancala.service.BoardViewCache;
 
 @Controller
+@Profile("!reactive")
 public class BoardController {
 
+  private static final MediaType HTML = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
   @Autowired
   BoardService boardService;
 
+  @Autowired
+  BoardViewCache boardViewCache;
+
+  @Autowired
+  ITemplateEngine templateEngine;
+
   /**
-   * This service methods brings the "requested board" at "current state" tailored for "requesting player"
+   * This service methods brings the "requested board" at "current state" tailored for "requesting player".
+   * The page is rendered once per board state and player, its ETag answers the reloads of an unchanged
+   * board with a 304
    * @param boardId
    * @param player
-   * @param model
+   * @param request
    * @return
    */
   @GetMapping("/board")
-  public String board(@RequestParam(name = "board_id", required = false) Long boardId,
-      @RequestParam(name = "player", required = false) String player, Model model) {
+  public ResponseEntity<byte[]> board(@RequestParam(name = "board_id", required = false) Long boardId,
+      @RequestParam(name = "player", required = false) String player, ServletWebRequest request) {
 
     final PlayerType currentPlayer = boardService.resolvePlayer(Optional.ofNullable(player));
-    final Board board = boardService.getBoard(Optional.ofNullable(boardId));
-    model.addAttribute("board", board);
-    model.addAttribute("currentPlayer", currentPlayer);
-    return "board";
+    if (boardId == null) {
+      // Create once and go to the board url, so reloads don't create new boards
+      final Board board = boardService.retriveNewBoard();
+      return ResponseEntity.status(HttpStatus.FOUND).location(ServletUriComponentsBuilder.fromCurrentContextPath()
+          .path("/board").queryParam("board_id", board.getId())
+          .queryParam("player", currentPlayer.name().toLowerCase()).build().toUri()).build();
+    }
+    // A copy taken under the board lock, the key, ETag and page all come from the same state
+    final Board board = boardService.retrieveBoard(boardId);
+    final long key = boardViewCache.key(board, currentPlayer);
+    final String etag = BoardViewCache.etag(key);
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    final byte[] page = boardViewCache.page(key, () -> render(board, currentPlayer, request));
+    return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).contentType(HTML).body(page);
+  }
+
+  private String render(final Board board, final PlayerType currentPlayer, final ServletWebRequest request) {
+    final Map<String, Object> variables = new HashMap<>();
+    variables.put("board", board);
+    variables.put("currentPlayer", currentPlayer);
+    final HttpServletRequest servletRequest = request.getRequest();
+    return templateEngine.process("board", new WebContext(servletRequest, request.getResponse(),
+        servletRequest.getServletContext(), servletRequest.getLocale(), variables));
   }
 
   
@@ -0,0 +1,163 @@
+package com.egorbatik.mancala.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.egorbatik.mancala.ai.SearchResult;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.ArchiveResult;
+import com.egorbatik.mancala.service.BatchResult;
+import com.egorbatik.mancala.service.BoardArchiveService;
+import com.egorbatik.mancala.service.BoardPushService;
+import com.egorbatik.mancala.service.BoardService;
+import com.egorbatik.mancala.service.ComputerPlayerService;
+
+/**
+ * JSON API of the game, one round-trip per move (no redirect, no template).
+ * Errors are mapped by {@link ApiExceptionHandler}.
+ *
+ * @author egorbatik
+ *
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/boards")
+public class BoardRestController {
+
+  @Autowired
+  BoardService boardService;
+
+  @Autowired
+  BoardPushService boardPushService;
+
+  @Autowired
+  ComputerPlayerService computerPlayerService;
+
+  @Autowired
+  BoardArchiveService boardArchiveService;
+
+  /**
+   * New board, TOP starts
+   * @return
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Board create() {
+    return boardService.retriveNewBoard();
+  }
+
+  /**
+   * Current state of a board
+   * @param boardId
+   * @return
+   */
+  @GetMapping("/{boardId}")
+  public Board get(@PathVariable Long boardId) {
+    return boardService.retrieveBoard(boardId);
+  }
+
+  /**
+   * Applies a move and returns the board after it
+   * @param boardId
+   * @param move
+   * @return
+   */
+  @PostMapping("/{boardId}/moves")
+  public Board move(@PathVariable Long boardId, @RequestBody Move move) {
+    return boardService.applyGame(boardId, move.getPlayer(), move.getHouse());
+  }
+
+  /**
+   * Applies an ordered list of moves with a single load and save. Stops at the
+   * first illegal move and reports its index
+   * @param boardId
+   * @param moves
+   * @return
+   */
+  @PostMapping("/{boardId}/moves/batch")
+  public BatchResult moves(@PathVariable Long boardId, @RequestBody List<Move> moves) {
+    return boardService.applyGames(boardId, moves);
+  }
+
+  /**
+   * The computer plays the move of "player", for single player games
+   * @param boardId
+   * @param player
+   * @return
+   */
+  @PostMapping("/{boardId}/computer-moves")
+  public Board computerMove(@PathVariable Long boardId, @RequestParam(name = "player") PlayerType player) {
+    return computerPlayerService.play(boardId, player);
+  }
+
+  /**
+   * Best move for the next player, with the search statistics
+   * @param boardId
+   * @return
+   */
+  @GetMapping("/{boardId}/hint")
+  public SearchResult hint(@PathVariable Long boardId) {
+    return computerPlayerService.suggest(boardId);
+  }
+
+  /**
+   * Server-Sent Events of the board: the full board first, then a delta after
+   * every move
+   * @param boardId
+   * @return
+   */
+  @GetMapping(path = "/{boardId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter events(@PathVariable Long boardId) {
+    return boardPushService.subscribe(boardId);
+  }
+
+  /**
+   * Streams the boards after "after" (an id) in the binary archive format,
+   * optionally with their moves and gzip compressed
+   * @param after
+   * @param history
+   * @param gzip
+   * @return
+   */
+  @GetMapping(path = "/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public StreamingResponseBody export(@RequestParam(name = "after", defaultValue = "0") Long after,
+      @RequestParam(name = "history", defaultValue = "false") boolean history,
+      @RequestParam(name = "gzip", defaultValue = "false") boolean gzip) {
+    return out -> boardArchiveService.export(Channels.newChannel(out), after, history, gzip);
+  }
+
+  /**
+   * Imports an archive from the body, skipping its first "skip" boards to
+   * resume an interrupted import
+   * @param skip
+   * @param request
+   * @return
+   * @throws IOException
+   */
+  @PostMapping(path = "/import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ArchiveResult importBoards(@RequestParam(name = "skip", defaultValue = "0") Long skip,
+      HttpServletRequest request) throws IOException {
+    return boardArchiveService.importBoards(Channels.newChannel(request.getInputStream()), skip);
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.egorbatik.mancala.controller;
+
+import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.egorbatik.mancala.service.LobbyTicket;
+import com.egorbatik.mancala.service.MatchmakingService;
+
+/**
+ * JSON API of the lobby: a player joins with a ticket and waits on it until
+ * the lobby pairs it, the matched ticket has the board and the side to play.
+ * Other errors are mapped by {@link ApiExceptionHandler}.
+ *
+ * @author egorbatik
+ *
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/lobby/tickets")
+public class LobbyController {
+
+  @Value("${LOBBY_POLL_MS:30000}")
+  private Long LOBBY_POLL_MS;
+
+  @Autowired
+  MatchmakingService matchmakingService;
+
+  /**
+   * Joins the lobby, already matched if someone of the same rating band was
+   * waiting
+   * @param rating
+   * @return
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public LobbyTicket join(@RequestParam(name = "rating", required = false) Integer rating) {
+    return matchmakingService.join(rating);
+  }
+
+  /**
+   * The ticket, with "wait" it answers once the ticket leaves the lobby or
+   * after LOBBY_POLL_MS (long polling)
+   * @param ticketId
+   * @param wait
+   * @return
+   */
+  @GetMapping("/{ticketId}")
+  public DeferredResult<LobbyTicket> get(@PathVariable String ticketId,
+      @RequestParam(name = "wait", defaultValue = "false") boolean wait) {
+    final LobbyTicket ticket = matchmakingService.ticket(ticketId);
+    final DeferredResult<LobbyTicket> result = new DeferredResult<>(LOBBY_POLL_MS, ticket);
+    if (wait) {
+      ticket.getResult().thenAccept(result::setResult);
+    } else {
+      result.setResult(ticket);
+    }
+    return result;
+  }
+
+  /**
+   * Leaves the lobby
+   * @param ticketId
+   * @return
+   */
+  @DeleteMapping("/{ticketId}")
+  public LobbyTicket cancel(@PathVariable String ticketId) {
+    return matchmakingService.cancel(ticketId);
+  }
+
+  @ExceptionHandler(NoSuchElementException.class)
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  public Map<String, String> notFound(final NoSuchElementException e) {
+    return Collections.singletonMap("error", "ticket not found");
+  }
+
+  @ExceptionHandler(InvalidParameterException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Map<String, String> notWaiting(final InvalidParameterException e) {
+    return Collections.singletonMap("error", "ticket not waiting");
+  }
+
+}
@@ -0,0 +1,67 @@
+package com.egorbatik.mancala.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.service.ReactiveBoardService;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Same JSON API as {@link BoardRestController} on WebFlux, for the "reactive"
+ * profile. Only the board endpoints, errors are mapped by
+ * {@link ApiExceptionHandler}.
+ *
+ * @author egorbatik
+ *
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/boards")
+public class ReactiveBoardController {
+
+  @Autowired
+  ReactiveBoardService reactiveBoardService;
+
+  /**
+   * New board, TOP starts
+   * @return
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<Board> create() {
+    return reactiveBoardService.retriveNewBoard();
+  }
+
+  /**
+   * Current state of a board
+   * @param boardId
+   * @return
+   */
+  @GetMapping("/{boardId}")
+  public Mono<Board> get(@PathVariable Long boardId) {
+    return reactiveBoardService.retrieveBoard(boardId);
+  }
+
+  /**
+   * Applies a move and returns the board after it
+   * @param boardId
+   * @param move
+   * @return
+   */
+  @PostMapping("/{boardId}/moves")
+  public Mono<Board> move(@PathVariable Long boardId, @RequestBody Move move) {
+    return reactiveBoardService.applyGame(boardId, move);
+  }
+
+}
@@ -0,0 +1,66 @@
+package com.egorbatik.mancala.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.service.StatelessBoard;
+import com.egorbatik.mancala.service.StatelessBoardService;
+
+/**
+ * JSON API of the stateless games (STATELESS_GAMES=true): the board is
+ * addressed by its signed token instead of an id, every move answers the next
+ * token. No servlet types, it's served by the MVC and the reactive stacks.
+ * Errors are mapped by {@link ApiExceptionHandler}.
+ *
+ * @author egorbatik
+ *
+ */
+@RestController
+@ConditionalOnProperty(name = "STATELESS_GAMES", havingValue = "true")
+@RequestMapping("/api/stateless/boards")
+public class StatelessBoardController {
+
+  @Autowired
+  StatelessBoardService statelessBoardService;
+
+  /**
+   * New game, TOP starts
+   * @return
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public StatelessBoard create() {
+    return statelessBoardService.retriveNewBoard();
+  }
+
+  /**
+   * Board of a token
+   * @param token
+   * @return
+   */
+  @GetMapping("/{token}")
+  public StatelessBoard get(@PathVariable String token) {
+    return statelessBoardService.retrieveBoard(token);
+  }
+
+  /**
+   * Applies a move to the board of the token, the token can't be used again
+   * @param token
+   * @param move
+   * @return
+   */
+  @PostMapping("/{token}/moves")
+  public StatelessBoard move(@PathVariable String token, @RequestBody Move move) {
+    return statelessBoardService.applyGame(token, move.getPlayer(), move.getHouse());
+  }
+
+}
@@ -0,0 +1,82 @@
+package com.egorbatik.mancala.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.egorbatik.mancala.service.Standing;
+import com.egorbatik.mancala.service.Tournament;
+import com.egorbatik.mancala.service.TournamentPlayer;
+import com.egorbatik.mancala.service.TournamentService;
+
+/**
+ * JSON API of the bot tournaments: one request starts a whole tournament,
+ * progress and standings can be read while it runs. Other errors are mapped
+ * by {@link ApiExceptionHandler}.
+ *
+ * @author egorbatik
+ *
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/tournaments")
+public class TournamentController {
+
+  @Autowired
+  TournamentService tournamentService;
+
+  /**
+   * Starts a tournament of the players in the body
+   * @param format ROUND_ROBIN or SWISS
+   * @param rounds
+   * @param players
+   * @return
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Tournament create(@RequestParam(name = "format", defaultValue = "ROUND_ROBIN") Tournament.Format format,
+      @RequestParam(name = "rounds", defaultValue = "1") int rounds, @RequestBody List<TournamentPlayer> players) {
+    return tournamentService.create(format, rounds, players);
+  }
+
+  /**
+   * Status, games played and standings
+   * @param tournamentId
+   * @return
+   */
+  @GetMapping("/{tournamentId}")
+  public Tournament get(@PathVariable Long tournamentId) {
+    return tournamentService.tournament(tournamentId);
+  }
+
+  /**
+   * Standings after the last finished game
+   * @param tournamentId
+   * @return
+   */
+  @GetMapping("/{tournamentId}/standings")
+  public List<Standing> standings(@PathVariable Long tournamentId) {
+    return tournamentService.tournament(tournamentId).getStandings();
+  }
+
+  @ExceptionHandler(NoSuchElementException.class)
+  @ResponseStatus(HttpStatus.NOT_FOUND)
+  public Map<String, String> notFound(final NoSuchElementException e) {
+    return Collections.singletonMap("error", "tournament not found");
+  }
+
+}
@@ -0,0 +1,239 @@
+package com.egorbatik.mancala.engine;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Stateless move engine working over primitive pits, for a given number of
+ * houses per side.
+ *
+ * The whole board is a single int[]: first the TOP half (houses and store),
+ * then the BOTTOM half. A move never boxes nor allocates, and a sow is solved
+ * by laps (stones / cycle) plus the remainder, not stone by stone. The pit
+ * order of the cycle and the opposite houses are precomputed per geometry.
+ *
+ * @author egorbatik
+ *
+ */
+public final class MancalaEngine {
+
+	// Sides, same order as PlayerType ordinals
+	public static final int TOP = 0;
+	public static final int BOTTOM = 1;
+	public static final int FINISHED = 2;
+
+	// Move result flags, the low bits are the next side
+	public static final int SIDE_MASK = 0x3;
+	public static final int CAPTURE = 0x4;
+	public static final int EXTRA_TURN = 0x8;
+
+	public static final int MAX_HOUSES = 32;
+
+	// Every geometry built up front (about 1MB of hash keys), a lookup is a plain read
+	private static final MancalaEngine[] ENGINES = new MancalaEngine[MAX_HOUSES + 1];
+
+	static {
+		for (int houses = 1; houses <= MAX_HOUSES; houses++) {
+			ENGINES[houses] = new MancalaEngine(houses);
+		}
+	}
+
+	public static final MancalaEngine STANDARD = forHouses(6);
+
+	private final int houses;
+	private final int half;
+	private final int pits;
+
+	// Every pit except the rival store
+	private final int cycle;
+
+	// [side][cycle position] -> pit, own houses and store first, then rival houses
+	private final int[][] cyclePits;
+
+	// [side][house] -> pit of the rival house in front
+	private final int[][] opposite;
+
+	private final Zobrist zobrist;
+
+	private MancalaEngine(final int houses) {
+		this.houses = houses;
+		this.half = houses + 1;
+		this.pits = half * 2;
+		this.cycle = pits - 1;
+		this.cyclePits = new int[2][cycle];
+		this.opposite = new int[2][houses];
+		this.zobrist = new Zobrist(pits);
+		for (int side = TOP; side <= BOTTOM; side++) {
+			final int own = side * half;
+			final int rival = (side ^ 1) * half;
+			for (int k = 0; k < cycle; k++) {
+				cyclePits[side][k] = k < half ? own + k : rival + k - half;
+			}
+			for (int house = 0; house < houses; house++) {
+				opposite[side][house] = rival + houses - 1 - house;
+			}
+		}
+	}
+
+	/**
+	 * Engine of the geometry, built once and shared (it's immutable)
+	 */
+	public static MancalaEngine forHouses(final int houses) {
+		if (houses < 1 || houses > MAX_HOUSES) {
+			throw new InvalidParameterException();
+		}
+		return ENGINES[houses];
+	}
+
+	public static int nextSide(final int result) {
+		return result & SIDE_MASK;
+	}
+
+	public Zobrist zobrist() {
+		return zobrist;
+	}
+
+	public int houses() {
+		return houses;
+	}
+
+	// Houses plus store
+	public int half() {
+		return half;
+	}
+
+	public int pits() {
+		return pits;
+	}
+
+	public int offset(final int side) {
+		return side * half;
+	}
+
+	public int store(final int side) {
+		return side * half + houses;
+	}
+
+	public void fill(final int[] pits, final int stones) {
+		for (int i = 0; i < this.pits; i++) {
+			pits[i] = (i % half == houses) ? 0 : stones;
+		}
+	}
+
+	/**
+	 * Applies a move in place.
+	 *
+	 * @param pits  the board, modified
+	 * @param side  TOP or BOTTOM
+	 * @param house house index (0 based) of the side
+	 * @return next side to play plus CAPTURE/EXTRA_TURN flags
+	 */
+	public int move(final int[] pits, final int side, final int house) throws InvalidParameterException {
+		return move(pits, side, house, null);
+	}
+
+	/**
+	 * Applies a move of the side to move in place, updating the side and the
+	 * hash pit by pit while sowing and capturing.
+	 *
+	 * @return next side to play plus CAPTURE/EXTRA_TURN flags
+	 */
+	public int move(final Position position, final int house) throws InvalidParameterException {
+		final int side = position.side;
+		final int result = move(position.pits, side, house, position);
+		position.side = result & SIDE_MASK;
+		position.hash ^= zobrist.side(side) ^ zobrist.side(position.side);
+		return result;
+	}
+
+	// Sets a pit, keeping the position hash when there is one
+	private void set(final int[] pits, final int pit, final int stones, final Position position) {
+		if (position != null) {
+			position.hash ^= zobrist.key(pit, pits[pit]) ^ zobrist.key(pit, stones);
+		}
+		pits[pit] = stones;
+	}
+
+	private int move(final int[] pits, final int side, final int house, final Position position)
+			throws InvalidParameterException {
+		if ((side != TOP && side != BOTTOM) || house < 0 || house >= houses) {
+			throw new InvalidParameterException();
+		}
+		final int[] order = cyclePits[side];
+		final int own = side * half;
+		final int stones = pits[own + house];
+
+		// Cannot distribute 0 stones.
+		if (stones == 0) {
+			throw new InvalidParameterException();
+		}
+		set(pits, own + house, 0, position);
+
+		// Whole laps go to every pit of the cycle at once
+		final int laps = stones / cycle;
+		if (laps > 0) {
+			for (int k = 0; k < cycle; k++) {
+				set(pits, order[k], pits[order[k]] + laps, position);
+			}
+		}
+
+		// Remainder, starting right after the picked house
+		final int from = house + 1;
+		final int to = from + stones % cycle;
+		for (int k = from, end = Math.min(to, cycle); k < end; k++) {
+			set(pits, order[k], pits[order[k]] + 1, position);
+		}
+		for (int k = 0, end = to - cycle; k < end; k++) {
+			set(pits, order[k], pits[order[k]] + 1, position);
+		}
+
+		int result = side ^ 1;
+		final int last = (house + stones) % cycle;
+
+		// Verify & capture
+		if (last < houses && pits[own + last] == 1) {
+			final int front = opposite[side][last];
+			if (pits[front] > 0) {
+				set(pits, own + houses, pits[own + houses] + pits[front], position);
+				set(pits, front, 0, position);
+				result |= CAPTURE;
+			}
+		}
+
+		// Keep turn
+		if (last == houses) {
+			result = side | EXTRA_TURN;
+		}
+
+		// Check Finish, the rival of the next player keeps its stones
+		final int next = result & SIDE_MASK;
+		if (isEmpty(pits, next)) {
+			final int other = offset(next ^ 1);
+			int remaining = 0;
+			for (int i = 0; i < houses; i++) {
+				remaining += pits[other + i];
+				set(pits, other + i, 0, position);
+			}
+			set(pits, other + houses, pits[other + houses] + remaining, position);
+			result = (result & ~SIDE_MASK) | FINISHED;
+		}
+		return result;
+	}
+
+	public boolean isEmpty(final int[] pits, final int side) {
+		final int own = offset(side);
+		for (int i = 0; i < houses; i++) {
+			if (pits[own + i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int total(final int[] pits) {
+		int total = 0;
+		for (int i = 0; i < this.pits; i++) {
+			total += pits[i];
+		}
+		return total;
+	}
+}
@@ -0,0 +1,64 @@
+package com.egorbatik.mancala.engine;
+
+/**
+ * Pits, side to move and their Zobrist hash, kept in sync by
+ * {@link MancalaEngine#move(Position, int)}. Mutable and not thread safe, a
+ * search keeps one per thread plus a stack of copies to unmake.
+ *
+ * @author egorbatik
+ *
+ */
+public final class Position {
+
+	final MancalaEngine engine;
+	final int[] pits;
+	int side;
+	long hash;
+
+	private Position(final MancalaEngine engine, final int[] pits, final int side, final long hash) {
+		this.engine = engine;
+		this.pits = pits;
+		this.side = side;
+		this.hash = hash;
+	}
+
+	/**
+	 * Wraps the pits (not copied) and hashes them
+	 */
+	public static Position of(final MancalaEngine engine, final int[] pits, final int side) {
+		return new Position(engine, pits, side, engine.zobrist().hash(pits, side));
+	}
+
+	/**
+	 * Wraps the pits (not copied) with an already known hash
+	 */
+	public static Position of(final MancalaEngine engine, final int[] pits, final int side, final long hash) {
+		return new Position(engine, pits, side, hash);
+	}
+
+	public Position copy() {
+		return new Position(engine, pits.clone(), side, hash);
+	}
+
+	public void copyFrom(final Position other) {
+		System.arraycopy(other.pits, 0, pits, 0, pits.length);
+		side = other.side;
+		hash = other.hash;
+	}
+
+	public MancalaEngine getEngine() {
+		return engine;
+	}
+
+	public int[] getPits() {
+		return pits;
+	}
+
+	public int getSide() {
+		return side;
+	}
+
+	public long getHash() {
+		return hash;
+	}
+}
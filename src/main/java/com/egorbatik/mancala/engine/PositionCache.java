@@ -0,0 +1,160 @@
+package com.egorbatik.mancala.engine;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free cache keyed by {@link Position} hash (Zobrist), for
+ * anything worth remembering about a position: evaluations, suggestions, legal
+ * moves...
+ *
+ * A power of two of slots, one entry per slot picked by the hash, replaced by
+ * a CAS according to the {@link Replacement} policy. Entries are immutable, a
+ * reader never sees half an entry. Two positions may share a slot but not the
+ * full 64 bits key.
+ *
+ * @author egorbatik
+ *
+ */
+public final class PositionCache<V> {
+
+	public enum Replacement {
+		// The newest entry always wins
+		ALWAYS,
+		// Keeps the entry of higher priority (e.g. search depth)
+		PRIORITY,
+		// As PRIORITY, but entries of an older generation are always replaced
+		AGING
+	}
+
+	private static final class Entry<V> {
+		private final long key;
+		private final V value;
+		private final int priority;
+		private final int generation;
+
+		private Entry(final long key, final V value, final int priority, final int generation) {
+			this.key = key;
+			this.value = value;
+			this.priority = priority;
+			this.generation = generation;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry<V>> slots;
+	private final int mask;
+	private final Replacement replacement;
+
+	private volatile int generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * @param bits log2 of the number of slots
+	 */
+	public PositionCache(final int bits, final Replacement replacement) {
+		if (bits < 1 || bits > 30 || replacement == null) {
+			throw new IllegalArgumentException("Invalid position cache");
+		}
+		this.slots = new AtomicReferenceArray<>(1 << bits);
+		this.mask = (1 << bits) - 1;
+		this.replacement = replacement;
+	}
+
+	private int index(final long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	public V get(final long key) {
+		final Entry<V> entry = slots.get(index(key));
+		if (entry != null && entry.key == key) {
+			hits.increment();
+			return entry.value;
+		}
+		misses.increment();
+		return null;
+	}
+
+	public V get(final Position position) {
+		return get(position.hash);
+	}
+
+	/**
+	 * Stores the value unless the policy keeps the current entry of the slot
+	 *
+	 * @return if it was stored
+	 */
+	public boolean put(final long key, final V value, final int priority) {
+		final int index = index(key);
+		final Entry<V> entry = new Entry<>(key, value, priority, generation);
+		while (true) {
+			final Entry<V> current = slots.get(index);
+			if (!replaces(entry, current)) {
+				rejections.increment();
+				return false;
+			}
+			if (slots.compareAndSet(index, current, entry)) {
+				stores.increment();
+				return true;
+			}
+		}
+	}
+
+	public boolean put(final Position position, final V value, final int priority) {
+		return put(position.hash, value, priority);
+	}
+
+	private boolean replaces(final Entry<V> entry, final Entry<V> current) {
+		if (current == null || current.key == entry.key || replacement == Replacement.ALWAYS) {
+			return true;
+		}
+		if (replacement == Replacement.AGING && current.generation != entry.generation) {
+			return true;
+		}
+		return entry.priority >= current.priority;
+	}
+
+	/**
+	 * Ages every entry at once, for the AGING policy
+	 */
+	public void newGeneration() {
+		generation++;
+	}
+
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, null);
+		}
+	}
+
+	// Metrics
+
+	public int getCapacity() {
+		return slots.length();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getStores() {
+		return stores.sum();
+	}
+
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	public double getHitRate() {
+		final long hits = getHits();
+		final long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+}
@@ -0,0 +1,66 @@
+package com.egorbatik.mancala.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys of a geometry: one random key per (pit, stones) and one per
+ * side to move. The hash of a position is the xor of its keys, so a move only
+ * xors out the old count and xors in the new one of the pits it touches.
+ *
+ * The keys come from a fixed seed, the same position hashes the same on every
+ * node. Counts beyond the table are mixed on the fly.
+ *
+ * @author egorbatik
+ *
+ */
+public final class Zobrist {
+
+	private static final long SEED = 0x6D616E63616C61L;
+
+	// Stones per pit with a precomputed key
+	private static final int TABLE_STONES = 128;
+
+	private final long[] keys;
+	private final long[] sides;
+
+	Zobrist(final int pits) {
+		final SplittableRandom random = new SplittableRandom(SEED + pits);
+		this.keys = new long[pits * TABLE_STONES];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+		}
+		// TOP, BOTTOM, FINISHED
+		this.sides = new long[] { random.nextLong(), random.nextLong(), random.nextLong() };
+	}
+
+	/**
+	 * SplitMix64 finalizer, spreads a value over the 64 bits
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public long key(final int pit, final int stones) {
+		if (stones < TABLE_STONES) {
+			return keys[pit * TABLE_STONES + stones];
+		}
+		return mix(SEED ^ ((long) pit << 32) ^ stones);
+	}
+
+	public long side(final int side) {
+		return sides[side];
+	}
+
+	/**
+	 * Hash from scratch, only needed once per position coming from outside
+	 */
+	public long hash(final int[] pits, final int side) {
+		long hash = sides[side];
+		for (int i = 0; i < pits.length; i++) {
+			hash ^= key(i, pits[i]);
+		}
+		return hash;
+	}
+}
@@ -1,10 +1,15 @@
 package com.egorbatik.mancala.model;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -23,14 +28,73 @@ public class Board {
 	
 	
 	@Column
+	@Convert(converter = PitsConverter.class)
 	@Getter
-	@Setter
 	private Integer[] topPlayerBoard;
 	
 	@Column
+	@Convert(converter = PitsConverter.class)
 	@Getter
-	@Setter
 	private Integer[] bottomPlayerBoard;
 
-	
+	// Applied moves, a board without moves is an orphan candidate
+	@Getter
+	@Setter
+	private Integer moves;
+
+	@Getter
+	@Setter
+	private Long lastUpdate;
+
+	// Zobrist hash of pits and next player, null when unknown
+	@JsonIgnore
+	@Getter
+	@Setter
+	private Long positionHash;
+
+	// Optimistic lock, a snapshot written over a newer one (another node wrote
+	// it meanwhile) fails instead of losing that node's moves. Volatile, the
+	// cache sets it after a write without the board lock
+	@Version
+	@JsonIgnore
+	@Getter
+	@Setter
+	private volatile Long version;
+
+	// The board was loaded from a snapshot, the move log tail is still to replay
+	@Transient
+	@JsonIgnore
+	@Getter
+	@Setter
+	private boolean stale = true;
+
+	// New pits invalidate the hash, the service sets it back after a move
+	public void setTopPlayerBoard(final Integer[] topPlayerBoard) {
+		this.topPlayerBoard = topPlayerBoard;
+		this.positionHash = null;
+	}
+
+	public void setBottomPlayerBoard(final Integer[] bottomPlayerBoard) {
+		this.bottomPlayerBoard = bottomPlayerBoard;
+		this.positionHash = null;
+	}
+
+	/**
+	 * Detached copy with its own pit arrays, taken under the board lock so it's
+	 * never half way through a move
+	 */
+	public Board copy() {
+		final Board copy = new Board();
+		copy.id = id;
+		copy.nextPlayer = nextPlayer;
+		copy.topPlayerBoard = topPlayerBoard == null ? null : topPlayerBoard.clone();
+		copy.bottomPlayerBoard = bottomPlayerBoard == null ? null : bottomPlayerBoard.clone();
+		copy.moves = moves;
+		copy.lastUpdate = lastUpdate;
+		copy.positionHash = positionHash;
+		copy.version = version;
+		copy.stale = stale;
+		return copy;
+	}
+
 }
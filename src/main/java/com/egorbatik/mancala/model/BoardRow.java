@@ -0,0 +1,74 @@
+package com.egorbatik.mancala.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The board table as the reactive (R2DBC) stack reads it: the same columns the
+ * JPA {@link Board} maps, raw. The pits stay in the {@link PitsConverter}
+ * format and the next player is its ordinal.
+ *
+ * The id comes from the JPA sequence, so a new row says it is new itself.
+ *
+ * @author egorbatik
+ *
+ */
+@Table("board")
+@Getter
+@Setter
+public class BoardRow implements Persistable<Long> {
+
+	private static final PitsConverter PITS = new PitsConverter();
+
+	// Engine side -> player, values() clones on every call
+	private static final PlayerType[] SIDES = PlayerType.values();
+
+	@Id
+	private Long id;
+
+	private Integer nextPlayer;
+
+	private byte[] topPlayerBoard;
+
+	private byte[] bottomPlayerBoard;
+
+	private Integer moves;
+
+	private Long lastUpdate;
+
+	private Long positionHash;
+
+	// The JPA optimistic lock, bumped by every reactive update too
+	private Long version;
+
+	@Transient
+	private boolean inserted;
+
+	@Override
+	public boolean isNew() {
+		return inserted;
+	}
+
+	/**
+	 * Same board as the JPA stack returns it
+	 */
+	public Board toBoard() {
+		final Board board = new Board();
+		board.setId(id);
+		board.setNextPlayer(SIDES[nextPlayer]);
+		board.setTopPlayerBoard(PITS.convertToEntityAttribute(topPlayerBoard));
+		board.setBottomPlayerBoard(PITS.convertToEntityAttribute(bottomPlayerBoard));
+		board.setMoves(moves);
+		board.setLastUpdate(lastUpdate);
+		board.setPositionHash(positionHash);
+		board.setVersion(version);
+		board.setStale(false);
+		return board;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.egorbatik.mancala.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A move: who plays and which house (1 based)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Move {
+
+	private PlayerType player;
+
+	private Integer house;
+
+}
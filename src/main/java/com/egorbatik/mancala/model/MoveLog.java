@@ -0,0 +1,46 @@
+package com.egorbatik.mancala.model;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One applied move of a board, "seq" is the board move count after it (1
+ * based). Rows are only appended, one per seq: when two nodes played the
+ * same board the first row written wins.
+ *
+ * @author egorbatik
+ *
+ */
+@Entity
+@Table(indexes = @Index(columnList = "boardId, seq", unique = true))
+@Getter
+@Setter
+@NoArgsConstructor
+public class MoveLog {
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private Long id;
+
+	private Long boardId;
+
+	private Integer seq;
+
+	private PlayerType player;
+
+	private Integer house;
+
+	public MoveLog(final Long boardId, final Integer seq, final PlayerType player, final Integer house) {
+		this.boardId = boardId;
+		this.seq = seq;
+		this.player = player;
+		this.house = house;
+	}
+}
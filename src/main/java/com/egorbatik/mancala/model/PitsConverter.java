@@ -0,0 +1,48 @@
+package com.egorbatik.mancala.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a half board as a fixed-width byte array (2 bytes per pit, big
+ * endian, unsigned) instead of a Java serialized Integer[].
+ *
+ * @author egorbatik
+ *
+ */
+@Converter
+public class PitsConverter implements AttributeConverter<Integer[], byte[]> {
+
+	public static final int BYTES_PER_PIT = 2;
+	public static final int MAX_STONES = 0xFFFF;
+
+	@Override
+	public byte[] convertToDatabaseColumn(final Integer[] pits) {
+		if (pits == null) {
+			return null;
+		}
+		final byte[] bytes = new byte[pits.length * BYTES_PER_PIT];
+		for (int i = 0; i < pits.length; i++) {
+			final int stones = pits[i];
+			if (stones < 0 || stones > MAX_STONES) {
+				throw new IllegalArgumentException("Pit out of range: " + stones);
+			}
+			bytes[i * BYTES_PER_PIT] = (byte) (stones >>> 8);
+			bytes[i * BYTES_PER_PIT + 1] = (byte) stones;
+		}
+		return bytes;
+	}
+
+	@Override
+	public Integer[] convertToEntityAttribute(final byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		final Integer[] pits = new Integer[bytes.length / BYTES_PER_PIT];
+		for (int i = 0; i < pits.length; i++) {
+			pits[i] = ((bytes[i * BYTES_PER_PIT] & 0xFF) << 8) | (bytes[i * BYTES_PER_PIT + 1] & 0xFF);
+		}
+		return pits;
+	}
+
+}
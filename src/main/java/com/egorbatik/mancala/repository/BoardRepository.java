@@ -1,13 +1,53 @@
 package com.egorbatik.mancala.repository;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.egorbatik.mancala.model.Board;
 
 @Repository
 @Component
-public interface BoardRepository extends CrudRepository<Board, Long> {
+public interface BoardRepository extends PagingAndSortingRepository<Board, Long> {
+
+	/**
+	 * Keyset page: boards after "id" in the order of the page, no count query.
+	 * Resuming from the last id of a page never skips nor repeats a board.
+	 */
+	Slice<Board> findByIdGreaterThan(Long id, Pageable pageable);
+
+	/**
+	 * Bulk delete of boards that never got a move and were not touched since
+	 * "before", in a single statement (no entity loading).
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from Board b where (b.moves is null or b.moves = 0) and b.lastUpdate < :before")
+	int deleteOrphans(@Param("before") Long before);
+
+	/**
+	 * Keyset page of the ids {@link #deleteOrphans(Long)} would delete, the
+	 * ones after "after" in id order.
+	 */
+	@Query("select b.id from Board b where (b.moves is null or b.moves = 0) and b.lastUpdate < :before and b.id > :after order by b.id")
+	List<Long> findOrphanIds(@Param("before") Long before, @Param("after") Long after, Pageable pageable);
+
+	/**
+	 * Deletes those of "ids" that are still orphans, the statement checks
+	 * again.
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from Board b where b.id in :ids and (b.moves is null or b.moves = 0) and b.lastUpdate < :before")
+	int deleteOrphans(@Param("before") Long before, @Param("ids") Collection<Long> ids);
 
 }
@@ -0,0 +1,544 @@
+package com.egorbatik.mancala.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.BoardLocks;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind cache in front of the JPA {@link BoardRepository}.
+ *
+ * Active boards are kept in memory, saves only mark them dirty and the dirty
+ * ones are written in batches by a scheduled flush, on eviction, or right away
+ * when the game finishes. Flush and eviction write copies taken under the
+ * board lock. A write older than the stored board (another node wrote it,
+ * see the Board version) is rejected and the cached board dropped. New
+ * boards (no id yet) are written through to get the id.
+ *
+ * In a cluster (CLUSTER_NODES) every save is written through, so a move is
+ * never answered before its version checked write went through.
+ *
+ * Every bean asking for a BoardRepository gets this one (Primary).
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Primary
+@Repository
+public class CachedBoardRepository implements BoardRepository {
+
+	private static class Entry {
+		private final Board board;
+		private volatile long lastAccess;
+		private volatile boolean dirty;
+		// Copied by a flush still writing it, a reload would read the row before it
+		private volatile boolean writing;
+
+		private Entry(final Board board) {
+			this.board = board;
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+
+	@Value("${BOARD_CACHE_MAX_SIZE:10000}")
+	private Integer BOARD_CACHE_MAX_SIZE;
+
+	@Value("${BOARD_CACHE_IDLE_MS:300000}")
+	private Long BOARD_CACHE_IDLE_MS;
+
+	@Value("${CLUSTER_NODES:}")
+	private String CLUSTER_NODES;
+
+	@Autowired
+	@Qualifier("boardRepository")
+	private BoardRepository boardRepository;
+
+	@Autowired
+	private BoardLocks boardLocks;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	// Orphan ids locked and deleted at a time
+	private static final int ORPHAN_PAGE = 500;
+
+	private final Map<Long, Entry> boards = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong flushedBoards = new AtomicLong();
+	private final AtomicLong conflicts = new AtomicLong();
+
+	// Writes of this node one at a time, each one with the version it leaves
+	private final Lock writeLock = new ReentrantLock();
+
+	// One flush at a time. Not synchronized: a virtual thread waiting on the
+	// JDBC writes would pin its carrier thread
+	private final Lock flushLock = new ReentrantLock();
+
+	// Cache access
+
+	private Entry cache(final Board board) {
+		final Entry entry = new Entry(board);
+		final Entry previous = boards.putIfAbsent(board.getId(), entry);
+		if (previous != null) {
+			return previous;
+		}
+		if (boards.size() > BOARD_CACHE_MAX_SIZE) {
+			evictOldest(boards.size() - BOARD_CACHE_MAX_SIZE + BOARD_CACHE_MAX_SIZE / 10);
+		}
+		return entry;
+	}
+
+	// Skips a board whose lock is taken, it's in use so not worth evicting, and
+	// one a flush is writing, it's evicted once written. False when it stays
+	private boolean evict(final Long id, final Entry entry) {
+		final Lock lock = boardLocks.lockFor(id);
+		if (!lock.tryLock()) {
+			return false;
+		}
+		try {
+			if (entry.writing || !boards.remove(id, entry)) {
+				return false;
+			}
+			if (entry.dirty) {
+				entry.dirty = false;
+				write(entry.board, entry.board.copy());
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void evictOldest(final int count) {
+		boards.entrySet().stream().sorted(Comparator.comparingLong(e -> e.getValue().lastAccess)).limit(count)
+				.collect(Collectors.toList()).forEach(e -> evict(e.getKey(), e.getValue()));
+	}
+
+	// Writes a snapshot of "source", false if it was stale
+	private boolean write(final Board source, final Board snapshot) {
+		writeLock.lock();
+		try {
+			track(source, boardRepository.save(snapshot));
+			flushedBoards.incrementAndGet();
+			return true;
+		} catch (OptimisticLockingFailureException e) {
+			// Solved out of the write lock, it takes the board lock
+		} finally {
+			writeLock.unlock();
+		}
+		conflict(snapshot);
+		return false;
+	}
+
+	// Cluster saves: nothing is ever left dirty, so no flush or eviction writes
+	// the board meanwhile and the board lock of the caller is enough
+	private boolean writeThrough(final Board board) {
+		try {
+			track(board, boardRepository.save(board));
+			flushedBoards.incrementAndGet();
+			return true;
+		} catch (OptimisticLockingFailureException e) {
+			conflict(board);
+			return false;
+		}
+	}
+
+	// The next write of the board the snapshot was taken from carries the
+	// version just written. Holds the write lock, not the board lock (a mover
+	// may be waiting for the write lock with it)
+	private static void track(final Board source, final Board saved) {
+		if (saved.getVersion() != null && (source.getVersion() == null || source.getVersion() < saved.getVersion())) {
+			source.setVersion(saved.getVersion());
+		}
+	}
+
+	// The database has a newer snapshot than the one written: another node took
+	// the board meanwhile, the cached one is dropped and read again when needed
+	private void conflict(final Board snapshot) {
+		final Lock lock = boardLocks.lockFor(snapshot.getId());
+		lock.lock();
+		try {
+			final Entry entry = boards.get(snapshot.getId());
+			if (entry != null && !Objects.equals(entry.board.getVersion(), snapshot.getVersion())) {
+				// Rejected by a newer write of this node, nothing is lost
+				return;
+			}
+			if (entry != null) {
+				boards.remove(snapshot.getId(), entry);
+			}
+		} finally {
+			lock.unlock();
+		}
+		conflicts.incrementAndGet();
+		log.warn("Board {} was written by another node, the moves cached here since version {} are dropped",
+				snapshot.getId(), snapshot.getVersion());
+	}
+
+	/**
+	 * Writes every dirty board in a single batch and evicts idle boards.
+	 * Writes of this node go one at a time and leave their version in the
+	 * cache, so a rejected write is either an older copy of this node (a
+	 * finished game was written meanwhile) or another node's doing.
+	 */
+	@Scheduled(fixedDelayString = "${BOARD_CACHE_FLUSH_MS:1000}")
+	public void flush() {
+		flushLock.lock();
+		try {
+			final List<Entry> entries = new ArrayList<>();
+			final List<Board> dirty = new ArrayList<>();
+			for (Map.Entry<Long, Entry> cached : boards.entrySet()) {
+				final Entry entry = cached.getValue();
+				if (entry.dirty) {
+					// Copied under the board lock, never half way through a move
+					final Lock lock = boardLocks.lockFor(cached.getKey());
+					lock.lock();
+					try {
+						entry.dirty = false;
+						entry.writing = true;
+						entries.add(entry);
+						dirty.add(entry.board.copy());
+					} finally {
+						lock.unlock();
+					}
+				}
+			}
+			if (!dirty.isEmpty()) {
+				try {
+					boolean stale = false;
+					writeLock.lock();
+					try {
+						// Saved in order
+						final Iterator<Entry> source = entries.iterator();
+						boardRepository.saveAll(dirty).forEach(saved -> track(source.next().board, saved));
+						flushedBoards.addAndGet(dirty.size());
+					} catch (OptimisticLockingFailureException e) {
+						stale = true;
+					} finally {
+						writeLock.unlock();
+					}
+					if (stale) {
+						// A stale board fails the whole batch, the others are written one by one
+						for (int i = 0; i < dirty.size(); i++) {
+							write(entries.get(i).board, dirty.get(i));
+						}
+					}
+				} finally {
+					entries.forEach(entry -> entry.writing = false);
+				}
+				flushes.incrementAndGet();
+			}
+
+			final long idleLimit = System.currentTimeMillis() - BOARD_CACHE_IDLE_MS;
+			boards.forEach((id, entry) -> {
+				if (entry.lastAccess < idleLimit) {
+					evict(id, entry);
+				}
+			});
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the board if dirty and drops it, for a board another node owns
+	 * now. The caller holds the board lock. A board a flush is still writing
+	 * stays, the idle eviction takes it later.
+	 *
+	 * @return whether the board was dropped
+	 */
+	public boolean evict(final Long id) {
+		final Entry entry = boards.get(id);
+		return entry != null && evict(id, entry);
+	}
+
+	public Set<Long> getCachedIds() {
+		return Collections.unmodifiableSet(boards.keySet());
+	}
+
+	@PostConstruct
+	public void registerMetrics() {
+		Gauge.builder("mancala.boards.active", this, CachedBoardRepository::getSize)
+				.description("Boards in the cache").register(meterRegistry);
+		FunctionCounter.builder("mancala.boards.cache.hits", this, CachedBoardRepository::getHits)
+				.register(meterRegistry);
+		FunctionCounter.builder("mancala.boards.cache.misses", this, CachedBoardRepository::getMisses)
+				.register(meterRegistry);
+		FunctionCounter.builder("mancala.boards.cache.flushed", this, CachedBoardRepository::getFlushedBoards)
+				.register(meterRegistry);
+		FunctionCounter.builder("mancala.boards.cache.conflicts", this, CachedBoardRepository::getConflicts)
+				.description("Stale board writes rejected, another node wrote the board").register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Flushing board cache before shutdown");
+		flush();
+	}
+
+	// Metrics
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	public long getFlushedBoards() {
+		return flushedBoards.get();
+	}
+
+	public long getConflicts() {
+		return conflicts.get();
+	}
+
+	public int getSize() {
+		return boards.size();
+	}
+
+	// BoardRepository
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S extends Board> S save(final S board) {
+		if (board.getId() == null) {
+			final S saved = boardRepository.save(board);
+			cache(saved);
+			return saved;
+		}
+		Entry entry = boards.get(board.getId());
+		if (entry == null || entry.board != board) {
+			entry = new Entry(board);
+			boards.put(board.getId(), entry);
+		}
+		entry.lastAccess = System.currentTimeMillis();
+		if (!CLUSTER_NODES.isEmpty()) {
+			entry.dirty = false;
+			if (!writeThrough(board)) {
+				throw new ConcurrentModificationException("Board " + board.getId() + " changed on another node");
+			}
+		} else if (board.getNextPlayer() == PlayerType.FINISHED) {
+			// Finished games are written right away
+			entry.dirty = false;
+			if (!write(board, board)) {
+				throw new ConcurrentModificationException("Board " + board.getId() + " changed on another node");
+			}
+		} else {
+			entry.dirty = true;
+		}
+		return (S) entry.board;
+	}
+
+	@Override
+	public <S extends Board> Iterable<S> saveAll(final Iterable<S> boards) {
+		final List<S> saved = new ArrayList<>();
+		final List<S> created = new ArrayList<>();
+		boards.forEach(board -> {
+			if (board.getId() == null) {
+				created.add(board);
+			} else {
+				saved.add(save(board));
+			}
+		});
+		// New boards go through in one call, the inserts are batched
+		if (!created.isEmpty()) {
+			boardRepository.saveAll(created).forEach(board -> {
+				cache(board);
+				saved.add(board);
+			});
+		}
+		return saved;
+	}
+
+	@Override
+	public Optional<Board> findById(final Long id) {
+		final Entry entry = boards.get(id);
+		if (entry != null) {
+			hits.incrementAndGet();
+			entry.lastAccess = System.currentTimeMillis();
+			return Optional.of(entry.board);
+		}
+		misses.incrementAndGet();
+		return boardRepository.findById(id).map(board -> cache(board).board);
+	}
+
+	@Override
+	public boolean existsById(final Long id) {
+		return boards.containsKey(id) || boardRepository.existsById(id);
+	}
+
+	@Override
+	public Iterable<Board> findAll() {
+		flush();
+		return boardRepository.findAll();
+	}
+
+	@Override
+	public Iterable<Board> findAll(final Sort sort) {
+		flush();
+		return boardRepository.findAll(sort);
+	}
+
+	@Override
+	public Page<Board> findAll(final Pageable pageable) {
+		flush();
+		return boardRepository.findAll(pageable);
+	}
+
+	@Override
+	public Slice<Board> findByIdGreaterThan(final Long id, final Pageable pageable) {
+		flush();
+		return boardRepository.findByIdGreaterThan(id, pageable);
+	}
+
+	@Override
+	public Iterable<Board> findAllById(final Iterable<Long> ids) {
+		flush();
+		return boardRepository.findAllById(ids);
+	}
+
+	@Override
+	public long count() {
+		return boardRepository.count();
+	}
+
+	@Override
+	public void deleteById(final Long id) {
+		boards.remove(id);
+		boardRepository.deleteById(id);
+	}
+
+	@Override
+	public void delete(final Board board) {
+		boards.remove(board.getId());
+		// The stored version, the one in hand may be older
+		boardRepository.findById(board.getId()).ifPresent(boardRepository::delete);
+	}
+
+	@Override
+	public void deleteAllById(final Iterable<? extends Long> ids) {
+		ids.forEach(boards::remove);
+		boardRepository.deleteAllById(ids);
+	}
+
+	@Override
+	public void deleteAll(final Iterable<? extends Board> boards) {
+		boards.forEach(this::delete);
+	}
+
+	@Override
+	public void deleteAll() {
+		boards.clear();
+		boardRepository.deleteAll();
+	}
+
+	// Not in the transaction of the interface method: the flush commits each
+	// write before it lets go of the write lock, and a stale board must not
+	// roll back the rest of it
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public int deleteOrphans(final Long before) {
+		// The database must see the pending moves before deciding
+		flush();
+		int deleted = 0;
+		long after = 0;
+		List<Long> orphans;
+		do {
+			orphans = boardRepository.findOrphanIds(before, after, PageRequest.of(0, ORPHAN_PAGE));
+			if (!orphans.isEmpty()) {
+				deleted += deleteOrphans(before, orphans);
+				after = orphans.get(orphans.size() - 1);
+			}
+		} while (orphans.size() == ORPHAN_PAGE);
+		return deleted;
+	}
+
+	@Override
+	public List<Long> findOrphanIds(final Long before, final Long after, final Pageable pageable) {
+		return boardRepository.findOrphanIds(before, after, pageable);
+	}
+
+	/**
+	 * Deleted under the board locks, so a first move can't land between the
+	 * check and the delete. A board in use (lock taken) or with moves not yet
+	 * written is skipped, a clean cached orphan is dropped with it.
+	 */
+	@Override
+	public int deleteOrphans(final Long before, final Collection<Long> ids) {
+		final List<Lock> held = new ArrayList<>();
+		final List<Long> orphans = new ArrayList<>();
+		try {
+			for (final Long id : ids) {
+				final Lock lock = boardLocks.lockFor(id);
+				if (!lock.tryLock()) {
+					continue;
+				}
+				held.add(lock);
+				final Entry entry = boards.get(id);
+				if (entry != null) {
+					final Integer moves = entry.board.getMoves();
+					final Long lastUpdate = entry.board.getLastUpdate();
+					if (entry.dirty || entry.writing || (moves != null && moves != 0) || lastUpdate == null
+							|| lastUpdate >= before) {
+						continue;
+					}
+					boards.remove(id, entry);
+				}
+				orphans.add(id);
+			}
+			return orphans.isEmpty() ? 0 : boardRepository.deleteOrphans(before, orphans);
+		} finally {
+			held.forEach(Lock::unlock);
+		}
+	}
+
+}
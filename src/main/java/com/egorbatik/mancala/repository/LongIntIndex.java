@@ -0,0 +1,125 @@
+package com.egorbatik.mancala.repository;
+
+import java.util.Arrays;
+
+import com.egorbatik.mancala.engine.Zobrist;
+
+/**
+ * Open addressing map of positive long keys to int values, no boxing and a
+ * single array per side. Linear probing, removals shift the following keys
+ * back so no tombstones are left. Not thread safe.
+ *
+ * @author egorbatik
+ *
+ */
+final class LongIntIndex {
+
+	// Keys are ids, never 0
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	LongIntIndex(final int expected) {
+		final int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private int slot(final long key) {
+		return (int) Zobrist.mix(key) & mask;
+	}
+
+	/**
+	 * Value of the key, -1 if absent
+	 */
+	int get(final long key) {
+		if (key <= 0) {
+			// Would match an empty slot
+			return -1;
+		}
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			if (keys[i] == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	void put(final long key, final int value) {
+		if (key <= 0) {
+			throw new IllegalArgumentException("Key " + key);
+		}
+		int i = slot(key);
+		while (keys[i] != EMPTY && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			if (++size > keys.length / 2) {
+				values[i] = value;
+				grow();
+				return;
+			}
+		}
+		values[i] = value;
+	}
+
+	/**
+	 * Removes the key, its value or -1 if absent
+	 */
+	int remove(final long key) {
+		if (key <= 0) {
+			return -1;
+		}
+		int i = slot(key);
+		while (keys[i] != key) {
+			if (keys[i] == EMPTY) {
+				return -1;
+			}
+			i = (i + 1) & mask;
+		}
+		final int value = values[i];
+		// Shifts back the keys of the run that probed past the hole
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			final int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		size--;
+		return value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private void grow() {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+}
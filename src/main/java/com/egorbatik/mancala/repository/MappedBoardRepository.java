@@ -0,0 +1,694 @@
+package com.egorbatik.mancala.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Board storage on a memory-mapped file of fixed size records, instead of JPA
+ * (profile "mapped"). It takes the place of the JPA repository, behind the
+ * same {@link CachedBoardRepository}.
+ *
+ * A record is the id, next player, move count, last update, position hash and
+ * every pit of a board, at HEADER + slot * record size. An index of id to slot
+ * and the sorted live ids are kept in memory and rebuilt from the file on
+ * start. Saves overwrite the record, deletes clear it and the slot is reused.
+ *
+ * Durability: every write appends the record image and the next id to a
+ * write-ahead log. The log is forced every BOARD_STORE_FORCE_MS, and only then
+ * are its images copied into the mapped file (reads see them before), so the
+ * OS never writes back a page holding a record the log can't put back. The
+ * mapped file is forced every BOARD_STORE_CHECKPOINT_MS, then the log starts
+ * over. On start the log is replayed over the file: a crash or power loss
+ * loses at most BOARD_STORE_FORCE_MS of writes, never leaves a torn record
+ * and never hands out the id of a deleted board again. A single process opens
+ * the file.
+ *
+ * Only the HOUSES geometry the file was created with is stored, and pages
+ * only come sorted by id.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Profile("mapped")
+@Repository("boardRepository")
+public class MappedBoardRepository implements BoardRepository {
+
+	private static final int MAGIC = 0x4D4E4341;
+	private static final int VERSION = 1;
+	private static final int HEADER = 64;
+	private static final int HEADER_NEXT_ID = 16;
+
+	// Record fields
+	private static final int ID = 0;
+	private static final int NEXT_PLAYER = 8;
+	private static final int HAS_HASH = 9;
+	private static final int MOVES = 12;
+	private static final int LAST_UPDATE = 16;
+	private static final int POSITION_HASH = 24;
+	private static final int PITS = 32;
+
+	private static final int SEGMENT_BITS = 14;
+	private static final int SEGMENT_RECORDS = 1 << SEGMENT_BITS;
+
+	private static final int WAL_BUFFER = 1 << 16;
+
+	// Engine side -> player, values() clones on every call
+	private static final PlayerType[] SIDES = PlayerType.values();
+
+	private final Path file;
+	private final Path walFile;
+	private final int houses;
+	private final int recordSize;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private FileChannel data;
+	private MappedByteBuffer header;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+	private FileChannel wal;
+	private ByteBuffer walBuffer;
+	private final CRC32 crc = new CRC32();
+	private ByteBuffer scratch;
+
+	// Images logged but not in the mapped file yet, by slot
+	private final Map<Integer, byte[]> pending = new HashMap<>();
+
+	private LongIntIndex index;
+
+	// Live ids in order, for the keyset pages
+	private long[] ids = new long[1024];
+	private int idCount;
+
+	// Slots below highWater that are free, as a stack
+	private int[] free = new int[64];
+	private int freeCount;
+	private int highWater;
+
+	private long nextId;
+
+	public MappedBoardRepository(@Value("${BOARD_STORE_FILE:./data/mancala.boards}") final String file,
+			@Value("${HOUSES:6}") final Integer houses) {
+		MancalaEngine.forHouses(houses);
+		this.file = Paths.get(file);
+		this.walFile = Paths.get(file + ".wal");
+		this.houses = houses;
+		// Top and bottom halves with their stores
+		this.recordSize = PITS + Integer.BYTES * 2 * (houses + 1);
+	}
+
+	// Lifecycle
+
+	@PostConstruct
+	public void open() throws IOException {
+		final Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		header = data.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		if (header.getInt(0) == 0) {
+			header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, houses).putInt(12, recordSize);
+			header.force();
+		} else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IllegalStateException(file + " is not a board store");
+		} else if (header.getInt(8) != houses) {
+			throw new IllegalStateException(file + " stores boards of " + header.getInt(8) + " houses");
+		}
+		final long records = Math.max(0, data.size() - HEADER) / recordSize;
+		do {
+			mapSegment();
+		} while ((long) segments.size() * SEGMENT_RECORDS < records);
+
+		scratch = ByteBuffer.allocate(recordSize);
+		walBuffer = ByteBuffer.allocate(WAL_BUFFER);
+		wal = FileChannel.open(walFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final int replayed = recover();
+		load();
+		checkpoint();
+		log.info("Board store {} open, {} boards, {} records replayed from the log", file, idCount, replayed);
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		checkpoint();
+		wal.close();
+		data.close();
+	}
+
+	private void mapSegment() throws IOException {
+		final long position = HEADER + (long) segments.size() * SEGMENT_RECORDS * recordSize;
+		segments.add(data.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_RECORDS * recordSize));
+	}
+
+	private MappedByteBuffer segment(final int slot) {
+		return segments.get(slot >>> SEGMENT_BITS);
+	}
+
+	private int offset(final int slot) {
+		return (slot & (SEGMENT_RECORDS - 1)) * recordSize;
+	}
+
+	private int logEntrySize() {
+		return Integer.BYTES + Long.BYTES + recordSize + Integer.BYTES;
+	}
+
+	// Log entries are slot, next id, record image and CRC32 of the three
+	private int recover() throws IOException {
+		final ByteBuffer entry = ByteBuffer.allocate(logEntrySize());
+		final byte[] image = new byte[recordSize];
+		long loggedNextId = 0;
+		int replayed = 0;
+		wal.position(0);
+		while (true) {
+			entry.clear();
+			while (entry.hasRemaining() && wal.read(entry) > 0) {
+				// Reads the whole entry
+			}
+			if (entry.hasRemaining()) {
+				break; // End of the log, or a torn last entry
+			}
+			entry.flip();
+			final int slot = entry.getInt();
+			final long next = entry.getLong();
+			entry.get(image);
+			crc.reset();
+			crc.update(entry.array(), 0, Integer.BYTES + Long.BYTES + recordSize);
+			if (entry.getInt() != (int) crc.getValue() || slot < 0) {
+				log.warn("Board store log {} broken after {} records", walFile, replayed);
+				break;
+			}
+			while (slot >>> SEGMENT_BITS >= segments.size()) {
+				mapSegment();
+			}
+			final ByteBuffer view = segment(slot).duplicate();
+			view.position(offset(slot));
+			view.put(image);
+			loggedNextId = Math.max(loggedNextId, next);
+			replayed++;
+		}
+		// The header page may not have made it to disk
+		if (loggedNextId > header.getLong(HEADER_NEXT_ID)) {
+			header.putLong(HEADER_NEXT_ID, loggedNextId);
+		}
+		return replayed;
+	}
+
+	// Index, free slots and ids from the records
+	private void load() {
+		final int capacity = segments.size() * SEGMENT_RECORDS;
+		index = new LongIntIndex(1024);
+		idCount = 0;
+		freeCount = 0;
+		highWater = 0;
+		nextId = 1;
+		for (int slot = 0; slot < capacity; slot++) {
+			final long id = segment(slot).getLong(offset(slot) + ID);
+			if (id != 0) {
+				for (int hole = highWater; hole < slot; hole++) {
+					pushFree(hole);
+				}
+				highWater = slot + 1;
+				index.put(id, slot);
+				addId(id);
+				nextId = Math.max(nextId, id + 1);
+			}
+		}
+		// Ids of deleted boards are not handed out again
+		nextId = Math.max(nextId, header.getLong(HEADER_NEXT_ID));
+	}
+
+	/**
+	 * Writes the buffered log and forces it to disk, the writes so far survive
+	 * a crash and their images go into the mapped file
+	 */
+	@Scheduled(fixedDelayString = "${BOARD_STORE_FORCE_MS:200}")
+	public void force() throws IOException {
+		final Lock write = lock.writeLock();
+		final Map<Integer, byte[]> forced;
+		write.lock();
+		try {
+			drainLog();
+			forced = new HashMap<>(pending);
+		} finally {
+			write.unlock();
+		}
+		// Writers go on meanwhile, appending after what is being forced
+		wal.force(false);
+		write.lock();
+		try {
+			// An image written again since waits for its own force
+			forced.forEach((slot, image) -> {
+				if (pending.get(slot) == image) {
+					apply(slot, image);
+				}
+			});
+		} finally {
+			write.unlock();
+		}
+	}
+
+	/**
+	 * Forces the mapped file and empties the log
+	 */
+	@Scheduled(fixedDelayString = "${BOARD_STORE_CHECKPOINT_MS:10000}")
+	public void checkpoint() throws IOException {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			// Every image logged goes in before the log is emptied
+			drainLog();
+			wal.force(false);
+			new ArrayList<>(pending.entrySet()).forEach(entry -> apply(entry.getKey(), entry.getValue()));
+			for (MappedByteBuffer segment : segments) {
+				segment.force();
+			}
+			header.force();
+			walBuffer.clear();
+			wal.truncate(0);
+			wal.position(0);
+			wal.force(true);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	// Must hold the write lock
+	private void drainLog() throws IOException {
+		walBuffer.flip();
+		while (walBuffer.hasRemaining()) {
+			wal.write(walBuffer);
+		}
+		walBuffer.clear();
+	}
+
+	// Records, must hold the write lock
+
+	// A forced image into the mapped file
+	private void apply(final int slot, final byte[] image) {
+		final ByteBuffer view = segment(slot).duplicate();
+		view.position(offset(slot));
+		view.put(image);
+		pending.remove(slot);
+	}
+
+	private void write(final int slot, final Board board) {
+		scratch.clear();
+		if (board == null) {
+			scratch.put(new byte[recordSize]);
+		} else {
+			final Integer[] top = board.getTopPlayerBoard();
+			final Integer[] bottom = board.getBottomPlayerBoard();
+			if (top == null || bottom == null || top.length != houses + 1 || bottom.length != houses + 1) {
+				throw new IllegalArgumentException("Board store only keeps boards of " + houses + " houses");
+			}
+			scratch.putLong(ID, board.getId());
+			scratch.put(NEXT_PLAYER, (byte) (board.getNextPlayer() == null ? -1 : board.getNextPlayer().ordinal()));
+			scratch.put(HAS_HASH, (byte) (board.getPositionHash() == null ? 0 : 1));
+			scratch.putInt(MOVES, board.getMoves() == null ? Integer.MIN_VALUE : board.getMoves());
+			scratch.putLong(LAST_UPDATE, board.getLastUpdate() == null ? Long.MIN_VALUE : board.getLastUpdate());
+			scratch.putLong(POSITION_HASH, board.getPositionHash() == null ? 0 : board.getPositionHash());
+			for (int i = 0; i <= houses; i++) {
+				scratch.putInt(PITS + Integer.BYTES * i, top[i]);
+				scratch.putInt(PITS + Integer.BYTES * (houses + 1 + i), bottom[i]);
+			}
+		}
+		final byte[] image = scratch.array().clone();
+
+		// Only logged, the mapped file gets it once the log is forced
+		try {
+			if (walBuffer.remaining() < logEntrySize()) {
+				drainLog();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		final int start = walBuffer.position();
+		walBuffer.putInt(slot).putLong(nextId).put(image);
+		crc.reset();
+		crc.update(walBuffer.array(), start, Integer.BYTES + Long.BYTES + recordSize);
+		walBuffer.putInt((int) crc.getValue());
+		pending.put(slot, image);
+	}
+
+	private Board read(final int slot) {
+		final byte[] image = pending.get(slot);
+		final ByteBuffer segment = image == null ? segment(slot) : ByteBuffer.wrap(image);
+		final int offset = image == null ? offset(slot) : 0;
+		final Board board = new Board();
+		board.setId(segment.getLong(offset + ID));
+		final Integer[] top = new Integer[houses + 1];
+		final Integer[] bottom = new Integer[houses + 1];
+		for (int i = 0; i <= houses; i++) {
+			top[i] = segment.getInt(offset + PITS + Integer.BYTES * i);
+			bottom[i] = segment.getInt(offset + PITS + Integer.BYTES * (houses + 1 + i));
+		}
+		board.setTopPlayerBoard(top);
+		board.setBottomPlayerBoard(bottom);
+		final byte side = segment.get(offset + NEXT_PLAYER);
+		board.setNextPlayer(side < 0 ? null : SIDES[side]);
+		final int moves = segment.getInt(offset + MOVES);
+		board.setMoves(moves == Integer.MIN_VALUE ? null : moves);
+		final long lastUpdate = segment.getLong(offset + LAST_UPDATE);
+		board.setLastUpdate(lastUpdate == Long.MIN_VALUE ? null : lastUpdate);
+		// After the pits, their setters clear it
+		board.setPositionHash(segment.get(offset + HAS_HASH) == 0 ? null : segment.getLong(offset + POSITION_HASH));
+		return board;
+	}
+
+	private int allocate() {
+		if (freeCount > 0) {
+			return free[--freeCount];
+		}
+		if (highWater == segments.size() * SEGMENT_RECORDS) {
+			try {
+				mapSegment();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return highWater++;
+	}
+
+	private void pushFree(final int slot) {
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, freeCount * 2);
+		}
+		free[freeCount++] = slot;
+	}
+
+	// Ids are handed out in order, so this is an append but for explicit ids
+	private void addId(final long id) {
+		if (idCount == ids.length) {
+			ids = Arrays.copyOf(ids, idCount * 2);
+		}
+		int at = idCount;
+		if (at > 0 && ids[at - 1] > id) {
+			at = -Arrays.binarySearch(ids, 0, idCount, id) - 1;
+			System.arraycopy(ids, at, ids, at + 1, idCount - at);
+		}
+		ids[at] = id;
+		idCount++;
+	}
+
+	private void remove(final long id) {
+		final int slot = index.remove(id);
+		if (slot < 0) {
+			return;
+		}
+		write(slot, null);
+		pushFree(slot);
+		final int at = Arrays.binarySearch(ids, 0, idCount, id);
+		System.arraycopy(ids, at + 1, ids, at, idCount - at - 1);
+		idCount--;
+	}
+
+	private List<Board> readAll(final int from, final int to) {
+		final List<Board> boards = new ArrayList<>(Math.max(0, to - from));
+		for (int i = from; i < to; i++) {
+			boards.add(read(index.get(ids[i])));
+		}
+		return boards;
+	}
+
+	// Never got a move and not touched since "before"
+	private boolean orphan(final int slot, final Long before) {
+		final byte[] image = pending.get(slot);
+		final ByteBuffer record = image == null ? segment(slot) : ByteBuffer.wrap(image);
+		final int offset = image == null ? offset(slot) : 0;
+		final int moves = record.getInt(offset + MOVES);
+		final long lastUpdate = record.getLong(offset + LAST_UPDATE);
+		return (moves == Integer.MIN_VALUE || moves == 0) && lastUpdate != Long.MIN_VALUE && lastUpdate < before;
+	}
+
+	private static void checkSort(final Sort sort) {
+		if (sort.stream().anyMatch(order -> !"id".equals(order.getProperty()) || order.isDescending())) {
+			throw new UnsupportedOperationException("Boards are only sorted by ascending id");
+		}
+	}
+
+	// BoardRepository
+
+	@Override
+	public <S extends Board> S save(final S board) {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			if (board.getId() == null) {
+				board.setId(nextId);
+			} else if (board.getId() < 1) {
+				throw new IllegalArgumentException("Board id " + board.getId());
+			}
+			int slot = index.get(board.getId());
+			if (slot < 0) {
+				slot = allocate();
+				index.put(board.getId(), slot);
+				addId(board.getId());
+				nextId = Math.max(nextId, board.getId() + 1);
+				header.putLong(HEADER_NEXT_ID, nextId);
+			}
+			write(slot, board);
+			return board;
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public <S extends Board> Iterable<S> saveAll(final Iterable<S> boards) {
+		final List<S> saved = new ArrayList<>();
+		boards.forEach(board -> saved.add(save(board)));
+		return saved;
+	}
+
+	@Override
+	public Optional<Board> findById(final Long id) {
+		if (id < 1) {
+			return Optional.empty();
+		}
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			final int slot = index.get(id);
+			return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public boolean existsById(final Long id) {
+		if (id < 1) {
+			return false;
+		}
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			return index.get(id) >= 0;
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Iterable<Board> findAll() {
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			return readAll(0, idCount);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Iterable<Board> findAll(final Sort sort) {
+		checkSort(sort);
+		return findAll();
+	}
+
+	@Override
+	public Page<Board> findAll(final Pageable pageable) {
+		checkSort(pageable.getSort());
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			if (pageable.isUnpaged()) {
+				return new PageImpl<>(readAll(0, idCount));
+			}
+			final int from = (int) Math.min(pageable.getOffset(), idCount);
+			final int to = Math.min(from + pageable.getPageSize(), idCount);
+			return new PageImpl<>(readAll(from, to), pageable, idCount);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Slice<Board> findByIdGreaterThan(final Long id, final Pageable pageable) {
+		checkSort(pageable.getSort());
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			int from = Arrays.binarySearch(ids, 0, idCount, id);
+			from = from < 0 ? -from - 1 : from + 1;
+			final int to = pageable.isUnpaged() ? idCount : Math.min(from + pageable.getPageSize(), idCount);
+			return new SliceImpl<>(readAll(from, to), pageable, to < idCount);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Iterable<Board> findAllById(final Iterable<Long> ids) {
+		final List<Board> boards = new ArrayList<>();
+		ids.forEach(id -> findById(id).ifPresent(boards::add));
+		return boards;
+	}
+
+	@Override
+	public long count() {
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			return idCount;
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public void deleteById(final Long id) {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			remove(id);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void delete(final Board board) {
+		deleteById(board.getId());
+	}
+
+	@Override
+	public void deleteAllById(final Iterable<? extends Long> ids) {
+		ids.forEach(this::deleteById);
+	}
+
+	@Override
+	public void deleteAll(final Iterable<? extends Board> boards) {
+		boards.forEach(this::delete);
+	}
+
+	@Override
+	public void deleteAll() {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			while (idCount > 0) {
+				remove(ids[idCount - 1]);
+			}
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public int deleteOrphans(final Long before) {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			int deleted = 0;
+			for (int i = idCount - 1; i >= 0; i--) {
+				if (orphan(index.get(ids[i]), before)) {
+					remove(ids[i]);
+					deleted++;
+				}
+			}
+			return deleted;
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public List<Long> findOrphanIds(final Long before, final Long after, final Pageable pageable) {
+		final Lock read = lock.readLock();
+		read.lock();
+		try {
+			final List<Long> orphans = new ArrayList<>();
+			int from = Arrays.binarySearch(ids, 0, idCount, after);
+			from = from < 0 ? -from - 1 : from + 1;
+			for (int i = from; i < idCount && (pageable.isUnpaged() || orphans.size() < pageable.getPageSize()); i++) {
+				if (orphan(index.get(ids[i]), before)) {
+					orphans.add(ids[i]);
+				}
+			}
+			return orphans;
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public int deleteOrphans(final Long before, final Collection<Long> ids) {
+		final Lock write = lock.writeLock();
+		write.lock();
+		try {
+			int deleted = 0;
+			for (final Long id : ids) {
+				final int slot = index.get(id);
+				if (slot >= 0 && orphan(slot, before)) {
+					remove(id);
+					deleted++;
+				}
+			}
+			return deleted;
+		} finally {
+			write.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.egorbatik.mancala.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.egorbatik.mancala.model.MoveLog;
+
+@Repository
+public interface MoveLogRepository extends CrudRepository<MoveLog, Long> {
+
+	/**
+	 * Moves of a board after a snapshot, in order
+	 */
+	List<MoveLog> findByBoardIdAndSeqGreaterThanOrderBySeqAsc(Long boardId, Integer seq);
+
+	/**
+	 * Every move of a page of boards, one query
+	 */
+	List<MoveLog> findByBoardIdInOrderByBoardIdAscSeqAsc(Collection<Long> boardIds);
+
+}
@@ -0,0 +1,49 @@
+package com.egorbatik.mancala.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.egorbatik.mancala.model.BoardRow;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking access to the board table, only built in the "reactive" profile.
+ *
+ * @author egorbatik
+ *
+ */
+@Repository
+public interface ReactiveBoardRepository extends R2dbcRepository<BoardRow, Long> {
+
+	/**
+	 * Next id of the JPA sequence, new boards keep one id space
+	 */
+	@Query("SELECT NEXT VALUE FOR hibernate_sequence")
+	Mono<Long> nextId();
+
+	/**
+	 * Writes the board after a move only if nobody moved since it was read
+	 * ("moves" applied), the count of updated rows is 0 otherwise
+	 */
+	@Modifying
+	@Query("UPDATE board SET next_player = :#{#row.nextPlayer}, top_player_board = :#{#row.topPlayerBoard},"
+			+ " bottom_player_board = :#{#row.bottomPlayerBoard}, moves = :#{#row.moves},"
+			+ " last_update = :#{#row.lastUpdate}, position_hash = :#{#row.positionHash},"
+			+ " version = COALESCE(version, 0) + 1"
+			+ " WHERE id = :#{#row.id} AND COALESCE(moves, 0) = :moves")
+	Mono<Integer> update(@Param("row") BoardRow row, @Param("moves") Integer moves);
+
+	/**
+	 * Move log row of a move, the id from the JPA sequence as well
+	 */
+	@Modifying
+	@Query("INSERT INTO move_log (id, board_id, seq, player, house)"
+			+ " VALUES (NEXT VALUE FOR hibernate_sequence, :boardId, :seq, :player, :house)")
+	Mono<Integer> appendMove(@Param("boardId") Long boardId, @Param("seq") Integer seq,
+			@Param("player") Integer player, @Param("house") Integer house);
+
+}
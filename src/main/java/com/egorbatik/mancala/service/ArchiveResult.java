@@ -0,0 +1,22 @@
+package com.egorbatik.mancala.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of an export or import: boards and moves processed and the id (in
+ * the exporting database) of the last board, to resume after it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveResult {
+
+	private Long boards;
+
+	private Long moves;
+
+	private Long lastBoardId;
+
+}
@@ -0,0 +1,24 @@
+package com.egorbatik.mancala.service;
+
+import com.egorbatik.mancala.model.Board;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a batch of moves: the board after the applied ones and, when the
+ * batch stopped early, the index of the first illegal move.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResult {
+
+	private Board board;
+
+	private Integer applied;
+
+	private Integer firstIllegalMove;
+
+}
@@ -0,0 +1,365 @@
+package com.egorbatik.mancala.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.MoveLog;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.repository.MoveLogRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Export and import of every board, optionally with its moves, as a stream of
+ * length-prefixed binary records over NIO channels, gzip compressed or not.
+ *
+ * Format, big endian: MAGIC, VERSION (short) and flags (byte), then one record
+ * per board: int length, long id, byte next player, int moves, long last
+ * update, byte pits per side and the pits as unsigned shorts. With HISTORY it
+ * follows the first logged seq, the count and one byte per move (player << 5 |
+ * house - 1). A zero length ends the stream.
+ *
+ * Export pages by id (keyset), memory is a page whatever the number of rows,
+ * and resumes after any board id. Import resumes skipping records, imported
+ * boards get new ids.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class BoardArchiveService {
+
+	// "MKEX"
+	static final int MAGIC = 0x4D4B4558;
+	static final short VERSION = 1;
+	static final int HEADER = 7;
+
+	static final byte HISTORY = 0x1;
+
+	private static final int BUFFER = 1 << 20;
+	private static final int GZIP_MAGIC = 0x8B1F;
+	private static final PlayerType[] PLAYERS = PlayerType.values();
+
+	@Value("${ARCHIVE_PAGE_SIZE:500}")
+	private Integer ARCHIVE_PAGE_SIZE;
+
+	@Value("${ARCHIVE_DIR:archive}")
+	private String ARCHIVE_DIR;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	// Imports go straight to the database, not through the board cache
+	@Autowired
+	@Qualifier("boardRepository")
+	private BoardRepository jpaBoardRepository;
+
+	@Autowired
+	private MoveLogRepository moveLogRepository;
+
+	@Autowired
+	private MoveJournal moveJournal;
+
+	@Autowired
+	private BoardService boardService;
+
+	// Export
+
+	/**
+	 * Writes the boards with id greater than "afterId", the channel is not
+	 * closed.
+	 */
+	public ArchiveResult export(final WritableByteChannel target, final long afterId, final boolean history,
+			final boolean compress) throws IOException {
+		GZIPOutputStream gzip = null;
+		WritableByteChannel out = target;
+		if (compress) {
+			gzip = new GZIPOutputStream(Channels.newOutputStream(target), BUFFER);
+			out = Channels.newChannel(gzip);
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+		buffer.putInt(MAGIC).putShort(VERSION).put(history ? HISTORY : 0);
+
+		long lastId = afterId;
+		long boards = 0;
+		long moves = 0;
+		Slice<Board> page;
+		do {
+			// Pending moves first, so every snapshot replays up to date
+			moveJournal.flush();
+			page = boardRepository.findByIdGreaterThan(lastId, PageRequest.of(0, ARCHIVE_PAGE_SIZE, Sort.by("id")));
+			final List<Long> ids = page.getContent().stream().map(Board::getId).collect(Collectors.toList());
+			final List<MoveLog> logs = ids.isEmpty() ? new ArrayList<>()
+					: moveLogRepository.findByBoardIdInOrderByBoardIdAscSeqAsc(ids);
+
+			int cursor = 0;
+			for (final Board board : page) {
+				final int from = cursor;
+				while (cursor < logs.size() && logs.get(cursor).getBoardId().equals(board.getId())) {
+					cursor++;
+				}
+				final List<MoveLog> boardLog = logs.subList(from, cursor);
+				if (board.isStale()) {
+					boardService.replayLog(board, boardLog);
+				}
+				writeBoard(buffer, out, board, history ? boardLog : null);
+				boards++;
+				moves += history ? boardLog.size() : 0;
+				lastId = board.getId();
+			}
+		} while (page.hasNext());
+
+		ensureWritable(buffer, out, 4);
+		buffer.putInt(0);
+		drain(buffer, out);
+		if (gzip != null) {
+			gzip.finish();
+			gzip.flush();
+		}
+		return new ArchiveResult(boards, moves, lastId);
+	}
+
+	private void writeBoard(final ByteBuffer buffer, final WritableByteChannel out, final Board board,
+			final List<MoveLog> history) throws IOException {
+		final Integer[] top = board.getTopPlayerBoard();
+		final Integer[] bottom = board.getBottomPlayerBoard();
+		final int length = 8 + 1 + 4 + 8 + 1 + (top.length + bottom.length) * 2
+				+ (history == null ? 0 : 8 + history.size());
+		if (length + 4 > buffer.capacity()) {
+			throw new IOException("Board " + board.getId() + " too large to export");
+		}
+		ensureWritable(buffer, out, length + 4);
+		buffer.putInt(length);
+		buffer.putLong(board.getId());
+		buffer.put((byte) board.getNextPlayer().ordinal());
+		buffer.putInt(board.getMoves() == null ? 0 : board.getMoves());
+		buffer.putLong(board.getLastUpdate() == null ? 0 : board.getLastUpdate());
+		buffer.put((byte) top.length);
+		for (Integer pit : top) {
+			buffer.putShort((short) pit.intValue());
+		}
+		for (Integer pit : bottom) {
+			buffer.putShort((short) pit.intValue());
+		}
+		if (history != null) {
+			buffer.putInt(history.isEmpty() ? 1 : history.get(0).getSeq());
+			buffer.putInt(history.size());
+			for (MoveLog move : history) {
+				buffer.put((byte) (move.getPlayer().ordinal() << 5 | (move.getHouse() - 1)));
+			}
+		}
+	}
+
+	private static void ensureWritable(final ByteBuffer buffer, final WritableByteChannel out, final int bytes)
+			throws IOException {
+		if (buffer.remaining() < bytes) {
+			drain(buffer, out);
+		}
+	}
+
+	private static void drain(final ByteBuffer buffer, final WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Nightly dump of every board with its moves, disabled unless ARCHIVE_CRON
+	 * is set
+	 */
+	@Scheduled(cron = "${ARCHIVE_CRON:-}")
+	public void nightly() {
+		final Path file = Paths.get(ARCHIVE_DIR).resolve("boards-" + LocalDate.now() + ".bin.gz");
+		try {
+			Files.createDirectories(file.getParent());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				final ArchiveResult result = export(channel, 0, true, true);
+				log.info("Exported {} boards and {} moves to {}", result.getBoards(), result.getMoves(), file);
+			}
+		} catch (IOException e) {
+			log.error("Export to {} failed", file, e);
+		}
+	}
+
+	// Import
+
+	/**
+	 * Reads an export, compressed or not, skipping its first "skip" boards. A
+	 * truncated stream fails after importing the complete pages, the message
+	 * tells how many boards to skip to resume.
+	 */
+	public ArchiveResult importBoards(final ReadableByteChannel source, final long skip) throws IOException {
+		final PushbackInputStream peek = new PushbackInputStream(Channels.newInputStream(source), 2);
+		final int first = peek.read();
+		final int second = peek.read();
+		if (second >= 0) {
+			peek.unread(second);
+		}
+		if (first >= 0) {
+			peek.unread(first);
+		}
+		final InputStream in = (first | second << 8) == GZIP_MAGIC ? new GZIPInputStream(peek, BUFFER) : peek;
+		final ReadableByteChannel channel = Channels.newChannel(in);
+
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+		buffer.flip();
+		fill(buffer, channel, HEADER);
+		if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+			throw new IOException("Not a board archive");
+		}
+		final boolean history = (buffer.get() & HISTORY) != 0;
+
+		final List<Board> boards = new ArrayList<>();
+		final List<List<MoveLog>> histories = new ArrayList<>();
+		long read = 0;
+		long imported = 0;
+		long moves = 0;
+		Long lastId = null;
+		try {
+			while (true) {
+				fill(buffer, channel, 4);
+				final int length = buffer.getInt();
+				if (length == 0) {
+					break;
+				}
+				if (length < 0 || length > buffer.capacity()) {
+					throw new IOException("Corrupted board record " + read);
+				}
+				fill(buffer, channel, length);
+				final int end = buffer.position() + length;
+				final long id = buffer.getLong();
+				read++;
+				if (read <= skip) {
+					buffer.position(end);
+					continue;
+				}
+				final List<MoveLog> log = new ArrayList<>();
+				boards.add(readBoard(buffer, history, log));
+				histories.add(log);
+				moves += log.size();
+				if (buffer.position() != end) {
+					throw new IOException("Corrupted board record " + read);
+				}
+				lastId = id;
+				if (boards.size() >= ARCHIVE_PAGE_SIZE) {
+					imported += save(boards, histories);
+				}
+			}
+			imported += save(boards, histories);
+		} catch (EOFException e) {
+			imported += save(boards, histories);
+			throw new EOFException("Truncated archive, resume skipping " + (skip + imported) + " boards");
+		}
+		return new ArchiveResult(imported, moves, lastId);
+	}
+
+	private Board readBoard(final ByteBuffer buffer, final boolean history, final List<MoveLog> log)
+			throws IOException {
+		final Board board = new Board();
+		final int next = buffer.get();
+		if (next < 0 || next >= PLAYERS.length) {
+			throw new IOException("Unknown player " + next);
+		}
+		board.setNextPlayer(PLAYERS[next]);
+		board.setMoves(buffer.getInt());
+		board.setLastUpdate(buffer.getLong());
+		final int half = buffer.get();
+		if (half < 2) {
+			throw new IOException("Invalid board size " + half);
+		}
+		final Integer[] top = new Integer[half];
+		final Integer[] bottom = new Integer[half];
+		for (int i = 0; i < half; i++) {
+			top[i] = Short.toUnsignedInt(buffer.getShort());
+		}
+		for (int i = 0; i < half; i++) {
+			bottom[i] = Short.toUnsignedInt(buffer.getShort());
+		}
+		board.setTopPlayerBoard(top);
+		board.setBottomPlayerBoard(bottom);
+		if (history) {
+			int seq = buffer.getInt();
+			final int count = buffer.getInt();
+			if (count < 0 || count > buffer.remaining()) {
+				throw new IOException("Invalid move count " + count);
+			}
+			for (int i = 0; i < count; i++) {
+				final int move = buffer.get();
+				// Board id is set once saved
+				log.add(new MoveLog(null, seq++, PLAYERS[move >> 5 & 1], (move & 0x1F) + 1));
+			}
+		}
+		return board;
+	}
+
+	// One batch of boards, then one of their moves
+	private int save(final List<Board> boards, final List<List<MoveLog>> histories) {
+		final int saved = boards.size();
+		if (saved == 0) {
+			return 0;
+		}
+		jpaBoardRepository.saveAll(boards);
+		final List<MoveLog> logs = new ArrayList<>();
+		for (int i = 0; i < saved; i++) {
+			for (MoveLog move : histories.get(i)) {
+				move.setBoardId(boards.get(i).getId());
+				logs.add(move);
+			}
+		}
+		if (!logs.isEmpty()) {
+			moveLogRepository.saveAll(logs);
+		}
+		boards.clear();
+		histories.clear();
+		return saved;
+	}
+
+	// At least "bytes" readable in the buffer, compacting and reading more
+	private static void fill(final ByteBuffer buffer, final ReadableByteChannel channel, final int bytes)
+			throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+}
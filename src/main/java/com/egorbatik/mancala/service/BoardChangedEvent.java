@@ -0,0 +1,24 @@
+package com.egorbatik.mancala.service;
+
+import com.egorbatik.mancala.model.PlayerType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after every applied move. The pits are the whole board after the
+ * move (TOP half then BOTTOM half) and must not be modified.
+ */
+@Getter
+@AllArgsConstructor
+public class BoardChangedEvent {
+
+	private final Long boardId;
+
+	private final Integer moves;
+
+	private final PlayerType nextPlayer;
+
+	private final int[] pits;
+
+}
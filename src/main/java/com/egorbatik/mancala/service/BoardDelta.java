@@ -0,0 +1,28 @@
+package com.egorbatik.mancala.service;
+
+import com.egorbatik.mancala.model.PlayerType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a subscriber receives: the pits that changed since its last message as
+ * flat (index, stones) pairs, or every pit when "full".
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BoardDelta {
+
+	private Long boardId;
+
+	private Integer moves;
+
+	private PlayerType nextPlayer;
+
+	private boolean full;
+
+	private int[] changes;
+
+}
@@ -0,0 +1,41 @@
+package com.egorbatik.mancala.service;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Striped locks keyed on board id. Moves on the same board are serialized,
+ * moves on different boards only meet when they hash to the same stripe.
+ *
+ * @author egorbatik
+ *
+ */
+@Component
+public class BoardLocks {
+
+	private final Lock[] locks;
+	private final int mask;
+
+	public BoardLocks(@Value("${BOARD_LOCK_STRIPES:1024}") final Integer stripes) {
+		// Power of two, so the stripe is a mask and not a modulo
+		final int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.locks = new Lock[size];
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	public Lock lockFor(final long boardId) {
+		// Spread sequential ids over the stripes
+		final long hash = boardId * 0x9E3779B97F4A7C15L;
+		return locks[(int) (hash >>> 32) & mask];
+	}
+
+	public int getStripes() {
+		return locks.length;
+	}
+}
@@ -0,0 +1,308 @@
+package com.egorbatik.mancala.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes board changes to the players over Server-Sent Events.
+ *
+ * The move thread only records the latest state of the board and schedules a
+ * send to each subscriber, the deltas are written by a small pool. A slow
+ * subscriber never queues messages: when it catches up it gets a single delta
+ * from what it last got to the latest state. Subscribers are written to one
+ * by one, so a client that stops reading holds a single sender thread and
+ * only delays itself. One whose send is blocked past PUSH_SEND_TIMEOUT_MS is
+ * dropped and its thread replaced in the pool until the write gives up.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class BoardPushService {
+
+	private static final long STALLED = -1;
+
+	private static class Subscriber {
+		private final SseEmitter emitter;
+		// Held while writing to the subscriber, not a monitor so a virtual
+		// thread blocked on the socket doesn't pin its carrier
+		private final Lock lock = new ReentrantLock();
+		// A sender is on it, and whether a newer state came meanwhile
+		private final AtomicBoolean running = new AtomicBoolean();
+		private volatile boolean pending;
+		// Start (epoch ms) of the send under way, 0 when idle, STALLED once dropped
+		private final AtomicLong sending = new AtomicLong();
+		private volatile boolean stalled;
+		private int[] lastSent;
+		private Integer lastMoves;
+
+		private Subscriber(final SseEmitter emitter) {
+			this.emitter = emitter;
+		}
+	}
+
+	private static class Group {
+		private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+		private volatile BoardChangedEvent latest;
+	}
+
+	@Value("${PUSH_MAX_SUBSCRIBERS:10000}")
+	private Integer PUSH_MAX_SUBSCRIBERS;
+
+	@Value("${PUSH_MAX_SUBSCRIBERS_PER_BOARD:8}")
+	private Integer PUSH_MAX_SUBSCRIBERS_PER_BOARD;
+
+	@Value("${PUSH_TIMEOUT_MS:1800000}")
+	private Long PUSH_TIMEOUT_MS;
+
+	@Value("${PUSH_SEND_TIMEOUT_MS:5000}")
+	private Long PUSH_SEND_TIMEOUT_MS;
+
+	@Autowired
+	private BoardService boardService;
+
+	private final Map<Long, Group> groups = new ConcurrentHashMap<>();
+
+	private final AtomicInteger subscribers = new AtomicInteger();
+
+	private final int threads;
+
+	// PUSH_THREADS plus one per stalled send, the queue is unbounded so it
+	// never grows past its core size
+	private final ThreadPoolExecutor senders;
+
+	private final Lock resize = new ReentrantLock();
+
+	private final AtomicInteger stalled = new AtomicInteger();
+
+	public BoardPushService(@Value("${PUSH_THREADS:2}") final Integer threads) {
+		this.threads = threads;
+		this.senders = new ThreadPoolExecutor(threads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		senders.shutdownNow();
+	}
+
+	private static int[] toPits(final Board board) {
+		final Integer[] top = board.getTopPlayerBoard();
+		final Integer[] bottom = board.getBottomPlayerBoard();
+		final int[] pits = new int[top.length + bottom.length];
+		for (int i = 0; i < top.length; i++) {
+			pits[i] = top[i];
+		}
+		for (int i = 0; i < bottom.length; i++) {
+			pits[top.length + i] = bottom[i];
+		}
+		return pits;
+	}
+
+	/**
+	 * Registers a player on a board. The first message is the full board.
+	 */
+	public SseEmitter subscribe(final Long boardId) {
+		if (subscribers.incrementAndGet() > PUSH_MAX_SUBSCRIBERS) {
+			subscribers.decrementAndGet();
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers");
+		}
+		final Subscriber subscriber = new Subscriber(new SseEmitter(PUSH_TIMEOUT_MS));
+		// Registration and removal of a board's group are atomic on its key
+		final Group group = groups.compute(boardId, (id, current) -> {
+			final Group target = current == null ? new Group() : current;
+			if (target.subscribers.size() < PUSH_MAX_SUBSCRIBERS_PER_BOARD) {
+				target.subscribers.add(subscriber);
+			}
+			return target.subscribers.isEmpty() ? null : target;
+		});
+		if (group == null || !group.subscribers.contains(subscriber)) {
+			subscribers.decrementAndGet();
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers on board");
+		}
+
+		final Runnable remove = () -> unsubscribe(boardId, subscriber);
+		subscriber.emitter.onCompletion(remove);
+		subscriber.emitter.onTimeout(remove);
+		subscriber.emitter.onError(e -> remove.run());
+
+		// Read once registered: a move after the read is pushed after the full
+		// board, one before it is in the board and its delta is skipped
+		subscriber.lock.lock();
+		try {
+			final Board board = boardService.retrieveBoard(boardId);
+			send(boardId, subscriber, board.getMoves(), board.getNextPlayer(), toPits(board));
+		} catch (RuntimeException e) {
+			unsubscribe(boardId, subscriber);
+			throw e;
+		} finally {
+			subscriber.lock.unlock();
+		}
+		return subscriber.emitter;
+	}
+
+	private void unsubscribe(final Long boardId, final Subscriber subscriber) {
+		groups.computeIfPresent(boardId, (id, current) -> {
+			if (current.subscribers.remove(subscriber)) {
+				subscribers.decrementAndGet();
+			}
+			return current.subscribers.isEmpty() ? null : current;
+		});
+	}
+
+	@EventListener
+	public void onBoardChanged(final BoardChangedEvent event) {
+		final Group group = groups.get(event.getBoardId());
+		if (group == null) {
+			return;
+		}
+		final BoardChangedEvent latest = group.latest;
+		if (latest == null || latest.getMoves() < event.getMoves()) {
+			group.latest = event;
+		}
+		for (Subscriber subscriber : group.subscribers) {
+			schedule(event.getBoardId(), group, subscriber);
+		}
+	}
+
+	// At most one sender per subscriber, a busy one picks the new state up
+	private void schedule(final Long boardId, final Group group, final Subscriber subscriber) {
+		subscriber.pending = true;
+		if (subscriber.running.compareAndSet(false, true)) {
+			senders.execute(() -> flush(boardId, group, subscriber));
+		}
+	}
+
+	private void flush(final Long boardId, final Group group, final Subscriber subscriber) {
+		do {
+			subscriber.lock.lock();
+			try {
+				while (subscriber.pending && !subscriber.stalled) {
+					subscriber.pending = false;
+					final BoardChangedEvent latest = group.latest;
+					send(boardId, subscriber, latest.getMoves(), latest.getNextPlayer(), latest.getPits());
+				}
+			} finally {
+				subscriber.lock.unlock();
+			}
+			subscriber.running.set(false);
+		} while (subscriber.pending && !subscriber.stalled && subscriber.running.compareAndSet(false, true));
+	}
+
+	/**
+	 * Drops the subscribers whose send is blocked past PUSH_SEND_TIMEOUT_MS
+	 * and gives the pool a thread for each, the others go on meanwhile
+	 */
+	@Scheduled(fixedDelayString = "${PUSH_SEND_TIMEOUT_MS:5000}")
+	public void dropStalled() {
+		final long limit = System.currentTimeMillis() - PUSH_SEND_TIMEOUT_MS;
+		groups.forEach((boardId, group) -> group.subscribers.forEach(subscriber -> {
+			final long since = subscriber.sending.get();
+			// Lost to a send just finishing, it's not stalled
+			if (since > 0 && since < limit && subscriber.sending.compareAndSet(since, STALLED)) {
+				// Not completed here, the emitter is locked by the blocked send
+				subscriber.stalled = true;
+				unsubscribe(boardId, subscriber);
+				resizeSenders(stalled.incrementAndGet());
+				log.debug("Dropping subscriber of board {}: send blocked over {} ms", boardId, PUSH_SEND_TIMEOUT_MS);
+			}
+		}));
+	}
+
+	private void resizeSenders(final int stalledSends) {
+		resize.lock();
+		try {
+			senders.setCorePoolSize(threads + stalledSends);
+		} finally {
+			resize.unlock();
+		}
+	}
+
+	// Must hold the subscriber lock
+	private void send(final Long boardId, final Subscriber subscriber, final Integer moves,
+			final PlayerType nextPlayer, final int[] pits) {
+		if (subscriber.lastMoves != null && moves != null && subscriber.lastMoves >= moves) {
+			return;
+		}
+		final BoardDelta delta;
+		if (subscriber.lastSent == null || subscriber.lastSent.length != pits.length) {
+			final int[] changes = new int[pits.length * 2];
+			for (int i = 0; i < pits.length; i++) {
+				changes[i * 2] = i;
+				changes[i * 2 + 1] = pits[i];
+			}
+			delta = new BoardDelta(boardId, moves, nextPlayer, true, changes);
+		} else {
+			int changed = 0;
+			final int[] changes = new int[pits.length * 2];
+			for (int i = 0; i < pits.length; i++) {
+				if (subscriber.lastSent[i] != pits[i]) {
+					changes[changed++] = i;
+					changes[changed++] = pits[i];
+				}
+			}
+			delta = new BoardDelta(boardId, moves, nextPlayer, false, Arrays.copyOf(changes, changed));
+		}
+		final long start = System.currentTimeMillis();
+		subscriber.sending.set(start);
+		boolean failed = false;
+		try {
+			subscriber.emitter.send(SseEmitter.event().name("board").data(delta));
+			subscriber.lastSent = pits;
+			subscriber.lastMoves = moves;
+		} catch (IOException | IllegalStateException e) {
+			failed = true;
+			log.debug("Dropping subscriber of board {}: {}", boardId, e.getMessage());
+			subscriber.emitter.completeWithError(e);
+			unsubscribe(boardId, subscriber);
+		} finally {
+			subscriber.sending.compareAndSet(start, 0);
+		}
+		if (subscriber.sending.compareAndSet(STALLED, 0)) {
+			// The write gave up or went through at last, the extra thread goes
+			resizeSenders(stalled.decrementAndGet());
+			if (!failed) {
+				subscriber.emitter.completeWithError(new TimeoutException("Send blocked over " + PUSH_SEND_TIMEOUT_MS
+						+ " ms"));
+			}
+		}
+	}
+
+	public int getSubscribers() {
+		return subscribers.get();
+	}
+
+	public int getStalled() {
+		return stalled.get();
+	}
+
+}
@@ -1,21 +1,33 @@
 package com.egorbatik.mancala.service;
 
 import java.security.InvalidParameterException;
+import java.util.List;
 import java.util.Optional;
 
+import com.egorbatik.mancala.engine.Position;
 import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.MoveLog;
 import com.egorbatik.mancala.model.PlayerType;
 
 public interface BoardService {
 
 	Board retriveNewBoard();
 
+	List<Board> retriveNewBoards(final int count);
+
 	Board retrieveBoard(final Long id);
 	
+	Position retrievePosition(final Long boardId);
+
+	void replayLog(final Board board, final List<MoveLog> entries);
+
 	Board getBoard(final Optional<Long> id);
 
 	PlayerType resolvePlayer(Optional<String> player) throws InvalidParameterException;
 
 	Board applyGame(final Long boardId,final PlayerType player,final Integer house) throws InvalidParameterException;
 
+	BatchResult applyGames(final Long boardId, final List<Move> moves) throws InvalidParameterException;
+
 }
\ No newline at end of file
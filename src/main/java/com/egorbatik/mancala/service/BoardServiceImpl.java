@@ -1,39 +1,86 @@
 package com.egorbatik.mancala.service;
 
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
 import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.MoveLog;
 import com.egorbatik.mancala.model.PlayerType;
 import com.egorbatik.mancala.repository.BoardRepository;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * In this class is where magic occurrs, the game basically keeps the state of
  * the board and applies changes to it.
+ *
+ * Every move is appended to the {@link MoveJournal}, the board itself is only
+ * saved as a snapshot on its first move, every BOARD_SNAPSHOT_MOVES moves and
+ * when it finishes. A board loaded from a snapshot replays the tail of the log.
+ * In a cluster (CLUSTER_NODES) every move is saved, the repository writes it
+ * before the move is answered.
  * 
  * @author egorbatik
  *
  */
+@Slf4j
 @Service
 public class BoardServiceImpl implements BoardService {
 
+	// Engine side -> player, values() clones on every call
+	private static final PlayerType[] SIDES = PlayerType.values();
+
 	@Value("${STONES_PER_HOUSE:6}")
 	private Integer STONES_PER_HOUSE;
 
 	@Value("${HOUSES:6}")
 	private Integer HOUSES;
 
+	@Value("${BOARD_SNAPSHOT_MOVES:16}")
+	private Integer BOARD_SNAPSHOT_MOVES;
+
+	@Value("${CLUSTER_NODES:}")
+	private String CLUSTER_NODES;
+
 	@Autowired
 	private BoardRepository boardRepository;
 
+	@Autowired
+	private MoveJournal moveJournal;
+
+	@Autowired
+	private BoardLocks boardLocks;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private GameMetrics gameMetrics;
+
+	@PostConstruct
+	public void init() {
+		// Fails fast on an unsupported geometry and builds its tables up front
+		MancalaEngine.forHouses(HOUSES);
+		if (STONES_PER_HOUSE < 1 || BOARD_SNAPSHOT_MOVES < 1) {
+			throw new InvalidParameterException();
+		}
+	}
+
 	// Some validations
 
 	private void validateNextPlayer(final Board board, final PlayerType player) {
@@ -42,191 +89,338 @@ public class BoardServiceImpl implements BoardService {
 		}
 	}
 
-	private void validateStones(final Integer stones) {
-		if (stones == 0) {
-			throw new InvalidParameterException();
+	// Reason of an illegal move, only worked out once it failed
+	private GameMetrics.Rejection rejection(final int side, final PlayerType player, final Integer house,
+			final int houses) {
+		if (side == MancalaEngine.FINISHED) {
+			return GameMetrics.Rejection.FINISHED;
+		}
+		if (player == null || side != player.ordinal()) {
+			return GameMetrics.Rejection.WRONG_PLAYER;
 		}
+		if (house == null || house < 1 || house > houses) {
+			return GameMetrics.Rejection.INVALID_HOUSE;
+		}
+		return GameMetrics.Rejection.EMPTY_HOUSE;
 	}
 
-	private Integer[] resolveCurrentHalfBoard(final PlayerType player, final Board board) {
-		switch (player) {
-		case TOP:
-			return board.getTopPlayerBoard();
-		case BOTTOM:
-			return board.getBottomPlayerBoard();
-		default:
+	// Board halves <-> engine pits
+
+	private MancalaEngine resolveEngine(final Board board) {
+		final int half = board.getTopPlayerBoard().length;
+		if (board.getBottomPlayerBoard().length != half) {
 			throw new InvalidParameterException();
 		}
+		return MancalaEngine.forHouses(half - 1);
 	}
 
-	private Integer[] resolveOtherHalfBoard(final PlayerType player, final Board board) {
-		switch (player) {
-		case TOP:
-			return board.getBottomPlayerBoard();
-		case BOTTOM:
-			return board.getTopPlayerBoard();
-		default:
-			throw new InvalidParameterException();
+	private int[] toPits(final MancalaEngine engine, final Board board) {
+		final int[] pits = new int[engine.pits()];
+		final Integer[] top = board.getTopPlayerBoard();
+		final Integer[] bottom = board.getBottomPlayerBoard();
+		for (int i = 0; i < engine.half(); i++) {
+			pits[engine.offset(MancalaEngine.TOP) + i] = top[i];
+			pits[engine.offset(MancalaEngine.BOTTOM) + i] = bottom[i];
 		}
+		return pits;
 	}
 
-	private PlayerType resolveDefaultNextPlayer(final PlayerType player) {
-		switch (player) {
-		case TOP:
-			return PlayerType.BOTTOM;
-		case BOTTOM:
-			return PlayerType.TOP;
-		default:
-			throw new InvalidParameterException();
-		}
+	// Reuses the stored hash, only a board without one is hashed from scratch
+	private Position toPosition(final MancalaEngine engine, final Board board) {
+		final int[] pits = toPits(engine, board);
+		final int side = board.getNextPlayer().ordinal();
+		final Long hash = board.getPositionHash();
+		return hash == null ? Position.of(engine, pits, side) : Position.of(engine, pits, side, hash);
 	}
 
-	private Boolean captureCondition(final Integer currentHouse, Integer[] halfBoardCurrentPlayer) {
-		return ((currentHouse < 7) && (halfBoardCurrentPlayer[currentHouse - 1] == 1));
+	private void fromPits(final MancalaEngine engine, final int[] pits, final Board board) {
+		final Integer[] top = board.getTopPlayerBoard();
+		final Integer[] bottom = board.getBottomPlayerBoard();
+		for (int i = 0; i < engine.half(); i++) {
+			top[i] = pits[engine.offset(MancalaEngine.TOP) + i];
+			bottom[i] = pits[engine.offset(MancalaEngine.BOTTOM) + i];
+		}
 	}
 
-	private Boolean mustKeepTurn(final Integer currentHouse) {
-		return (currentHouse == 7);
+	private Integer[] newHalfBoard() {
+		final Integer[] half = new Integer[HOUSES + 1];
+		Arrays.fill(half, STONES_PER_HOUSE);
+		half[HOUSES] = 0; // Store
+		return half;
 	}
 
 	/**
-	 * As is
+	 * New board of HOUSES houses per side with STONES_PER_HOUSE stones each
 	 */
 	@Override
 	public Board retriveNewBoard() {
+		final long start = System.nanoTime();
 		Board board = new Board();
-		board.setTopPlayerBoard(new Integer[] { STONES_PER_HOUSE, STONES_PER_HOUSE, STONES_PER_HOUSE, STONES_PER_HOUSE,
-				STONES_PER_HOUSE, STONES_PER_HOUSE, 0 });
-		board.setBottomPlayerBoard(new Integer[] { STONES_PER_HOUSE, STONES_PER_HOUSE, STONES_PER_HOUSE, STONES_PER_HOUSE,
-				STONES_PER_HOUSE, STONES_PER_HOUSE, 0 });
+		board.setTopPlayerBoard(newHalfBoard());
+		board.setBottomPlayerBoard(newHalfBoard());
 		board.setNextPlayer(PlayerType.TOP);
+		board.setMoves(0);
+		board.setLastUpdate(System.currentTimeMillis());
+		board.setStale(false);
 		board = boardRepository.save(board);
+		gameMetrics.create(start);
 		return board;
 	}
 
 	/**
-	 * The core method of the game, this one validates, changes the stone
-	 * distribution and check finish conditions. Can be polished, but this V1.
+	 * As many new boards in one go, inserted in JDBC batches
+	 */
+	@Override
+	public List<Board> retriveNewBoards(final int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative count");
+		}
+		final long start = System.nanoTime();
+		final List<Board> boards = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final Board board = new Board();
+			board.setTopPlayerBoard(newHalfBoard());
+			board.setBottomPlayerBoard(newHalfBoard());
+			board.setNextPlayer(PlayerType.TOP);
+			board.setMoves(0);
+			board.setLastUpdate(System.currentTimeMillis());
+			board.setStale(false);
+			boards.add(board);
+		}
+		final List<Board> saved = new ArrayList<>(count);
+		boardRepository.saveAll(boards).forEach(saved::add);
+		gameMetrics.create(start, count);
+		return saved;
+	}
+
+	/**
+	 * The core method of the game, this one validates and delegates the stone
+	 * distribution and finish conditions to the {@link MancalaEngine}.
 	 */
 	@Override
 	public Board applyGame(final Long boardId, final PlayerType player, Integer house)
 			throws InvalidParameterException {
-		// Bring the board
-		final Board board = retrieveBoard(boardId);
-
-		// Prepare for spliting
-		final Integer[] halfBoardCurrentPlayer, halfBoardOtherPlayer;
-
-		// Checks if the requesting player is the next player
-		validateNextPlayer(board, player);
-
-		// Assigns the halfs of the board according to the current player
-		halfBoardCurrentPlayer = resolveCurrentHalfBoard(player, board);
-		halfBoardOtherPlayer = resolveOtherHalfBoard(player, board);
-
-		// By default change the next player
-		board.setNextPlayer(resolveDefaultNextPlayer(player));
-
-		// If finished... no more changes...
-		if (board.getNextPlayer() == PlayerType.FINISHED) {
-			return board;
+		if (boardId == null) {
+			throw new InvalidParameterException();
 		}
 
-		Integer stones = halfBoardCurrentPlayer[house - 1]; // Array indexing
-
-		// Cannot distribute 0 stones.
-		validateStones(stones);
+		// Read-modify-write of a board is linearized by its stripe
+		final long start = System.nanoTime();
+		final Lock lock = boardLocks.lockFor(boardId);
+		lock.lock();
+		try {
+			gameMetrics.lock(start);
+
+			// Bring the board
+			long phase = System.nanoTime();
+			final Board board = loadBoard(boardId);
+			gameMetrics.load(phase);
+
+			final MancalaEngine engine = resolveEngine(board);
+			final Position position;
+			final int result;
+			try {
+				// Checks if the requesting player is the next player
+				validateNextPlayer(board, player);
+
+				if (house == null) {
+					throw new InvalidParameterException();
+				}
+
+				// Sowing, capture, turn and finish are solved by the engine
+				phase = System.nanoTime();
+				position = toPosition(engine, board);
+				result = engine.move(position, house - 1); // Array indexing
+				gameMetrics.move(phase);
+			} catch (InvalidParameterException e) {
+				gameMetrics.rejected(rejection(board.getNextPlayer().ordinal(), player, house, engine.houses()));
+				throw e;
+			}
+			gameMetrics.applied(result);
+
+			// Update board
+			phase = System.nanoTime();
+			updateBoard(engine, position, board, Collections.singletonList(new Move(player, house)));
+			gameMetrics.save(phase);
+			gameMetrics.apply(start);
+			return board.copy();
+		} finally {
+			lock.unlock();
+		}
+	}
 
-		halfBoardCurrentPlayer[house - 1] = 0;
-		Integer currentHouse = house;
+	/**
+	 * Applies the moves in order in a single pass over the pits, stopping at the
+	 * first illegal one, and saves the board once.
+	 */
+	@Override
+	public BatchResult applyGames(final Long boardId, final List<Move> moves) throws InvalidParameterException {
+		if (boardId == null || moves == null) {
+			throw new InvalidParameterException();
+		}
 
-		// Stone distribution
-		while (stones > 0) {
-			// Jump enemy's house
-			if (currentHouse == 13) {
-				currentHouse = 1;
+		final Lock lock = boardLocks.lockFor(boardId);
+		lock.lock();
+		try {
+			final Board board = loadBoard(boardId);
+			final MancalaEngine engine = resolveEngine(board);
+			final Position position = toPosition(engine, board);
+
+			Integer illegal = null;
+			int applied = 0;
+			for (final Move move : moves) {
+				try {
+					if (move == null || move.getPlayer() == null || move.getPlayer().ordinal() != position.getSide()
+							|| move.getHouse() == null) {
+						throw new InvalidParameterException();
+					}
+					gameMetrics.applied(engine.move(position, move.getHouse() - 1));
+					applied++;
+				} catch (InvalidParameterException e) {
+					gameMetrics.rejected(move == null ? GameMetrics.Rejection.INVALID_HOUSE
+							: rejection(position.getSide(), move.getPlayer(), move.getHouse(), engine.houses()));
+					illegal = applied;
+					break;
+				}
 			}
 
-			// Droping stones
-			if (currentHouse <= 6) {
-				halfBoardCurrentPlayer[currentHouse]++;
-			}
-			if (currentHouse > 6) {
-				halfBoardOtherPlayer[currentHouse % 7]++;
+			if (applied > 0) {
+				updateBoard(engine, position, board, moves.subList(0, applied));
 			}
+			return new BatchResult(board.copy(), applied, illegal);
+		} finally {
+			lock.unlock();
+		}
+	}
 
-			// Moving to next house and substracting stone
-			currentHouse++;
-			stones--;
+	// Must hold the board lock
+	private void updateBoard(final MancalaEngine engine, final Position position, final Board board,
+			final List<Move> applied) {
+		final int before = board.getMoves() == null ? 0 : board.getMoves();
+		final int after = before + applied.size();
+		final int[] pits = position.getPits();
+		fromPits(engine, pits, board);
+		board.setNextPlayer(SIDES[position.getSide()]);
+		board.setPositionHash(position.getHash());
+		board.setMoves(after);
+		board.setLastUpdate(System.currentTimeMillis());
+
+		// The first move also takes the board out of the orphan candidates
+		if (!CLUSTER_NODES.isEmpty() || before == 0 || before / BOARD_SNAPSHOT_MOVES != after / BOARD_SNAPSHOT_MOVES
+				|| board.getNextPlayer() == PlayerType.FINISHED) {
+			boardRepository.save(board);
 		}
+		// Logged once the save went through, a rejected write logs nothing
+		moveJournal.append(board.getId(), before + 1, applied);
 
-		// Verify & capture
-		if (captureCondition(currentHouse, halfBoardCurrentPlayer)) {
-			halfBoardCurrentPlayer[6] += halfBoardOtherPlayer[5 - (currentHouse - 1)];
-			halfBoardOtherPlayer[5 - (currentHouse - 1)] = 0;
+		// Still under the lock, so listeners see the moves in order
+		eventPublisher.publishEvent(new BoardChangedEvent(board.getId(), board.getMoves(), board.getNextPlayer(), pits));
+	}
+
+	/**
+	 * Snapshot of the pits, next player and hash of a board
+	 */
+	@Override
+	public Position retrievePosition(final Long boardId) {
+		final Lock lock = boardLocks.lockFor(boardId);
+		lock.lock();
+		try {
+			final Board board = loadBoard(boardId);
+			final MancalaEngine engine = resolveEngine(board);
+			final Position position = toPosition(engine, board);
+			if (board.getPositionHash() == null) {
+				board.setPositionHash(position.getHash());
+			}
+			return position;
+		} finally {
+			lock.unlock();
 		}
+	}
 
-		// Keep turn
-		if (mustKeepTurn(currentHouse)) {
-			board.setNextPlayer(player);
+	/**
+	 * Bring specific board, a copy taken under its lock that later moves don't
+	 * touch
+	 */
+	@Override
+	public Board retrieveBoard(final Long id) {
+		final Lock lock = boardLocks.lockFor(id);
+		lock.lock();
+		try {
+			return loadBoard(id).copy();
+		} finally {
+			lock.unlock();
 		}
+	}
 
-		// Update board
-		switch (player) {
-		case TOP:
-			board.setTopPlayerBoard(halfBoardCurrentPlayer);
-			board.setBottomPlayerBoard(halfBoardOtherPlayer);
-			break;
-		case BOTTOM:
-			board.setBottomPlayerBoard(halfBoardCurrentPlayer);
-			board.setTopPlayerBoard(halfBoardOtherPlayer);
-			break;
-		default:
-			break;
+	// The cached instance itself, must hold the board lock
+	private Board loadBoard(final Long id) {
+		final long start = System.nanoTime();
+		final Board board = boardRepository.findById(id).get();
+		if (board.isStale()) {
+			replay(board);
 		}
+		gameMetrics.retrieve(start);
+		return board;
+	}
 
-		// Check Finish and apply finish distribution if necessary
-		switch (board.getNextPlayer()) {
-		case TOP:
-			if (Collections.max(Arrays.asList(board.getTopPlayerBoard()).subList(0, board.getTopPlayerBoard().length - 1)) == 0) {
-				Integer allStones = Stream.of(board.getBottomPlayerBoard())
-						.collect(Collectors.summingInt(Integer::intValue));
-				board.setBottomPlayerBoard(new Integer[] { 0, 0, 0, 0, 0, 0, allStones });
-				board.setNextPlayer(PlayerType.FINISHED);
-			}
-			break;
-		case BOTTOM:
-			if (Collections
-					.max(Arrays.asList(board.getBottomPlayerBoard()).subList(0, board.getBottomPlayerBoard().length - 1)) == 0) {
-				Integer allStones = Stream.of(board.getTopPlayerBoard()).collect(Collectors.summingInt(Integer::intValue));
-				board.setTopPlayerBoard(new Integer[] { 0, 0, 0, 0, 0, 0, allStones });
-				board.setNextPlayer(PlayerType.FINISHED);
+	// Snapshot plus the moves logged after it
+	private void replay(final Board board) {
+		final Lock lock = boardLocks.lockFor(board.getId());
+		lock.lock();
+		try {
+			if (board.isStale()) {
+				final int snapshot = board.getMoves() == null ? 0 : board.getMoves();
+				replayLog(board, moveJournal.tail(board.getId(), snapshot));
 			}
-			break;
-		default:
-			break;
-
+		} finally {
+			lock.unlock();
 		}
-
-		boardRepository.save(board);
-		return board;
 	}
 
 	/**
-	 * Bring specific board
+	 * Applies the logged moves after the snapshot of a board loaded from the
+	 * database, neither saved nor locked. Moves up to the snapshot are skipped.
 	 */
 	@Override
-	public Board retrieveBoard(final Long id) {
-		final Board board = boardRepository.findById(id).get();
-		return board;
+	public void replayLog(final Board board, final List<MoveLog> entries) {
+		final int snapshot = board.getMoves() == null ? 0 : board.getMoves();
+		final MancalaEngine engine = resolveEngine(board);
+		final Position position = toPosition(engine, board);
+		int seq = snapshot;
+		for (final MoveLog move : entries) {
+			if (move.getSeq() <= snapshot) {
+				continue;
+			}
+			if (move.getSeq() != seq + 1 || move.getPlayer() == null || move.getHouse() == null
+					|| move.getPlayer().ordinal() != position.getSide()) {
+				log.warn("Move log of board {} broken at {}", board.getId(), move.getSeq());
+				break;
+			}
+			try {
+				engine.move(position, move.getHouse() - 1);
+			} catch (InvalidParameterException e) {
+				// Kept up to the last legal move, a board that can't be read is worse
+				log.warn("Move log of board {} has an illegal move at {}", board.getId(), move.getSeq());
+				break;
+			}
+			seq++;
+		}
+		if (seq > snapshot) {
+			fromPits(engine, position.getPits(), board);
+			board.setNextPlayer(SIDES[position.getSide()]);
+			board.setPositionHash(position.getHash());
+			board.setMoves(seq);
+		}
+		board.setStale(false);
 	}
 
 	/**
-	 * Reload a saved board or bring a new one
+	 * Reload a saved board or bring a new one. The new board is only created
+	 * (and saved) when there is no id.
 	 */
 	@Override
 	public Board getBoard(final Optional<Long> id) {
-		return id.map(idBoard -> retrieveBoard(idBoard)).orElse(retriveNewBoard());
+		return id.map(idBoard -> retrieveBoard(idBoard)).orElseGet(this::retriveNewBoard);
 	}
 
 	/**
@@ -0,0 +1,97 @@
+package com.egorbatik.mancala.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.PositionCache;
+import com.egorbatik.mancala.engine.Zobrist;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Rendered board pages by board state and viewer.
+ *
+ * The page only depends on the board (id, moves, pits and next player) and on
+ * who looks at it, the key mixes the position hash with the id, the moves and
+ * the viewer. The same key is the page ETag, so a poller of an unchanged board
+ * gets a 304 without a render. Pages are kept encoded, ready to write.
+ *
+ * @author egorbatik
+ *
+ */
+@Service
+public class BoardViewCache {
+
+	private final PositionCache<byte[]> pages;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	public BoardViewCache(@Value("${BOARD_VIEW_CACHE_BITS:12}") final Integer bits) {
+		this.pages = new PositionCache<>(bits, PositionCache.Replacement.ALWAYS);
+	}
+
+	@PostConstruct
+	public void registerMetrics() {
+		FunctionCounter.builder("mancala.board.view.cache.hits", pages, PositionCache::getHits)
+				.register(meterRegistry);
+		FunctionCounter.builder("mancala.board.view.cache.misses", pages, PositionCache::getMisses)
+				.register(meterRegistry);
+	}
+
+	// Position hash of the board, the stored one when there is one
+	private static long positionHash(final Board board) {
+		if (board.getPositionHash() != null) {
+			return board.getPositionHash();
+		}
+		final Integer[] top = board.getTopPlayerBoard();
+		final Integer[] bottom = board.getBottomPlayerBoard();
+		final int[] pits = new int[top.length + bottom.length];
+		for (int i = 0; i < top.length; i++) {
+			pits[i] = top[i];
+		}
+		for (int i = 0; i < bottom.length; i++) {
+			pits[top.length + i] = bottom[i];
+		}
+		return MancalaEngine.forHouses(top.length - 1).zobrist().hash(pits, board.getNextPlayer().ordinal());
+	}
+
+	/**
+	 * Key of the page of "board" seen by "viewer"
+	 */
+	public long key(final Board board, final PlayerType viewer) {
+		final long moves = board.getMoves() == null ? 0 : board.getMoves();
+		return Zobrist.mix(Zobrist.mix(Zobrist.mix(positionHash(board) ^ board.getId()) ^ moves) ^ viewer.ordinal());
+	}
+
+	public static String etag(final long key) {
+		return "\"" + Long.toHexString(key) + "\"";
+	}
+
+	/**
+	 * Cached UTF-8 page of the key, rendered (and cached) on a miss
+	 */
+	public byte[] page(final long key, final Supplier<String> render) {
+		byte[] page = pages.get(key);
+		if (page == null) {
+			page = render.get().getBytes(StandardCharsets.UTF_8);
+			pages.put(key, page, 0);
+		}
+		return page;
+	}
+
+	public PositionCache<byte[]> getPages() {
+		return pages;
+	}
+
+}
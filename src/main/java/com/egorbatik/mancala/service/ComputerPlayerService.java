@@ -0,0 +1,163 @@
+package com.egorbatik.mancala.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.ai.AlphaBetaSearch;
+import com.egorbatik.mancala.ai.EndgameDatabase;
+import com.egorbatik.mancala.ai.SearchResult;
+import com.egorbatik.mancala.ai.TranspositionTable;
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+import com.egorbatik.mancala.engine.PositionCache;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Computer opponent: searches the best move of a board with
+ * {@link AlphaBetaSearch} and plays it through the {@link BoardService}.
+ *
+ * Suggestions are remembered by position hash, a position reached again (in
+ * this game or any other) is answered without searching. With ENDGAME_DB
+ * (a file of the EndgameGenerator) late positions are played perfectly.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class ComputerPlayerService {
+
+	@Value("${AI_BUDGET_MS:200}")
+	private Long AI_BUDGET_MS;
+
+	@Value("${AI_MAX_DEPTH:32}")
+	private Integer AI_MAX_DEPTH;
+
+	@Value("${ENDGAME_DB:}")
+	private String ENDGAME_DB;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private EndgameDatabase endgame;
+
+	private final TranspositionTable table;
+	private final ForkJoinPool pool;
+
+	// Deeper suggestions win the slot
+	private final PositionCache<SearchResult> suggestions;
+
+	private final AtomicLong searches = new AtomicLong();
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicLong searchNanos = new AtomicLong();
+
+	public ComputerPlayerService(@Value("${AI_TABLE_BITS:20}") final Integer tableBits,
+			@Value("${AI_THREADS:0}") final Integer threads,
+			@Value("${AI_CACHE_BITS:16}") final Integer cacheBits) {
+		this.table = new TranspositionTable(tableBits);
+		this.suggestions = new PositionCache<>(cacheBits, PositionCache.Replacement.PRIORITY);
+		this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PostConstruct
+	public void init() {
+		FunctionCounter.builder("mancala.ai.searches", this, ComputerPlayerService::getSearches)
+				.description("Searches run, cached suggestions not counted").register(meterRegistry);
+		FunctionCounter.builder("mancala.ai.nodes", this, ComputerPlayerService::getNodes)
+				.description("Positions searched").register(meterRegistry);
+		Gauge.builder("mancala.ai.nodes.per.second", this, ComputerPlayerService::getNodesPerSecond)
+				.description("Positions searched per second of search, since start").register(meterRegistry);
+
+		if (ENDGAME_DB.isEmpty()) {
+			return;
+		}
+		try {
+			endgame = EndgameDatabase.open(Paths.get(ENDGAME_DB));
+			log.info("Endgame database {} up to {} stones", ENDGAME_DB, endgame.getMaxStones());
+		} catch (IOException e) {
+			// The computer still plays, just searching
+			log.warn("Endgame database {} not loaded: {}", ENDGAME_DB, e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Best move for the player to move, the board is not changed
+	 */
+	public SearchResult suggest(final Long boardId) throws InvalidParameterException {
+		final Position position = boardService.retrievePosition(boardId);
+		if (position.getSide() == MancalaEngine.FINISHED) {
+			throw new InvalidParameterException();
+		}
+
+		final SearchResult cached = suggestions.get(position);
+		if (cached != null) {
+			return cached;
+		}
+
+		final SearchResult result = new AlphaBetaSearch(position.getEngine(), table, pool, endgame).search(position,
+				TimeUnit.MILLISECONDS.toNanos(AI_BUDGET_MS), AI_MAX_DEPTH);
+		suggestions.put(position, result, result.getDepth());
+		searches.incrementAndGet();
+		nodes.addAndGet(result.getNodes());
+		searchNanos.addAndGet(result.getElapsedNanos());
+		return result;
+	}
+
+	/**
+	 * The computer plays for "player", who must be the next one
+	 */
+	public Board play(final Long boardId, final PlayerType player) throws InvalidParameterException {
+		final Board board = boardService.retrieveBoard(boardId);
+		if (board.getNextPlayer() != player) {
+			throw new InvalidParameterException();
+		}
+		// If the human moved meanwhile applyGame rejects it (wrong player)
+		return boardService.applyGame(boardId, player, suggest(boardId).getHouse());
+	}
+
+	// Metrics
+
+	public long getSearches() {
+		return searches.get();
+	}
+
+	public long getNodes() {
+		return nodes.get();
+	}
+
+	public PositionCache<SearchResult> getSuggestions() {
+		return suggestions;
+	}
+
+	public long getNodesPerSecond() {
+		final long nanos = searchNanos.get();
+		// In double, nodes times 1e9 overflows a long past 9.2e9 nodes
+		return nanos == 0 ? 0 : (long) (nodes.get() * 1e9 / nanos);
+	}
+}
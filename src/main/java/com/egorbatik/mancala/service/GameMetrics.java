@@ -0,0 +1,135 @@
+package com.egorbatik.mancala.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the game hot path, built once so a move never looks them up.
+ *
+ * Timers publish percentile histograms, the percentiles are computed from
+ * /actuator/prometheus.
+ *
+ * @author egorbatik
+ *
+ */
+@Component
+public class GameMetrics {
+
+	// Why a move was rejected
+	public enum Rejection {
+		WRONG_PLAYER, FINISHED, EMPTY_HOUSE, INVALID_HOUSE
+	}
+
+	private final Timer apply;
+	private final Timer lock;
+	private final Timer load;
+	private final Timer move;
+	private final Timer save;
+	private final Timer retrieve;
+	private final Timer create;
+
+	private final Counter applied;
+	private final Counter captures;
+	private final Counter extraTurns;
+	private final Counter finished;
+	private final Counter[] rejected;
+
+	public GameMetrics(final MeterRegistry registry) {
+		this.apply = timer(registry, "mancala.apply", "Move applied, lock to save");
+		this.lock = phase(registry, "lock");
+		this.load = phase(registry, "load");
+		this.move = phase(registry, "move");
+		this.save = phase(registry, "save");
+		this.retrieve = timer(registry, "mancala.board.retrieve", "Board load, cache or database plus replay");
+		this.create = timer(registry, "mancala.board.create", "New board saved");
+
+		this.applied = Counter.builder("mancala.moves.applied").register(registry);
+		this.captures = Counter.builder("mancala.moves.captures").register(registry);
+		this.extraTurns = Counter.builder("mancala.moves.extra.turns").register(registry);
+		this.finished = Counter.builder("mancala.games.finished").register(registry);
+		this.rejected = new Counter[Rejection.values().length];
+		for (Rejection reason : Rejection.values()) {
+			rejected[reason.ordinal()] = Counter.builder("mancala.moves.rejected")
+					.tag("reason", reason.name().toLowerCase()).register(registry);
+		}
+	}
+
+	private static Timer timer(final MeterRegistry registry, final String name, final String description) {
+		return Timer.builder(name).description(description).publishPercentileHistogram().register(registry);
+	}
+
+	// Phases of applyGame: lock wait, load, engine move (sow, capture, finish), save
+	private static Timer phase(final MeterRegistry registry, final String phase) {
+		return Timer.builder("mancala.apply.phase").tag("phase", phase).publishPercentileHistogram()
+				.register(registry);
+	}
+
+	private static void record(final Timer timer, final long start) {
+		timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	// The "start" of every phase is a System.nanoTime()
+
+	public void lock(final long start) {
+		record(lock, start);
+	}
+
+	public void load(final long start) {
+		record(load, start);
+	}
+
+	public void move(final long start) {
+		record(move, start);
+	}
+
+	public void save(final long start) {
+		record(save, start);
+	}
+
+	public void apply(final long start) {
+		record(apply, start);
+	}
+
+	public void retrieve(final long start) {
+		record(retrieve, start);
+	}
+
+	public void create(final long start) {
+		record(create, start);
+	}
+
+	// Boards saved together, each one takes its share of the time
+	public void create(final long start, final int count) {
+		final long share = (System.nanoTime() - start) / Math.max(count, 1);
+		for (int i = 0; i < count; i++) {
+			create.record(share, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Counts an applied move from its engine result
+	 */
+	public void applied(final int result) {
+		applied.increment();
+		if ((result & MancalaEngine.CAPTURE) != 0) {
+			captures.increment();
+		}
+		if ((result & MancalaEngine.EXTRA_TURN) != 0) {
+			extraTurns.increment();
+		}
+		if (MancalaEngine.nextSide(result) == MancalaEngine.FINISHED) {
+			finished.increment();
+		}
+	}
+
+	public void rejected(final Rejection reason) {
+		rejected[reason.ordinal()].increment();
+	}
+}
@@ -0,0 +1,85 @@
+package com.egorbatik.mancala.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.egorbatik.mancala.model.PlayerType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+
+/**
+ * A player waiting in the {@link MatchmakingService} lobby. Once matched it
+ * carries the board of the game and the side the player plays, the result
+ * future completes when the ticket leaves the lobby, matched or not.
+ */
+public class LobbyTicket {
+
+	public enum Status {
+		WAITING, PAIRED, MATCHED, CANCELLED, EXPIRED
+	}
+
+	@Getter
+	private final String id;
+
+	@Getter
+	private final Integer rating;
+
+	@JsonIgnore
+	@Getter
+	private final long createdNanos = System.nanoTime();
+
+	@Getter
+	private final long createdAt = System.currentTimeMillis();
+
+	// When it left the lobby, 0 while waiting or paired
+	@JsonIgnore
+	@Getter
+	private volatile long finishedAt;
+
+	private final AtomicReference<Status> status = new AtomicReference<>(Status.WAITING);
+
+	@Getter
+	private volatile Long boardId;
+
+	@Getter
+	private volatile PlayerType player;
+
+	@JsonIgnore
+	@Getter
+	private final CompletableFuture<LobbyTicket> result = new CompletableFuture<>();
+
+	LobbyTicket(final String id, final Integer rating) {
+		this.id = id;
+		this.rating = rating;
+	}
+
+	public Status getStatus() {
+		return status.get();
+	}
+
+	// Only a waiting ticket can be paired, cancelled or expired
+	boolean leave(final Status to) {
+		return status.compareAndSet(Status.WAITING, to);
+	}
+
+	// Paired with a ticket that turned out to be gone
+	void unpair() {
+		status.compareAndSet(Status.PAIRED, Status.WAITING);
+	}
+
+	void matched(final Long boardId, final PlayerType player) {
+		this.boardId = boardId;
+		this.player = player;
+		finishedAt = System.currentTimeMillis();
+		status.set(Status.MATCHED);
+		result.complete(this);
+	}
+
+	void finish(final Status to) {
+		finishedAt = System.currentTimeMillis();
+		status.set(to);
+		result.complete(this);
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.egorbatik.mancala.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published once the lobby paired two tickets and created their board, the
+ * TOP ticket waited longer.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchFoundEvent {
+
+	private final Long boardId;
+
+	private final String topTicket;
+
+	private final String bottomTicket;
+
+}
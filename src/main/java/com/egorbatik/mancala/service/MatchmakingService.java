@@ -0,0 +1,286 @@
+package com.egorbatik.mancala.service;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lobby pairing waiting players, first come first served within a rating band
+ * (LOBBY_RATING_BAND points wide, unrated players have a band of their own).
+ * A pair gets a new board from {@link BoardService#retriveNewBoard()}, the one
+ * that waited longer plays TOP, and both tickets complete.
+ *
+ * Every band is a lock-free queue, joining never blocks. Pairing takes the
+ * queue heads and is done by one thread at a time per band: whoever finds two
+ * waiting players and wins the band flag, the others leave it to that one and
+ * it checks again after dropping the flag, so no pair is left behind. The
+ * boards are created outside of the flag.
+ *
+ * Tickets nobody matched expire after LOBBY_TICKET_TTL_MS, finished ones are
+ * forgotten LOBBY_RESULT_TTL_MS after they left the lobby. Both are kept in
+ * queues by age, the sweep only looks at the ones due.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class MatchmakingService {
+
+	private static final int UNRATED = -1;
+
+	@Value("${LOBBY_RATING_BAND:200}")
+	private Integer LOBBY_RATING_BAND;
+
+	@Value("${LOBBY_TICKET_TTL_MS:60000}")
+	private Long LOBBY_TICKET_TTL_MS;
+
+	@Value("${LOBBY_RESULT_TTL_MS:10000}")
+	private Long LOBBY_RESULT_TTL_MS;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private static final class Band {
+		private final Queue<LobbyTicket> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger waiting = new AtomicInteger();
+		private final AtomicBoolean pairing = new AtomicBoolean();
+
+		// Head taken off the queue still without a partner, only touched while pairing
+		private LobbyTicket carry;
+	}
+
+	private final Map<Integer, Band> bands = new ConcurrentHashMap<>();
+
+	private final Map<String, LobbyTicket> tickets = new ConcurrentHashMap<>();
+
+	// Every ticket by creation, and the ones that left the lobby by finish
+	private final Queue<LobbyTicket> joined = new ConcurrentLinkedQueue<>();
+	private final Queue<LobbyTicket> finished = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private Timer timeToMatch;
+	private Counter matches;
+	private Counter expired;
+
+	@PostConstruct
+	public void init() {
+		if (LOBBY_RATING_BAND < 1) {
+			throw new InvalidParameterException();
+		}
+		Gauge.builder("mancala.lobby.waiting", waiting, AtomicInteger::get).description("Players waiting in the lobby")
+				.register(meterRegistry);
+		timeToMatch = Timer.builder("mancala.lobby.time.to.match").publishPercentileHistogram()
+				.register(meterRegistry);
+		matches = Counter.builder("mancala.lobby.matches").register(meterRegistry);
+		expired = Counter.builder("mancala.lobby.expired").register(meterRegistry);
+	}
+
+	/**
+	 * Queues a player, the ticket is already matched when another one was
+	 * waiting in its band
+	 *
+	 * @param rating null for unrated
+	 * @throws IllegalArgumentException negative rating
+	 */
+	public LobbyTicket join(final Integer rating) {
+		if (rating != null && rating < 0) {
+			throw new IllegalArgumentException("Negative rating");
+		}
+		LobbyTicket ticket;
+		do {
+			ticket = new LobbyTicket(Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE),
+					rating);
+		} while (tickets.putIfAbsent(ticket.getId(), ticket) != null);
+		joined.offer(ticket);
+
+		final Band band = bands.computeIfAbsent(rating == null ? UNRATED : rating / LOBBY_RATING_BAND,
+				key -> new Band());
+		band.queue.offer(ticket);
+		// Counted once visible in the queue
+		band.waiting.incrementAndGet();
+		waiting.incrementAndGet();
+		pair(band);
+		return ticket;
+	}
+
+	/**
+	 * Ticket by id
+	 *
+	 * @throws NoSuchElementException unknown or forgotten ticket
+	 */
+	public LobbyTicket ticket(final String id) {
+		final LobbyTicket ticket = tickets.get(id);
+		if (ticket == null) {
+			throw new NoSuchElementException(id);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Takes a waiting player out of the lobby
+	 *
+	 * @throws NoSuchElementException    unknown or forgotten ticket
+	 * @throws InvalidParameterException already matched or gone
+	 */
+	public LobbyTicket cancel(final String id) {
+		final LobbyTicket ticket = ticket(id);
+		if (!leave(ticket, LobbyTicket.Status.CANCELLED)) {
+			throw new InvalidParameterException();
+		}
+		return ticket;
+	}
+
+	private boolean leave(final LobbyTicket ticket, final LobbyTicket.Status to) {
+		if (!ticket.leave(to)) {
+			return false;
+		}
+		// Still queued, the pairing skips it
+		bands.get(ticket.getRating() == null ? UNRATED : ticket.getRating() / LOBBY_RATING_BAND).waiting
+				.decrementAndGet();
+		waiting.decrementAndGet();
+		ticket.finish(to);
+		finished.offer(ticket);
+		return true;
+	}
+
+	// Pairing
+
+	private void pair(final Band band) {
+		List<LobbyTicket> pairs = null;
+		while (band.waiting.get() >= 2 && band.pairing.compareAndSet(false, true)) {
+			try {
+				LobbyTicket second;
+				while ((band.carry != null || (band.carry = nextWaiting(band)) != null)
+						&& (second = nextWaiting(band)) != null) {
+					final LobbyTicket first = band.carry;
+					if (!first.leave(LobbyTicket.Status.PAIRED)) {
+						// Gone meanwhile, the second one waits now
+						band.carry = second;
+						continue;
+					}
+					if (!second.leave(LobbyTicket.Status.PAIRED)) {
+						first.unpair();
+						continue;
+					}
+					band.carry = null;
+					band.waiting.addAndGet(-2);
+					waiting.addAndGet(-2);
+					if (pairs == null) {
+						pairs = new ArrayList<>();
+					}
+					pairs.add(first);
+					pairs.add(second);
+				}
+			} finally {
+				band.pairing.set(false);
+			}
+		}
+		if (pairs != null) {
+			for (int i = 0; i < pairs.size(); i += 2) {
+				startGame(pairs.get(i), pairs.get(i + 1));
+			}
+		}
+	}
+
+	// Only the pairing thread takes from the queue
+	private static LobbyTicket nextWaiting(final Band band) {
+		LobbyTicket ticket;
+		while ((ticket = band.queue.poll()) != null && ticket.getStatus() != LobbyTicket.Status.WAITING) {
+			// Cancelled or expired
+		}
+		return ticket;
+	}
+
+	private void startGame(final LobbyTicket top, final LobbyTicket bottom) {
+		final Board board;
+		try {
+			board = boardService.retriveNewBoard();
+		} catch (RuntimeException e) {
+			log.error("No board for lobby tickets {} and {}", top.getId(), bottom.getId(), e);
+			top.finish(LobbyTicket.Status.CANCELLED);
+			bottom.finish(LobbyTicket.Status.CANCELLED);
+			finished.offer(top);
+			finished.offer(bottom);
+			return;
+		}
+		final long now = System.nanoTime();
+		timeToMatch.record(now - top.getCreatedNanos(), TimeUnit.NANOSECONDS);
+		timeToMatch.record(now - bottom.getCreatedNanos(), TimeUnit.NANOSECONDS);
+		matches.increment();
+		top.matched(board.getId(), PlayerType.TOP);
+		bottom.matched(board.getId(), PlayerType.BOTTOM);
+		finished.offer(top);
+		finished.offer(bottom);
+		eventPublisher.publishEvent(new MatchFoundEvent(board.getId(), top.getId(), bottom.getId()));
+	}
+
+	/**
+	 * Expires the tickets that waited too long and forgets the old ones
+	 */
+	@Scheduled(fixedDelayString = "${LOBBY_SWEEP_MS:1000}")
+	public synchronized void sweep() {
+		final long now = System.currentTimeMillis();
+		LobbyTicket ticket;
+		List<LobbyTicket> pairing = null;
+		// Oldest first, up to the first one still in time
+		while ((ticket = joined.peek()) != null && ticket.getCreatedAt() < now - LOBBY_TICKET_TTL_MS) {
+			joined.poll();
+			if (leave(ticket, LobbyTicket.Status.EXPIRED)) {
+				expired.increment();
+			} else if (ticket.getStatus() == LobbyTicket.Status.PAIRED) {
+				// Its partner may be gone, then it waits again
+				if (pairing == null) {
+					pairing = new ArrayList<>();
+				}
+				pairing.add(ticket);
+			}
+		}
+		if (pairing != null) {
+			joined.addAll(pairing);
+		}
+		while ((ticket = finished.peek()) != null && ticket.getFinishedAt() < now - LOBBY_RESULT_TTL_MS) {
+			finished.poll();
+			tickets.remove(ticket.getId());
+		}
+	}
+
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.egorbatik.mancala.service;
+
+import java.security.InvalidParameterException;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+import com.egorbatik.mancala.model.BoardRow;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.PitsConverter;
+
+/**
+ * A move as a pure function of the stored row: the row given is not modified
+ * and nothing is read nor written, the reactive pipeline does the I/O around
+ * it.
+ *
+ * @author egorbatik
+ *
+ */
+public final class MoveFunction {
+
+	private MoveFunction() {
+	}
+
+	/**
+	 * Row of a new board of "houses" houses per side with "stones" each
+	 */
+	public static BoardRow newBoard(final Long id, final int houses, final int stones, final long now) {
+		final MancalaEngine engine = MancalaEngine.forHouses(houses);
+		final int[] pits = new int[engine.pits()];
+		engine.fill(pits, stones);
+		final BoardRow row = new BoardRow();
+		row.setId(id);
+		row.setInserted(true);
+		row.setMoves(0);
+		row.setVersion(0L);
+		row.setLastUpdate(now);
+		write(engine, Position.of(engine, pits, MancalaEngine.TOP), row);
+		return row;
+	}
+
+	/**
+	 * Row after the move
+	 *
+	 * @throws InvalidParameterException wrong turn, empty or unknown house,
+	 *                                   finished game
+	 */
+	public static BoardRow apply(final BoardRow board, final Move move, final long now)
+			throws InvalidParameterException {
+		if (move == null || move.getPlayer() == null || move.getHouse() == null
+				|| move.getPlayer().ordinal() != board.getNextPlayer()) {
+			throw new InvalidParameterException();
+		}
+		final byte[] top = board.getTopPlayerBoard();
+		final byte[] bottom = board.getBottomPlayerBoard();
+		if (top.length != bottom.length) {
+			throw new InvalidParameterException();
+		}
+		final MancalaEngine engine = MancalaEngine.forHouses(top.length / PitsConverter.BYTES_PER_PIT - 1);
+		final int[] pits = new int[engine.pits()];
+		read(top, pits, engine.offset(MancalaEngine.TOP));
+		read(bottom, pits, engine.offset(MancalaEngine.BOTTOM));
+
+		final int side = board.getNextPlayer();
+		final Long hash = board.getPositionHash();
+		final Position position = hash == null ? Position.of(engine, pits, side)
+				: Position.of(engine, pits, side, hash);
+		engine.move(position, move.getHouse() - 1); // Array indexing
+
+		final BoardRow next = new BoardRow();
+		next.setId(board.getId());
+		next.setMoves((board.getMoves() == null ? 0 : board.getMoves()) + 1);
+		// As the update query writes it
+		next.setVersion((board.getVersion() == null ? 0 : board.getVersion()) + 1);
+		next.setLastUpdate(now);
+		write(engine, position, next);
+		return next;
+	}
+
+	private static void write(final MancalaEngine engine, final Position position, final BoardRow row) {
+		final int[] pits = position.getPits();
+		row.setNextPlayer(position.getSide());
+		row.setTopPlayerBoard(write(pits, engine.offset(MancalaEngine.TOP), engine.half()));
+		row.setBottomPlayerBoard(write(pits, engine.offset(MancalaEngine.BOTTOM), engine.half()));
+		row.setPositionHash(position.getHash());
+	}
+
+	// Same layout as the PitsConverter, without boxing
+
+	private static void read(final byte[] bytes, final int[] pits, final int offset) {
+		for (int i = 0; i < bytes.length / PitsConverter.BYTES_PER_PIT; i++) {
+			pits[offset + i] = ((bytes[i * PitsConverter.BYTES_PER_PIT] & 0xFF) << 8)
+					| (bytes[i * PitsConverter.BYTES_PER_PIT + 1] & 0xFF);
+		}
+	}
+
+	private static byte[] write(final int[] pits, final int offset, final int length) {
+		final byte[] bytes = new byte[length * PitsConverter.BYTES_PER_PIT];
+		for (int i = 0; i < length; i++) {
+			final int stones = pits[offset + i];
+			if (stones > PitsConverter.MAX_STONES) {
+				throw new IllegalArgumentException("Pit out of range: " + stones);
+			}
+			bytes[i * PitsConverter.BYTES_PER_PIT] = (byte) (stones >>> 8);
+			bytes[i * PitsConverter.BYTES_PER_PIT + 1] = (byte) stones;
+		}
+		return bytes;
+	}
+
+}
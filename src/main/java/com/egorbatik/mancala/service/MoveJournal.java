@@ -0,0 +1,168 @@
+package com.egorbatik.mancala.service;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.MoveLog;
+import com.egorbatik.mancala.repository.MoveLogRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of the applied moves.
+ *
+ * Appends are queued and written in batches, one transaction per flush (by
+ * schedule, or by the appender when too many are pending). A flush that fails
+ * puts its moves back at the head of the queue, they go with the next one.
+ * Reading the tail of a board flushes first, so it never misses a queued move.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class MoveJournal {
+
+	@Value("${MOVE_LOG_MAX_PENDING:10000}")
+	private Integer MOVE_LOG_MAX_PENDING;
+
+	@Autowired
+	private MoveLogRepository moveLogRepository;
+
+	// Appended at the tail, only the flush takes from the head
+	private final Deque<MoveLog> pending = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	private final AtomicLong appended = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+
+	// Not synchronized: a virtual thread waiting on the JDBC write would pin
+	// its carrier thread
+	private final Lock flushLock = new ReentrantLock();
+
+	/**
+	 * Queues the moves applied to a board
+	 *
+	 * @param fromSeq board move count after the first of them
+	 */
+	public void append(final Long boardId, final int fromSeq, final List<Move> moves) {
+		int seq = fromSeq;
+		for (final Move move : moves) {
+			pending.add(new MoveLog(boardId, seq++, move.getPlayer(), move.getHouse()));
+		}
+		appended.addAndGet(moves.size());
+		if (pendingCount.addAndGet(moves.size()) >= MOVE_LOG_MAX_PENDING) {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				// The moves are applied, they stay queued for the next flush
+				log.warn("Move log flush failed, {} moves kept pending: {}", pendingCount.get(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Writes every queued move in a single batch. On failure the moves not
+	 * written are queued again and the exception is thrown.
+	 */
+	@Scheduled(fixedDelayString = "${MOVE_LOG_FLUSH_MS:1000}")
+	public void flush() {
+		flushLock.lock();
+		try {
+			final List<MoveLog> batch = new ArrayList<>();
+			MoveLog row;
+			while ((row = pending.poll()) != null) {
+				batch.add(row);
+			}
+			if (!batch.isEmpty()) {
+				pendingCount.addAndGet(-batch.size());
+				try {
+					moveLogRepository.saveAll(batch);
+				} catch (DataIntegrityViolationException e) {
+					// A seq already logged fails the whole batch, the rest is written row by row
+					for (int i = 0; i < batch.size(); i++) {
+						try {
+							write(batch.get(i));
+						} catch (RuntimeException failed) {
+							requeue(batch.subList(i, batch.size()));
+							throw failed;
+						}
+					}
+				} catch (RuntimeException e) {
+					requeue(batch);
+					throw e;
+				}
+				flushes.incrementAndGet();
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	// Back at the head in their order, must hold the flush lock
+	private void requeue(final List<MoveLog> rows) {
+		for (int i = rows.size() - 1; i >= 0; i--) {
+			final MoveLog row = rows.get(i);
+			// Id given by the rolled back insert
+			row.setId(null);
+			pending.addFirst(row);
+		}
+		pendingCount.addAndGet(rows.size());
+	}
+
+	private void write(final MoveLog row) {
+		try {
+			moveLogRepository.save(row);
+		} catch (DataIntegrityViolationException e) {
+			duplicates.incrementAndGet();
+			log.warn("Move {} of board {} was already logged", row.getSeq(), row.getBoardId());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+	}
+
+	/**
+	 * Moves of a board after "seq", in order
+	 */
+	public List<MoveLog> tail(final Long boardId, final int seq) {
+		flush();
+		return moveLogRepository.findByBoardIdAndSeqGreaterThanOrderBySeqAsc(boardId, seq);
+	}
+
+	// Metrics
+
+	public long getAppended() {
+		return appended.get();
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	public int getPending() {
+		return pendingCount.get();
+	}
+}
@@ -0,0 +1,53 @@
+package com.egorbatik.mancala.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.egorbatik.mancala.repository.BoardRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background clean up of boards that were created but never played.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Component
+public class OrphanBoardCleaner {
+
+	@Value("${ORPHAN_BOARD_TTL_MS:1800000}")
+	private Long ORPHAN_BOARD_TTL_MS;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	private final AtomicLong reclaimed = new AtomicLong();
+
+	/**
+	 * Deletes in bulk every board without moves older than the TTL
+	 *
+	 * @return boards deleted in this run
+	 */
+	@Scheduled(fixedDelayString = "${ORPHAN_BOARD_CLEANUP_MS:60000}", initialDelayString = "${ORPHAN_BOARD_CLEANUP_MS:60000}")
+	public int cleanup() {
+		final int deleted = boardRepository.deleteOrphans(System.currentTimeMillis() - ORPHAN_BOARD_TTL_MS);
+		if (deleted > 0) {
+			log.info("Reclaimed {} orphan boards", deleted);
+		}
+		reclaimed.addAndGet(deleted);
+		return deleted;
+	}
+
+	/**
+	 * Total boards reclaimed since start up
+	 */
+	public long getReclaimed() {
+		return reclaimed.get();
+	}
+}
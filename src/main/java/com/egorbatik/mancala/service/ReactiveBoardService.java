@@ -0,0 +1,97 @@
+package com.egorbatik.mancala.service;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.BoardRow;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.repository.ReactiveBoardRepository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * The game over the {@link ReactiveBoardRepository}, nothing blocks: load the
+ * row, apply the {@link MoveFunction}, write it back.
+ *
+ * There are no locks nor write-behind cache here, a move is written only if
+ * the board still has the moves it was read with, otherwise it's read and
+ * applied again (a few times at most). Its move log row is inserted in the
+ * same transaction, so the log the JPA stack replays has every reactive move.
+ *
+ * @author egorbatik
+ *
+ */
+@Service
+@Profile("reactive")
+public class ReactiveBoardService {
+
+	@Value("${STONES_PER_HOUSE:6}")
+	private Integer STONES_PER_HOUSE;
+
+	@Value("${HOUSES:6}")
+	private Integer HOUSES;
+
+	@Value("${REACTIVE_MOVE_RETRIES:16}")
+	private Integer REACTIVE_MOVE_RETRIES;
+
+	@Autowired
+	private ReactiveBoardRepository reactiveBoardRepository;
+
+	@Autowired
+	private ConnectionFactory connectionFactory;
+
+	// Not a bean, it would take the place of the JPA transaction manager
+	private TransactionalOperator transaction;
+
+	@PostConstruct
+	public void init() {
+		transaction = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+	}
+
+	/**
+	 * New board, TOP starts
+	 */
+	public Mono<Board> retriveNewBoard() {
+		return reactiveBoardRepository.nextId()
+				.map(id -> MoveFunction.newBoard(id, HOUSES, STONES_PER_HOUSE, System.currentTimeMillis()))
+				.flatMap(reactiveBoardRepository::save).map(BoardRow::toBoard);
+	}
+
+	public Mono<Board> retrieveBoard(final Long boardId) {
+		return find(boardId).map(BoardRow::toBoard);
+	}
+
+	/**
+	 * Board after the move, a conflicting move of the other player is retried
+	 * on the fresh board (where it's usually rejected as a wrong turn)
+	 */
+	public Mono<Board> applyGame(final Long boardId, final Move move) {
+		return find(boardId).flatMap(row -> {
+			final BoardRow next = MoveFunction.apply(row, move, System.currentTimeMillis());
+			return reactiveBoardRepository.update(next, row.getMoves() == null ? 0 : row.getMoves())
+					.flatMap(updated -> updated == 0 ? Mono.error(new ConcurrentModificationException())
+							: reactiveBoardRepository.appendMove(boardId, next.getMoves(), move.getPlayer().ordinal(),
+									move.getHouse()).thenReturn(next))
+					.as(transaction::transactional);
+		}).retryWhen(Retry.max(REACTIVE_MOVE_RETRIES).filter(ConcurrentModificationException.class::isInstance)
+				.onRetryExhaustedThrow((spec, signal) -> signal.failure())).map(BoardRow::toBoard);
+	}
+
+	private Mono<BoardRow> find(final Long boardId) {
+		return reactiveBoardRepository.findById(boardId)
+				.switchIfEmpty(Mono.error(() -> new NoSuchElementException("Board not found")));
+	}
+
+}
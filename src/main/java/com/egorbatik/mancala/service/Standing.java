@@ -0,0 +1,30 @@
+package com.egorbatik.mancala.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A row of the standings of a {@link Tournament}, as it was after the last
+ * finished game. A win is worth a point, a draw half, a bye a whole one.
+ */
+@Getter
+@AllArgsConstructor
+public class Standing {
+
+	private final String name;
+
+	private final String policy;
+
+	private final double rating;
+
+	private final double points;
+
+	private final int games;
+
+	private final int wins;
+
+	private final int draws;
+
+	private final int losses;
+
+}
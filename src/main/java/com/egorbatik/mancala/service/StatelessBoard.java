@@ -0,0 +1,22 @@
+package com.egorbatik.mancala.service;
+
+import com.egorbatik.mancala.model.Board;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A board of a stateless game (no id) and the signed token that carries it,
+ * the token is what the next move is applied to.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatelessBoard {
+
+	private String token;
+
+	private Board board;
+
+}
@@ -0,0 +1,287 @@
+package com.egorbatik.mancala.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+import com.egorbatik.mancala.engine.Zobrist;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Games without storage (STATELESS_GAMES=true): the whole board travels in a
+ * signed token and a move turns a token into the next one, nothing is read
+ * nor written.
+ *
+ * A token is the version, the houses, the side to move, a random game id, the
+ * move count and every pit (varints, so a standard board is a byte per pit),
+ * followed by a truncated HMAC-SHA256 of all that, base64url encoded. With
+ * the same BOARD_TOKEN_SECRET every node accepts the tokens of every other.
+ *
+ * Replays: a token is spent by its move (game id and move count), a spent
+ * token is rejected. The spent set is per node and bounded (a slot per
+ * key, newer keys overwrite older ones), a replay is only caught on the node
+ * that applied the move and while its slot lasts.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "STATELESS_GAMES", havingValue = "true")
+public class StatelessBoardService {
+
+	private static final int VERSION = 1;
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final int TAG_BYTES = 16;
+
+	// Version, houses, side and game id
+	private static final int HEADER = 3 + Long.BYTES;
+
+	// Engine side -> player, values() clones on every call
+	private static final PlayerType[] SIDES = PlayerType.values();
+
+	@Value("${STONES_PER_HOUSE:6}")
+	private Integer STONES_PER_HOUSE;
+
+	@Value("${HOUSES:6}")
+	private Integer HOUSES;
+
+	@Value("${BOARD_TOKEN_SECRET:}")
+	private String BOARD_TOKEN_SECRET;
+
+	@Value("${BOARD_TOKEN_SPENT_BITS:20}")
+	private Integer BOARD_TOKEN_SPENT_BITS;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private SecretKeySpec key;
+
+	// Mac is not thread safe
+	private ThreadLocal<Mac> macs;
+
+	private AtomicLongArray spent;
+
+	@PostConstruct
+	public void init() {
+		MancalaEngine.forHouses(HOUSES);
+		final byte[] secret;
+		if (BOARD_TOKEN_SECRET.isEmpty()) {
+			log.warn("No BOARD_TOKEN_SECRET, stateless game tokens are only valid on this node until it restarts");
+			secret = new byte[32];
+			random.nextBytes(secret);
+		} else {
+			secret = BOARD_TOKEN_SECRET.getBytes(StandardCharsets.UTF_8);
+		}
+		key = new SecretKeySpec(secret, ALGORITHM);
+		macs = ThreadLocal.withInitial(() -> {
+			try {
+				final Mac mac = Mac.getInstance(ALGORITHM);
+				mac.init(key);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		spent = new AtomicLongArray(1 << BOARD_TOKEN_SPENT_BITS);
+	}
+
+	/**
+	 * New game, TOP starts
+	 */
+	public StatelessBoard retriveNewBoard() {
+		final MancalaEngine engine = MancalaEngine.forHouses(HOUSES);
+		final int[] pits = new int[engine.pits()];
+		engine.fill(pits, STONES_PER_HOUSE);
+		return toStatelessBoard(random.nextLong(), 0, Position.of(engine, pits, MancalaEngine.TOP));
+	}
+
+	/**
+	 * Board of a token
+	 *
+	 * @throws IllegalArgumentException forged or corrupted token
+	 */
+	public StatelessBoard retrieveBoard(final String token) {
+		final Decoded decoded = decode(token);
+		return new StatelessBoard(token, toBoard(decoded.moves, decoded.position));
+	}
+
+	/**
+	 * Applies a move to the board of the token, spending it
+	 *
+	 * @throws IllegalArgumentException  forged or corrupted token
+	 * @throws InvalidParameterException wrong turn, empty or unknown house,
+	 *                                   finished game, spent token
+	 */
+	public StatelessBoard applyGame(final String token, final PlayerType player, final Integer house)
+			throws InvalidParameterException {
+		final Decoded decoded = decode(token);
+		final Position position = decoded.position;
+		if (player == null || player.ordinal() != position.getSide() || house == null) {
+			throw new InvalidParameterException();
+		}
+		position.getEngine().move(position, house - 1); // Array indexing
+		if (!spend(decoded.game, decoded.moves)) {
+			throw new InvalidParameterException();
+		}
+		return toStatelessBoard(decoded.game, decoded.moves + 1, position);
+	}
+
+	// Replay protection
+
+	private boolean spend(final long game, final int moves) {
+		final long spentKey = Zobrist.mix(game ^ Zobrist.mix(moves));
+		final int index = (int) (spentKey ^ (spentKey >>> 32)) & (spent.length() - 1);
+		while (true) {
+			final long current = spent.get(index);
+			if (current == spentKey) {
+				return false;
+			}
+			if (spent.compareAndSet(index, current, spentKey)) {
+				return true;
+			}
+		}
+	}
+
+	// Token format
+
+	private static final class Decoded {
+		private long game;
+		private int moves;
+		private Position position;
+	}
+
+	private StatelessBoard toStatelessBoard(final long game, final int moves, final Position position) {
+		return new StatelessBoard(encode(game, moves, position), toBoard(moves, position));
+	}
+
+	private static Board toBoard(final int moves, final Position position) {
+		final MancalaEngine engine = position.getEngine();
+		final int[] pits = position.getPits();
+		final Integer[] top = new Integer[engine.half()];
+		final Integer[] bottom = new Integer[engine.half()];
+		for (int i = 0; i < engine.half(); i++) {
+			top[i] = pits[engine.offset(MancalaEngine.TOP) + i];
+			bottom[i] = pits[engine.offset(MancalaEngine.BOTTOM) + i];
+		}
+		final Board board = new Board();
+		board.setTopPlayerBoard(top);
+		board.setBottomPlayerBoard(bottom);
+		board.setNextPlayer(SIDES[position.getSide()]);
+		board.setMoves(moves);
+		board.setStale(false);
+		return board;
+	}
+
+	private String encode(final long game, final int moves, final Position position) {
+		final int[] pits = position.getPits();
+		// Varints are 5 bytes at most
+		final byte[] bytes = new byte[HEADER + (pits.length + 1) * 5 + TAG_BYTES];
+		bytes[0] = VERSION;
+		bytes[1] = (byte) position.getEngine().houses();
+		bytes[2] = (byte) position.getSide();
+		for (int i = 0; i < Long.BYTES; i++) {
+			bytes[3 + i] = (byte) (game >>> (56 - i * 8));
+		}
+		int at = putVarint(bytes, HEADER, moves);
+		for (int pit : pits) {
+			at = putVarint(bytes, at, pit);
+		}
+		final Mac mac = macs.get();
+		mac.update(bytes, 0, at);
+		System.arraycopy(mac.doFinal(), 0, bytes, at, TAG_BYTES);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(bytes, at + TAG_BYTES));
+	}
+
+	private Decoded decode(final String token) {
+		final byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder().decode(token == null ? "" : token);
+		} catch (IllegalArgumentException e) {
+			throw invalidToken();
+		}
+		final int body = bytes.length - TAG_BYTES;
+		if (body <= HEADER) {
+			throw invalidToken();
+		}
+		final Mac mac = macs.get();
+		mac.update(bytes, 0, body);
+		final byte[] tag = Arrays.copyOf(mac.doFinal(), TAG_BYTES);
+		if (!MessageDigest.isEqual(tag, Arrays.copyOfRange(bytes, body, bytes.length))) {
+			throw invalidToken();
+		}
+
+		// Signed by us, only an old version or a bug can be wrong from here
+		final int houses = bytes[1];
+		final int side = bytes[2];
+		if (bytes[0] != VERSION || houses < 1 || houses > MancalaEngine.MAX_HOUSES || side < MancalaEngine.TOP
+				|| side > MancalaEngine.FINISHED) {
+			throw invalidToken();
+		}
+		final Decoded decoded = new Decoded();
+		for (int i = 0; i < Long.BYTES; i++) {
+			decoded.game = (decoded.game << 8) | (bytes[3 + i] & 0xFF);
+		}
+		final MancalaEngine engine = MancalaEngine.forHouses(houses);
+		final int[] pits = new int[engine.pits()];
+		final int[] at = { HEADER };
+		decoded.moves = getVarint(bytes, at, body);
+		for (int i = 0; i < pits.length; i++) {
+			pits[i] = getVarint(bytes, at, body);
+		}
+		if (at[0] != body) {
+			throw invalidToken();
+		}
+		decoded.position = Position.of(engine, pits, side);
+		return decoded;
+	}
+
+	private static IllegalArgumentException invalidToken() {
+		return new IllegalArgumentException("Invalid board token");
+	}
+
+	private static int putVarint(final byte[] bytes, int at, int value) {
+		while ((value & ~0x7F) != 0) {
+			bytes[at++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[at++] = (byte) value;
+		return at;
+	}
+
+	private static int getVarint(final byte[] bytes, final int[] at, final int end) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (at[0] >= end) {
+				throw invalidToken();
+			}
+			final byte b = bytes[at[0]++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (value < 0) {
+					throw invalidToken();
+				}
+				return value;
+			}
+		}
+		throw invalidToken();
+	}
+
+}
@@ -0,0 +1,284 @@
+package com.egorbatik.mancala.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.egorbatik.mancala.simulation.Policy;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+
+/**
+ * A tournament run by the {@link TournamentService}: its players, the
+ * pairings of every round and the standings.
+ *
+ * Results are recorded one game at a time by whichever thread finished it,
+ * under the tournament monitor, and every result publishes a new immutable
+ * standings list. Readers only read that list, they never wait for a game.
+ */
+public class Tournament {
+
+	public enum Format {
+		ROUND_ROBIN, SWISS
+	}
+
+	public enum Status {
+		RUNNING, FINISHED, FAILED
+	}
+
+	// Only touched under the tournament monitor
+	static final class Entrant {
+		private final String name;
+		private final String policyName;
+		private final Policy policy;
+		private double rating;
+		private double points;
+		private int games;
+		private int wins;
+		private int draws;
+		private int losses;
+		private int tops;
+		private boolean bye;
+		private final Set<Integer> opponents = new HashSet<>();
+
+		Entrant(final String name, final String policyName, final Policy policy, final double rating) {
+			this.name = name;
+			this.policyName = policyName;
+			this.policy = policy;
+			this.rating = rating;
+		}
+
+		Policy getPolicy() {
+			return policy;
+		}
+	}
+
+	@Getter
+	private final long id;
+
+	@Getter
+	private final Format format;
+
+	@Getter
+	private final int rounds;
+
+	@Getter
+	private final long createdAt = System.currentTimeMillis();
+
+	// Rounds scheduled so far
+	@Getter
+	private volatile int round;
+
+	@Getter
+	private volatile Status status = Status.RUNNING;
+
+	private final AtomicInteger scheduled = new AtomicInteger();
+	private final AtomicInteger finished = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	@Getter
+	private volatile List<Standing> standings;
+
+	@JsonIgnore
+	@Getter
+	private final CompletableFuture<Tournament> result = new CompletableFuture<>();
+
+	private final Entrant[] entrants;
+
+	// Seeds of the games, only used by the thread scheduling them
+	final SplittableRandom random = new SplittableRandom();
+
+	Tournament(final long id, final Format format, final int rounds, final List<Entrant> entrants) {
+		this.id = id;
+		this.format = format;
+		this.rounds = rounds;
+		this.entrants = entrants.toArray(new Entrant[0]);
+		publish();
+	}
+
+	public int getScheduled() {
+		return scheduled.get();
+	}
+
+	public int getFinished() {
+		return finished.get();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	Entrant entrant(final int player) {
+		return entrants[player];
+	}
+
+	// Pairings, [TOP player, BOTTOM player]
+
+	/**
+	 * Every "rounds" times each player meets every other one (circle method),
+	 * colors swapped from one cycle to the next
+	 */
+	synchronized List<int[]> roundRobin() {
+		final int size = entrants.length + (entrants.length & 1);
+		final int[] ring = new int[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = i < entrants.length ? i : -1;
+		}
+		final List<int[]> pairings = new ArrayList<>();
+		for (int cycle = 0; cycle < rounds; cycle++) {
+			for (int turn = 0; turn < size - 1; turn++) {
+				for (int i = 0; i < size / 2; i++) {
+					final int first = ring[i];
+					final int second = ring[size - 1 - i];
+					if (first < 0 || second < 0) {
+						// Odd number of players, this one rests
+						continue;
+					}
+					final boolean swap = (i == 0 && (turn & 1) == 1) ^ ((cycle & 1) == 1);
+					pairings.add(pair(swap ? second : first, swap ? first : second));
+				}
+				// Everyone but the first one moves a seat
+				final int last = ring[size - 1];
+				System.arraycopy(ring, 1, ring, 2, size - 2);
+				ring[1] = last;
+			}
+		}
+		round = rounds;
+		return pairings;
+	}
+
+	/**
+	 * Next Swiss round: players sorted by points and rating, each one meets the
+	 * next one it hasn't played yet (a rematch only when there is nobody else).
+	 * With an odd number of players the lowest one without a bye gets it.
+	 */
+	synchronized List<int[]> swissRound() {
+		final Integer[] order = ranked();
+
+		final boolean[] paired = new boolean[entrants.length];
+		if ((entrants.length & 1) == 1) {
+			int bye = order.length - 1;
+			while (bye > 0 && entrants[order[bye]].bye) {
+				bye--;
+			}
+			final Entrant resting = entrants[order[bye]];
+			resting.bye = true;
+			resting.points++;
+			paired[order[bye]] = true;
+		}
+
+		final List<int[]> pairings = new ArrayList<>();
+		for (int i = 0; i < order.length; i++) {
+			final int player = order[i];
+			if (paired[player]) {
+				continue;
+			}
+			int rival = -1;
+			for (int j = i + 1; j < order.length; j++) {
+				final int other = order[j];
+				if (paired[other]) {
+					continue;
+				}
+				if (rival < 0) {
+					// Rematch if nobody else is left
+					rival = other;
+				}
+				if (!entrants[player].opponents.contains(other)) {
+					rival = other;
+					break;
+				}
+			}
+			paired[player] = true;
+			paired[rival] = true;
+			// Whoever played TOP less often starts
+			pairings.add(entrants[player].tops <= entrants[rival].tops ? pair(player, rival) : pair(rival, player));
+		}
+		round++;
+		publish();
+		return pairings;
+	}
+
+	private int[] pair(final int top, final int bottom) {
+		entrants[top].opponents.add(bottom);
+		entrants[bottom].opponents.add(top);
+		entrants[top].tops++;
+		return new int[] { top, bottom };
+	}
+
+	// Results
+
+	void scheduled(final int games) {
+		scheduled.addAndGet(games);
+	}
+
+	/**
+	 * Elo update of both players from one game, "result" is positive when TOP
+	 * won, negative when BOTTOM did, 0 for a draw
+	 */
+	synchronized void record(final int top, final int bottom, final int result, final double k) {
+		final Entrant first = entrants[top];
+		final Entrant second = entrants[bottom];
+		final double expected = 1 / (1 + Math.pow(10, (second.rating - first.rating) / 400));
+		final double score = result > 0 ? 1 : result < 0 ? 0 : 0.5;
+		final double change = k * (score - expected);
+		first.rating += change;
+		second.rating -= change;
+		first.points += score;
+		second.points += 1 - score;
+		first.games++;
+		second.games++;
+		if (result > 0) {
+			first.wins++;
+			second.losses++;
+		} else if (result < 0) {
+			first.losses++;
+			second.wins++;
+		} else {
+			first.draws++;
+			second.draws++;
+		}
+		finished.incrementAndGet();
+		publish();
+	}
+
+	void failed() {
+		failed.incrementAndGet();
+	}
+
+	void finish(final Status to) {
+		status = to;
+		result.complete(this);
+	}
+
+	// Higher points first, then rating, then entry order. Must hold the monitor
+	private Integer[] ranked() {
+		final Integer[] order = new Integer[entrants.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingDouble(player -> -entrants[player].points)
+				.thenComparingDouble(player -> -entrants[player].rating).thenComparingInt(player -> player));
+		return order;
+	}
+
+	// Must hold the monitor
+	private void publish() {
+		final Integer[] order = ranked();
+		final List<Standing> rows = new ArrayList<>(order.length);
+		for (int player : order) {
+			final Entrant entrant = entrants[player];
+			rows.add(new Standing(entrant.name, entrant.policyName, entrant.rating, entrant.points, entrant.games,
+					entrant.wins, entrant.draws, entrant.losses));
+		}
+		standings = Collections.unmodifiableList(rows);
+	}
+
+}
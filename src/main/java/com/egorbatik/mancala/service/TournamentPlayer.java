@@ -0,0 +1,24 @@
+package com.egorbatik.mancala.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A bot entering a tournament: its name, the simulation policy it plays
+ * (RANDOM, GREEDY, AI:depth) and its rating, TOURNAMENT_RATING when null
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TournamentPlayer {
+
+	private String name;
+
+	private String policy;
+
+	private Double rating;
+
+}
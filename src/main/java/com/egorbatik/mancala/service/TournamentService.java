@@ -0,0 +1,296 @@
+package com.egorbatik.mancala.service;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.simulation.Policy;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bot tournaments, round robin or Swiss, played through the
+ * {@link BoardService} like any other game.
+ *
+ * Each tournament has a scheduling thread: it pairs a round (a round robin is
+ * a single round with every game), creates its boards in batches as the pool
+ * has room and hands the games to a pool of TOURNAMENT_THREADS players. The
+ * pool queue is bounded, a full queue holds the scheduling thread back. Players read the
+ * position, ask their {@link Policy} and apply the move until the board is
+ * finished.
+ *
+ * Ratings are not played out at the end: the board reaching
+ * {@link PlayerType#FINISHED} (its {@link BoardChangedEvent}) updates the Elo
+ * of both players and republishes the standings right away.
+ *
+ * @author egorbatik
+ *
+ */
+@Slf4j
+@Service
+public class TournamentService {
+
+	// Engine side -> player
+	private static final PlayerType[] SIDES = PlayerType.values();
+
+	@Value("${TOURNAMENT_RATING:1500}")
+	private Double TOURNAMENT_RATING;
+
+	@Value("${TOURNAMENT_ELO_K:32}")
+	private Double TOURNAMENT_ELO_K;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private static final class Game {
+		private final Tournament tournament;
+		private final int top;
+		private final int bottom;
+		private final Long boardId;
+		private final SplittableRandom random;
+
+		private Game(final Tournament tournament, final int top, final int bottom, final Long boardId,
+				final SplittableRandom random) {
+			this.tournament = tournament;
+			this.top = top;
+			this.bottom = bottom;
+			this.boardId = boardId;
+			this.random = random;
+		}
+	}
+
+	private final ThreadPoolExecutor players;
+
+	private final ExecutorService schedulers;
+
+	private final Map<Long, Tournament> tournaments = new ConcurrentHashMap<>();
+
+	// Unfinished games by board
+	private final Map<Long, Game> games = new ConcurrentHashMap<>();
+
+	private final AtomicLong ids = new AtomicLong();
+
+	private Timer gameTimer;
+
+	public TournamentService(@Value("${TOURNAMENT_THREADS:0}") final Integer threads,
+			@Value("${TOURNAMENT_QUEUE:256}") final Integer queue) {
+		final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.players = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), threads("tournament-player-"), (game, pool) -> {
+					// Back pressure on the scheduling thread
+					if (pool.isShutdown()) {
+						throw new RejectedExecutionException();
+					}
+					try {
+						pool.getQueue().put(game);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException(e);
+					}
+				});
+		this.schedulers = Executors.newCachedThreadPool(threads("tournament-"));
+	}
+
+	private static ThreadFactory threads(final String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		return task -> {
+			final Thread thread = new Thread(task, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	@PostConstruct
+	public void init() {
+		if (TOURNAMENT_ELO_K <= 0) {
+			throw new InvalidParameterException();
+		}
+		Gauge.builder("mancala.tournament.games.active", games, Map::size)
+				.description("Tournament games not finished yet").register(meterRegistry);
+		gameTimer = Timer.builder("mancala.tournament.games").description("Tournament game, first to last move")
+				.register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void close() {
+		schedulers.shutdownNow();
+		players.shutdownNow();
+	}
+
+	/**
+	 * Starts a tournament, it runs in the background
+	 *
+	 * @param rounds cycles of a round robin, rounds of a Swiss tournament
+	 * @throws IllegalArgumentException less than two players, repeated or
+	 *                                  missing names, unknown policy
+	 */
+	public Tournament create(final Tournament.Format format, final int rounds, final List<TournamentPlayer> players) {
+		if (format == null || rounds < 1 || players == null || players.size() < 2) {
+			throw new IllegalArgumentException("A tournament needs a format, rounds and two players");
+		}
+		final Set<String> names = new HashSet<>();
+		final List<Tournament.Entrant> entrants = new ArrayList<>(players.size());
+		for (TournamentPlayer player : players) {
+			if (player == null || player.getName() == null || player.getPolicy() == null
+					|| !names.add(player.getName())) {
+				throw new IllegalArgumentException("Missing or repeated player");
+			}
+			entrants.add(new Tournament.Entrant(player.getName(), player.getPolicy().toUpperCase(),
+					Policy.of(player.getPolicy()),
+					player.getRating() == null ? TOURNAMENT_RATING : player.getRating()));
+		}
+
+		final Tournament tournament = new Tournament(ids.incrementAndGet(), format, rounds, entrants);
+		tournaments.put(tournament.getId(), tournament);
+		schedulers.execute(() -> run(tournament));
+		log.info("Tournament {} started, {} {} players", tournament.getId(), players.size(), format);
+		return tournament;
+	}
+
+	/**
+	 * Tournament by id
+	 *
+	 * @throws NoSuchElementException unknown tournament
+	 */
+	public Tournament tournament(final Long id) {
+		final Tournament tournament = tournaments.get(id);
+		if (tournament == null) {
+			throw new NoSuchElementException(String.valueOf(id));
+		}
+		return tournament;
+	}
+
+	// Scheduling
+
+	private void run(final Tournament tournament) {
+		try {
+			if (tournament.getFormat() == Tournament.Format.ROUND_ROBIN) {
+				play(tournament, tournament.roundRobin());
+			} else {
+				for (int round = 0; round < tournament.getRounds(); round++) {
+					play(tournament, tournament.swissRound());
+				}
+			}
+			tournament.finish(Tournament.Status.FINISHED);
+			log.info("Tournament {} finished", tournament.getId());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			tournament.finish(Tournament.Status.FAILED);
+		} catch (RuntimeException e) {
+			log.error("Tournament {} failed", tournament.getId(), e);
+			tournament.finish(Tournament.Status.FAILED);
+		}
+	}
+
+	/**
+	 * Plays a round and waits for all of its games. Boards are created in
+	 * chunks the pool can take right away, a board never waits long without
+	 * moves (the orphan cleaner would take it) and a long round robin doesn't
+	 * keep all of its boards at once.
+	 */
+	private void play(final Tournament tournament, final List<int[]> pairings) throws InterruptedException {
+		tournament.scheduled(pairings.size());
+		final List<Future<?>> round = new ArrayList<>(pairings.size());
+		int next = 0;
+		while (next < pairings.size()) {
+			final int chunk = Math.min(pairings.size() - next,
+					Math.max(players.getMaximumPoolSize(), players.getQueue().remainingCapacity()));
+			final List<Board> boards = boardService.retriveNewBoards(chunk);
+			for (int i = 0; i < chunk; i++, next++) {
+				final Game game = new Game(tournament, pairings.get(next)[0], pairings.get(next)[1],
+						boards.get(i).getId(), tournament.random.split());
+				games.put(game.boardId, game);
+				round.add(players.submit(() -> play(game)));
+			}
+		}
+		for (Future<?> game : round) {
+			try {
+				game.get();
+			} catch (ExecutionException e) {
+				// Counted as failed by the game itself
+			}
+		}
+	}
+
+	private void play(final Game game) {
+		final long start = System.nanoTime();
+		try {
+			Position position;
+			while ((position = boardService.retrievePosition(game.boardId)).getSide() != MancalaEngine.FINISHED) {
+				final int side = position.getSide();
+				final Policy policy = game.tournament.entrant(side == MancalaEngine.TOP ? game.top : game.bottom)
+						.getPolicy();
+				boardService.applyGame(game.boardId, SIDES[side], policy.choose(position, game.random) + 1);
+			}
+			gameTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		} catch (RuntimeException e) {
+			// An illegal bot move, or someone else moved on the board
+			if (games.remove(game.boardId) != null) {
+				game.tournament.failed();
+				log.warn("Tournament {} game on board {} failed", game.tournament.getId(), game.boardId, e);
+			}
+		}
+	}
+
+	// Games on a board, playing or waiting in the pool queue
+	public int getActiveGames() {
+		return games.size();
+	}
+
+	// Ratings
+
+	/**
+	 * Scores the game of a finished tournament board
+	 */
+	@EventListener
+	public void onBoardChanged(final BoardChangedEvent event) {
+		if (event.getNextPlayer() != PlayerType.FINISHED) {
+			return;
+		}
+		final Game game = games.remove(event.getBoardId());
+		if (game == null) {
+			return;
+		}
+		final int[] pits = event.getPits();
+		final MancalaEngine engine = MancalaEngine.forHouses(pits.length / 2 - 1);
+		final int score = pits[engine.store(MancalaEngine.TOP)] - pits[engine.store(MancalaEngine.BOTTOM)];
+		game.tournament.record(game.top, game.bottom, Integer.signum(score), TOURNAMENT_ELO_K);
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.egorbatik.mancala.simulation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+import com.egorbatik.mancala.ai.AlphaBetaSearch;
+import com.egorbatik.mancala.ai.TranspositionTable;
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+
+/**
+ * How a simulated player picks its move. Implementations are shared by every
+ * simulation thread, the random source is the caller's.
+ *
+ * @author egorbatik
+ *
+ */
+public interface Policy {
+
+	/**
+	 * House (0 based) to play, the side to move has at least one stone and the
+	 * position must not be modified
+	 */
+	int choose(Position position, SplittableRandom random);
+
+	/**
+	 * Any non empty house
+	 */
+	static Policy random() {
+		return (position, random) -> {
+			final MancalaEngine engine = position.getEngine();
+			final int offset = engine.offset(position.getSide());
+			int house = random.nextInt(engine.houses());
+			while (position.getPits()[offset + house] == 0) {
+				house = (house + 1) % engine.houses();
+			}
+			return house;
+		};
+	}
+
+	/**
+	 * Most stones into the own store in one move (captures included), an extra
+	 * turn breaks ties, then chance
+	 */
+	static Policy greedy() {
+		return (position, random) -> {
+			final MancalaEngine engine = position.getEngine();
+			final int side = position.getSide();
+			final int[] pits = position.getPits();
+			final int[] child = new int[pits.length];
+			final int store = engine.store(side);
+			int best = -1;
+			int bestGain = -1;
+			int ties = 0;
+			for (int house = 0; house < engine.houses(); house++) {
+				if (pits[engine.offset(side) + house] == 0) {
+					continue;
+				}
+				System.arraycopy(pits, 0, child, 0, pits.length);
+				final int result = engine.move(child, side, house);
+				final int gain = (child[store] - pits[store]) * 2 + ((result & MancalaEngine.EXTRA_TURN) != 0 ? 1 : 0);
+				if (gain > bestGain) {
+					best = house;
+					bestGain = gain;
+					ties = 1;
+				} else if (gain == bestGain && random.nextInt(++ties) == 0) {
+					best = house;
+				}
+			}
+			return best;
+		};
+	}
+
+	/**
+	 * Alpha-beta to a fixed depth, sharing one transposition table. Root moves
+	 * run on the pool of the calling simulation thread.
+	 */
+	static Policy computer(final int depth, final int tableBits) {
+		final TranspositionTable table = new TranspositionTable(tableBits);
+		return (position, random) -> {
+			final ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool()
+					: ForkJoinPool.commonPool();
+			return new AlphaBetaSearch(position.getEngine(), table, pool)
+					.search(position, TimeUnit.DAYS.toNanos(1), depth).getHouse() - 1;
+		};
+	}
+
+	/**
+	 * RANDOM, GREEDY or AI (AI:depth, 4 by default)
+	 */
+	static Policy of(final String name) {
+		final String[] parts = name.toUpperCase().split(":");
+		switch (parts[0]) {
+		case "RANDOM":
+			return random();
+		case "GREEDY":
+			return greedy();
+		case "AI":
+			return computer(parts.length > 1 ? Integer.parseInt(parts[1]) : 4, 18);
+		default:
+			throw new IllegalArgumentException("Unknown policy " + name);
+		}
+	}
+}
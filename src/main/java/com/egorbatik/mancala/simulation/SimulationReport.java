@@ -0,0 +1,48 @@
+package com.egorbatik.mancala.simulation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Totals of a simulation run
+ */
+@Getter
+@AllArgsConstructor
+public class SimulationReport {
+
+	private final long games;
+
+	private final long topWins;
+
+	private final long bottomWins;
+
+	private final long draws;
+
+	// Moves of every scored game, extra turns count as moves
+	private final long moves;
+
+	private final long longestGame;
+
+	// Games that broke an invariant (stones, hash, endless game), not scored
+	private final long violations;
+
+	private final long elapsedNanos;
+
+	public double getGamesPerSecond() {
+		return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+	}
+
+	// Of the scored games, the only ones counted in "moves"
+	public double getAverageLength() {
+		final long scored = topWins + bottomWins + draws;
+		return scored == 0 ? 0 : (double) moves / scored;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d games in %d ms (%.0f games/s): TOP %d, BOTTOM %d, draws %d, %.1f moves per game (max %d), %d violations",
+				games, elapsedNanos / 1_000_000, getGamesPerSecond(), topWins, bottomWins, draws, getAverageLength(),
+				longestGame, violations);
+	}
+}
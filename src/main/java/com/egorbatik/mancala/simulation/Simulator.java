@@ -0,0 +1,162 @@
+package com.egorbatik.mancala.simulation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
+
+/**
+ * Headless self-play: games straight on the {@link MancalaEngine}, no service
+ * nor repository, split over a work-stealing pool.
+ *
+ * Every game checks the rules invariants on each move (stones kept, no
+ * negative pit, incremental hash equal to a full one at the end, bounded
+ * length), so it doubles as a fuzzer. Game i uses its own random seed derived
+ * from the run seed, a run is reproducible whatever the number of threads.
+ *
+ * Usage: Simulator [games] [top policy] [bottom policy] [stones] [houses]
+ *
+ * @author egorbatik
+ *
+ */
+public final class Simulator {
+
+	// Games per leaf task
+	private static final int CHUNK = 64;
+
+	private final ForkJoinPool pool;
+
+	public Simulator(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public static void main(final String[] args) {
+		final long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+		final Policy top = Policy.of(args.length > 1 ? args[1] : "random");
+		final Policy bottom = Policy.of(args.length > 2 ? args[2] : "greedy");
+		final int stones = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+		final MancalaEngine engine = MancalaEngine.forHouses(args.length > 4 ? Integer.parseInt(args[4]) : 6);
+		final ForkJoinPool pool = new ForkJoinPool();
+		try {
+			System.out.println(new Simulator(pool).run(engine, stones, top, bottom, games, 42));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays "games" games of "top" (starting) against "bottom"
+	 */
+	public SimulationReport run(final MancalaEngine engine, final int stones, final Policy top, final Policy bottom,
+			final long games, final long seed) {
+		final long start = System.nanoTime();
+		final Totals totals = pool.invoke(new Games(engine, stones, new Policy[] { top, bottom }, seed, 0, games));
+		return new SimulationReport(games, totals.topWins, totals.bottomWins, totals.draws, totals.moves,
+				totals.longest, totals.violations, System.nanoTime() - start);
+	}
+
+	private static final class Totals {
+		private long topWins;
+		private long bottomWins;
+		private long draws;
+		private long moves;
+		private long longest;
+		private long violations;
+
+		private Totals add(final Totals other) {
+			topWins += other.topWins;
+			bottomWins += other.bottomWins;
+			draws += other.draws;
+			moves += other.moves;
+			longest = Math.max(longest, other.longest);
+			violations += other.violations;
+			return this;
+		}
+	}
+
+	private static final class Games extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private final MancalaEngine engine;
+		private final int stones;
+		private final Policy[] policies;
+		private final long seed;
+		private final long from;
+		private final long to;
+
+		private Games(final MancalaEngine engine, final int stones, final Policy[] policies, final long seed,
+				final long from, final long to) {
+			this.engine = engine;
+			this.stones = stones;
+			this.policies = policies;
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Totals compute() {
+			if (to - from > CHUNK) {
+				final long middle = (from + to) >>> 1;
+				final Games left = new Games(engine, stones, policies, seed, from, middle);
+				left.fork();
+				final Totals right = new Games(engine, stones, policies, seed, middle, to).compute();
+				return right.add(left.join());
+			}
+			final Totals totals = new Totals();
+			final int[] pits = new int[engine.pits()];
+			for (long game = from; game < to; game++) {
+				play(pits, new SplittableRandom(seed * 0x9E3779B97F4A7C15L + game), totals);
+			}
+			return totals;
+		}
+
+		private void play(final int[] pits, final SplittableRandom random, final Totals totals) {
+			engine.fill(pits, stones);
+			final int total = engine.total(pits);
+			// Every move drops a stone in a store or moves stones forward, a game can't be longer
+			final long maxMoves = (long) total * engine.pits() * engine.pits();
+			final Position position = Position.of(engine, pits, MancalaEngine.TOP);
+			long moves = 0;
+			try {
+				while (position.getSide() != MancalaEngine.FINISHED) {
+					engine.move(position, policies[position.getSide()].choose(position, random));
+					if (++moves > maxMoves || engine.total(pits) != total || negative(pits)) {
+						totals.violations++;
+						return;
+					}
+				}
+			} catch (RuntimeException e) {
+				// An illegal choice or an engine failure is a broken game too
+				totals.violations++;
+				return;
+			}
+			if (position.getHash() != engine.zobrist().hash(pits, MancalaEngine.FINISHED)) {
+				totals.violations++;
+				return;
+			}
+
+			totals.moves += moves;
+			totals.longest = Math.max(totals.longest, moves);
+			final int score = pits[engine.store(MancalaEngine.TOP)] - pits[engine.store(MancalaEngine.BOTTOM)];
+			if (score > 0) {
+				totals.topWins++;
+			} else if (score < 0) {
+				totals.bottomWins++;
+			} else {
+				totals.draws++;
+			}
+		}
+
+		private boolean negative(final int[] pits) {
+			for (int pit : pits) {
+				if (pit < 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
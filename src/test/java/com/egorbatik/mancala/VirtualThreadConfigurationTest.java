@@ -0,0 +1,71 @@
+package com.egorbatik.mancala;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.PlayerType;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "VIRTUAL_THREADS=true")
+public class VirtualThreadConfigurationTest {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ServletWebServerApplicationContext context;
+
+	private static boolean virtualThreadsSupported() {
+		final String version = System.getProperty("java.specification.version");
+		return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+	}
+
+	@Test
+	@DisplayName("Tomcat runs on virtual threads when the JVM has them, on its pool otherwise")
+	public void TestExecutor() {
+		final Executor executor = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector()
+				.getProtocolHandler().getExecutor();
+		assertEquals(virtualThreadsSupported(), !(executor instanceof ThreadPoolExecutor));
+		assertEquals(virtualThreadsSupported(), VirtualThreadConfiguration.newVirtualThreadExecutor() != null);
+	}
+
+	@Test
+	@DisplayName("Concurrent games are served in either mode")
+	public void TestConcurrentGames() throws Exception {
+		final ExecutorService clients = Executors.newFixedThreadPool(32);
+		try {
+			final List<Future<HttpStatus>> results = IntStream.range(0, 64).mapToObj(i -> clients.submit(() -> {
+				final Board board = restTemplate.postForObject("/api/boards", null, Board.class);
+				final ResponseEntity<Board> moved = restTemplate.postForEntity("/api/boards/" + board.getId() + "/moves",
+						new Move(PlayerType.TOP, 6), Board.class);
+				return moved.getStatusCode();
+			})).collect(Collectors.toList());
+			for (Future<HttpStatus> result : results) {
+				assertEquals(HttpStatus.OK, result.get());
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.egorbatik.mancala.ai;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+
+public class AlphaBetaSearchTest {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	private final MancalaEngine engine = MancalaEngine.STANDARD;
+
+	@AfterAll
+	public static void shutdown() {
+		POOL.shutdownNow();
+	}
+
+	// Plain minimax to the end of the game, no pruning nor table
+	private int minimax(final int[] pits, final int side) {
+		int best = Integer.MIN_VALUE;
+		for (int house = 0; house < engine.houses(); house++) {
+			if (pits[engine.offset(side) + house] == 0) {
+				continue;
+			}
+			final int[] child = pits.clone();
+			final int next = MancalaEngine.nextSide(engine.move(child, side, house));
+			final int score;
+			if (next == MancalaEngine.FINISHED) {
+				score = child[engine.store(side)] - child[engine.store(side ^ 1)];
+			} else if (next == side) {
+				score = minimax(child, side);
+			} else {
+				score = -minimax(child, next);
+			}
+			best = Math.max(best, score);
+		}
+		return best;
+	}
+
+	@Test
+	@DisplayName("Solved endgame matches a plain minimax and leaves the board untouched")
+	public void TestEndgameIsExact() {
+		final int[] pits = { 1, 0, 2, 1, 0, 1, 20, 0, 2, 0, 1, 1, 0, 19 };
+		final int[] copy = pits.clone();
+		final AlphaBetaSearch search = new AlphaBetaSearch(engine, new TranspositionTable(16), POOL);
+		final SearchResult result = search.search(pits, MancalaEngine.TOP, TimeUnit.SECONDS.toNanos(10), 40);
+		assertEquals(minimax(pits.clone(), MancalaEngine.TOP), result.getScore());
+		assertEquals(40, result.getDepth());
+		assertArrayEquals(copy, pits);
+
+		// The suggested move reaches that score
+		final int[] child = pits.clone();
+		final int next = MancalaEngine.nextSide(engine.move(child, MancalaEngine.TOP, result.getHouse() - 1));
+		final int score = next == MancalaEngine.FINISHED
+				? child[engine.store(MancalaEngine.TOP)] - child[engine.store(MancalaEngine.BOTTOM)]
+				: next == MancalaEngine.TOP ? minimax(child, MancalaEngine.TOP) : -minimax(child, next);
+		assertEquals(result.getScore(), score);
+	}
+
+	@Test
+	@DisplayName("Opening search stops on the time budget")
+	public void TestBudget() {
+		final int[] pits = new int[engine.pits()];
+		engine.fill(pits, 6);
+		final AlphaBetaSearch search = new AlphaBetaSearch(engine, new TranspositionTable(16), POOL);
+		final SearchResult result = search.search(pits, MancalaEngine.TOP, TimeUnit.MILLISECONDS.toNanos(100), 64);
+		assertTrue(result.getDepth() >= 1 && result.getDepth() < 64);
+		assertTrue(result.getHouse() >= 1 && result.getHouse() <= 6);
+		assertTrue(result.getElapsedNanos() < TimeUnit.SECONDS.toNanos(2));
+		assertTrue(result.getNodes() > 0);
+	}
+}
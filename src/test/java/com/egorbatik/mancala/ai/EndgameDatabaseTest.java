@@ -0,0 +1,135 @@
+package com.egorbatik.mancala.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+
+public class EndgameDatabaseTest {
+
+	private static final int MAX_STONES = 8;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(2);
+
+	@TempDir
+	static Path folder;
+
+	private static EndgameDatabase database;
+
+	private final MancalaEngine engine = MancalaEngine.STANDARD;
+
+	@BeforeAll
+	public static void generate() throws Exception {
+		final Path file = folder.resolve("endgame.db");
+		final long positions = EndgameGenerator.generate(file, 6, MAX_STONES);
+		assertEquals(Files.size(file), EndgameDatabase.HEADER + positions);
+		database = EndgameDatabase.open(file);
+	}
+
+	@AfterAll
+	public static void shutdown() {
+		POOL.shutdownNow();
+	}
+
+	// Plain minimax of the stones left on the board
+	private int minimax(final int[] pits, final int side) {
+		int best = Integer.MIN_VALUE;
+		for (int house = 0; house < engine.houses(); house++) {
+			if (pits[engine.offset(side) + house] == 0) {
+				continue;
+			}
+			final int[] child = pits.clone();
+			final int next = MancalaEngine.nextSide(engine.move(child, side, house));
+			final int gained = child[engine.store(side)] - pits[engine.store(side)]
+					- (child[engine.store(side ^ 1)] - pits[engine.store(side ^ 1)]);
+			if (next == MancalaEngine.FINISHED) {
+				best = Math.max(best, gained);
+			} else if (next == side) {
+				best = Math.max(best, gained + minimax(child, side));
+			} else {
+				best = Math.max(best, gained - minimax(child, next));
+			}
+		}
+		return best;
+	}
+
+	private int[] randomPosition(final Random random, final int stones) {
+		final int[] pits = new int[engine.pits()];
+		for (int i = 0; i < stones; i++) {
+			pits[random.nextInt(engine.houses()) + (i == 0 ? 0 : engine.half() * random.nextInt(2))]++;
+		}
+		pits[engine.store(MancalaEngine.TOP)] = random.nextInt(20);
+		pits[engine.store(MancalaEngine.BOTTOM)] = random.nextInt(20);
+		return pits;
+	}
+
+	@Test
+	@DisplayName("Ranks are a bijection on the positions")
+	public void TestRank() {
+		final EndgameIndex index = new EndgameIndex(2, 5);
+		final Set<Long> ranks = new HashSet<>();
+		final int[] pits = new int[6];
+		for (int a = 0; a <= 5; a++) {
+			for (int b = 0; a + b <= 5; b++) {
+				for (int c = 0; a + b + c <= 5; c++) {
+					for (int d = 0; a + b + c + d <= 5; d++) {
+						pits[0] = a;
+						pits[1] = b;
+						pits[3] = c;
+						pits[4] = d;
+						final long rank = index.rank(pits, MancalaEngine.TOP);
+						assertTrue(rank >= 0 && rank < index.size());
+						ranks.add(rank);
+					}
+				}
+			}
+		}
+		assertEquals(index.size(), ranks.size());
+		pits[0] = 6;
+		assertEquals(-1, index.rank(pits, MancalaEngine.TOP));
+	}
+
+	@Test
+	@DisplayName("Database values match a plain minimax, for both sides")
+	public void TestValues() {
+		final Random random = new Random(11);
+		for (int i = 0; i < 300; i++) {
+			final int[] pits = randomPosition(random, 1 + random.nextInt(MAX_STONES));
+			final int side = random.nextInt(2);
+			if (engine.isEmpty(pits, side)) {
+				continue;
+			}
+			assertEquals(minimax(pits, side), database.value(pits, side));
+		}
+		final int[] full = new int[engine.pits()];
+		engine.fill(full, 6);
+		assertEquals(EndgameDatabase.UNKNOWN, database.value(full, MancalaEngine.TOP));
+	}
+
+	@Test
+	@DisplayName("Search reads late positions from the database and keeps the exact score")
+	public void TestSearchWithDatabase() {
+		final int[] pits = { 1, 0, 2, 1, 0, 1, 20, 0, 2, 0, 1, 0, 0, 20 };
+		final SearchResult plain = new AlphaBetaSearch(engine, new TranspositionTable(16), POOL).search(pits,
+				MancalaEngine.TOP, TimeUnit.SECONDS.toNanos(10), 40);
+		final SearchResult solved = new AlphaBetaSearch(engine, new TranspositionTable(16), POOL, database)
+				.search(pits, MancalaEngine.TOP, TimeUnit.SECONDS.toNanos(10), 40);
+		assertEquals(plain.getScore(), solved.getScore());
+		assertEquals(1, solved.getDepth());
+		assertTrue(solved.getNodes() < plain.getNodes());
+	}
+}
@@ -0,0 +1,166 @@
+package com.egorbatik.mancala.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.repository.CachedBoardRepository;
+
+public class ClusterTest {
+
+	private final RestTemplate restTemplate = new RestTemplate();
+
+	@Test
+	@DisplayName("Boards spread evenly and a new node only takes its own share")
+	public void TestRing() {
+		final List<String> three = Arrays.asList("http://a:1", "http://b:1", "http://c:1");
+		final HashRing ring = HashRing.of(three.subList(0, 2), 64);
+		final HashRing grown = HashRing.of(three, 64);
+		assertEquals(ring.owner(42), HashRing.of(Arrays.asList("http://b:1", "http://a:1"), 64).owner(42));
+
+		final Map<String, Integer> owned = new HashMap<>();
+		int moved = 0;
+		final int boards = 30000;
+		for (long id = 1; id <= boards; id++) {
+			final String owner = grown.owner(id);
+			owned.merge(owner, 1, Integer::sum);
+			if (!owner.equals(ring.owner(id))) {
+				moved++;
+				// Only to the new node
+				assertEquals("http://c:1", owner);
+			}
+		}
+		for (String node : three) {
+			assertTrue(Math.abs(owned.get(node) - boards / 3) < boards / 10, owned.toString());
+		}
+		assertEquals(owned.get("http://c:1"), moved);
+	}
+
+	@Test
+	@DisplayName("Moves are forwarded to the owner and boards are handed off when a node leaves and joins")
+	public void TestForwardingAndHandOff() throws Exception {
+		final int[] ports = { freePort(), freePort() };
+		final String a = "http://localhost:" + ports[0];
+		final String b = "http://localhost:" + ports[1];
+		final String nodes = a + "," + b;
+
+		ConfigurableApplicationContext nodeA = start(ports[0], nodes);
+		ConfigurableApplicationContext nodeB = start(ports[1], nodes);
+		try {
+			final ClusterMembership membershipA = nodeA.getBean(ClusterMembership.class);
+			final ClusterMembership membershipB = nodeB.getBean(ClusterMembership.class);
+			await(() -> membershipA.getRing().getNodes().size() == 2 && membershipB.getRing().getNodes().size() == 2);
+
+			// A board created on A but owned by B
+			Board board;
+			do {
+				board = restTemplate.postForObject(a + "/api/boards", null, Board.class);
+			} while (!b.equals(membershipA.owner(board.getId())));
+			final Long id = board.getId();
+
+			board = move(a, board);
+			assertEquals(1, board.getMoves());
+			assertTrue(nodeB.getBean(CachedBoardRepository.class).getCachedIds().contains(id));
+			assertTrue(nodeA.getBean(BoardRoutingFilter.class).getForwarded() > 0);
+			final CachedBoardRepository cacheA = nodeA.getBean(CachedBoardRepository.class);
+			await(() -> !cacheA.getCachedIds().contains(id));
+
+			// A forwarded request for B's board isn't served by A
+			final HttpHeaders forwardedByB = new HttpHeaders();
+			forwardedByB.set(BoardRoutingFilter.FORWARDED_BY, b);
+			final HttpServerErrorException refused = assertThrows(HttpServerErrorException.ServiceUnavailable.class,
+					() -> restTemplate.exchange(a + "/api/boards/" + id, HttpMethod.GET, new HttpEntity<>(forwardedByB),
+							Board.class));
+			assertEquals("1", refused.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+			assertFalse(cacheA.getCachedIds().contains(id));
+
+			// B leaves, A takes its boards from the database
+			nodeB.close();
+			await(() -> membershipA.getRing().getNodes().size() == 1);
+			board = move(a, restTemplate.getForObject(a + "/api/boards/" + id, Board.class));
+			assertEquals(2, board.getMoves());
+			assertTrue(cacheA.getCachedIds().contains(id));
+
+			// Another node writes the board: A's next move is rejected, not acknowledged
+			final BoardRepository database = nodeA.getBean("boardRepository", BoardRepository.class);
+			final Board written = database.findById(id).get();
+			written.setLastUpdate(written.getLastUpdate() + 1);
+			database.save(written);
+			final Board cached = board;
+			assertThrows(HttpClientErrorException.Conflict.class, () -> move(a, cached));
+			assertFalse(cacheA.getCachedIds().contains(id));
+			assertEquals(2, database.findById(id).get().getMoves());
+
+			// B is back, A hands the board off again
+			nodeB = start(ports[1], nodes);
+			await(() -> membershipA.getRing().getNodes().size() == 2);
+			await(() -> !cacheA.getCachedIds().contains(id));
+			board = move(a, board);
+			assertEquals(3, board.getMoves());
+			assertTrue(nodeB.getBean(CachedBoardRepository.class).getCachedIds().contains(id));
+			assertFalse(nodeA.getBean(ClusterMembership.class).isLocal(id));
+		} finally {
+			nodeB.close();
+			nodeA.close();
+		}
+	}
+
+	private static ConfigurableApplicationContext start(final int port, final String nodes) {
+		return new SpringApplicationBuilder(MancalaApplication.class).run("--server.port=" + port,
+				"--CLUSTER_NODES=" + nodes, "--CLUSTER_SELF=http://localhost:" + port, "--CLUSTER_CHECK_MS=100",
+				"--CLUSTER_TIMEOUT_MS=200", "--spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1",
+				"--spring.jpa.hibernate.ddl-auto=update");
+	}
+
+	// Any legal move of the next player
+	private Board move(final String node, final Board board) {
+		final Integer[] half = board.getNextPlayer() == PlayerType.TOP ? board.getTopPlayerBoard()
+				: board.getBottomPlayerBoard();
+		int house = 1;
+		while (half[house - 1] == 0) {
+			house++;
+		}
+		return restTemplate.postForObject(node + "/api/boards/" + board.getId() + "/moves",
+				new Move(board.getNextPlayer(), house), Board.class);
+	}
+
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Cluster didn't converge");
+			Thread.sleep(50);
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.egorbatik.mancala.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.CachedBoardRepository;
+import com.egorbatik.mancala.service.BoardLocks;
+import com.egorbatik.mancala.service.BoardService;
+import com.egorbatik.mancala.service.BoardViewCache;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BoardControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private BoardViewCache boardViewCache;
+
+	@Autowired
+	private CachedBoardRepository cachedBoardRepository;
+
+	@Autowired
+	private BoardLocks boardLocks;
+
+	private String page(final Board board, final String player) throws Exception {
+		return mockMvc.perform(get("/board").param("board_id", board.getId().toString()).param("player", player))
+				.andExpect(status().isOk()).andExpect(content().string(Matchers.containsString("Borad Id:" + board.getId())))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+	@Test
+	@DisplayName("A new board redirects to its url")
+	public void TestRedirect() throws Exception {
+		mockMvc.perform(get("/board").param("player", "bottom")).andExpect(status().isFound())
+				.andExpect(header().string(HttpHeaders.LOCATION, Matchers.matchesPattern(".*/board\\?board_id=\\d+&player=bottom")));
+	}
+
+	@Test
+	@DisplayName("An unchanged board is answered with a 304, its page is rendered once per player")
+	public void TestNotModified() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		final String etag = page(board, "top");
+		mockMvc.perform(get("/board").param("board_id", board.getId().toString()).param("player", "top")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+
+		final long hits = boardViewCache.getPages().getHits();
+		assertEquals(etag, page(board, "top"));
+		assertEquals(hits + 1, boardViewCache.getPages().getHits());
+		assertNotEquals(etag, page(board, "bottom"));
+	}
+
+	@Test
+	@DisplayName("A move changes the ETag and the page")
+	public void TestMoveChangesPage() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		final String etag = page(board, "top");
+		boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		final String content = mockMvc
+				.perform(get("/board").param("board_id", board.getId().toString()).param("player", "top")
+						.header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, Matchers.not(etag)))
+				.andReturn().getResponse().getContentAsString();
+		assertTrue(content.contains("Next move:[BOTTOM]"));
+	}
+
+	@Test
+	@DisplayName("The key, ETag and page come from one board read under its lock")
+	public void TestPageUnderBoardLock() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		final Board live = cachedBoardRepository.findById(board.getId()).get();
+		final Lock lock = boardLocks.lockFor(board.getId());
+		final CompletableFuture<MockHttpServletResponse> request;
+		lock.lock();
+		try {
+			// A move half way through
+			live.setNextPlayer(PlayerType.BOTTOM);
+			request = CompletableFuture.supplyAsync(() -> {
+				try {
+					return mockMvc.perform(get("/board").param("board_id", board.getId().toString())
+							.param("player", "top")).andReturn().getResponse();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			Thread.sleep(200);
+			assertFalse(request.isDone());
+			live.setMoves(1);
+		} finally {
+			lock.unlock();
+		}
+		final MockHttpServletResponse response = request.get(10, TimeUnit.SECONDS);
+		assertEquals(BoardViewCache.etag(boardViewCache.key(live, PlayerType.TOP)),
+				response.getHeader(HttpHeaders.ETAG));
+		assertTrue(response.getContentAsString().contains("Next move:[BOTTOM]"));
+	}
+
+}
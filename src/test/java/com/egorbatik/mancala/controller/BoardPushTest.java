@@ -0,0 +1,163 @@
+package com.egorbatik.mancala.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.service.BoardChangedEvent;
+import com.egorbatik.mancala.service.BoardPushService;
+import com.egorbatik.mancala.service.BoardService;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "PUSH_MAX_SUBSCRIBERS_PER_BOARD=1",
+		"PUSH_THREADS=2", "PUSH_SEND_TIMEOUT_MS=500" })
+@AutoConfigureMockMvc
+public class BoardPushTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@SpyBean
+	private BoardService boardService;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	@Autowired
+	private BoardPushService boardPushService;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@LocalServerPort
+	private int port;
+
+	private static boolean waitFor(final MvcResult result, final String expected) throws Exception {
+		for (int i = 0; i < 100; i++) {
+			if (result.getResponse().getContentAsString().contains(expected)) {
+				return true;
+			}
+			Thread.sleep(50);
+		}
+		return false;
+	}
+
+	// Subscribes over a real connection and never reads a byte of the events
+	private Socket neverReading(final Long boardId) throws Exception {
+		final Socket socket = new Socket();
+		socket.setReceiveBufferSize(4096);
+		socket.connect(new InetSocketAddress("localhost", port));
+		final OutputStream out = socket.getOutputStream();
+		out.write(("GET /api/boards/" + boardId + "/events HTTP/1.1\r\nHost: localhost\r\n"
+				+ "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+		return socket;
+	}
+
+	@Test
+	@DisplayName("Subscribers get the full board and then only the changed pits")
+	public void TestPushDelta() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		final MvcResult result = mockMvc.perform(get("/api/boards/" + board.getId() + "/events"))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertTrue(waitFor(result, "\"full\":true"));
+
+		boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		// House 6 emptied, store +1, BOTTOM houses 1..5 +1
+		assertTrue(waitFor(result, "\"full\":false,\"changes\":[5,0,6,1,7,7,8,7,9,7,10,7,11,7]"));
+
+		// Only one subscriber per board in this test
+		mockMvc.perform(get("/api/boards/" + board.getId() + "/events")).andExpect(status().isServiceUnavailable());
+		boardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("A move right after the subscriber's board is read is still pushed to it")
+	public void TestMoveWhileSubscribing() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		doAnswer(invocation -> {
+			final Object read = invocation.callRealMethod();
+			boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+			return read;
+		}).when(boardService).retrieveBoard(any());
+		final MvcResult result = mockMvc.perform(get("/api/boards/" + board.getId() + "/events"))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertTrue(waitFor(result, "\"moves\":0,\"nextPlayer\":\"TOP\",\"full\":true"));
+		assertTrue(waitFor(result, "\"moves\":1,\"nextPlayer\":\"BOTTOM\",\"full\":false"));
+		boardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Subscribers that never read are dropped and don't hold up the pushes of other boards")
+	public void TestStalledSubscribers() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		final MvcResult result = mockMvc.perform(get("/api/boards/" + board.getId() + "/events"))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertTrue(waitFor(result, "\"full\":true"));
+
+		// As many stuck clients as sender threads, each on its own board
+		final int subscribed = boardPushService.getSubscribers();
+		final List<Board> stuck = new ArrayList<>();
+		final List<Socket> clients = new ArrayList<>();
+		try {
+			for (int i = 0; i < 2; i++) {
+				stuck.add(boardService.retriveNewBoard());
+				clients.add(neverReading(stuck.get(i).getId()));
+			}
+			final long deadline = System.currentTimeMillis() + 20000;
+			while (boardPushService.getSubscribers() < subscribed + 2) {
+				assertTrue(System.currentTimeMillis() < deadline);
+				Thread.sleep(20);
+			}
+
+			// Far more than the socket buffers hold, until both sends block
+			int moves = 1;
+			while (boardPushService.getStalled() < 2) {
+				assertTrue(System.currentTimeMillis() < deadline, "Sends never blocked");
+				final int[] pits = new int[200000];
+				Arrays.fill(pits, moves);
+				for (Board blocked : stuck) {
+					eventPublisher.publishEvent(new BoardChangedEvent(blocked.getId(), moves, PlayerType.TOP, pits));
+				}
+				moves++;
+				Thread.sleep(100);
+			}
+			assertEquals(subscribed, boardPushService.getSubscribers());
+
+			boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+			assertTrue(waitFor(result, "\"moves\":1,\"nextPlayer\":\"BOTTOM\",\"full\":false"));
+		} finally {
+			for (Socket client : clients) {
+				client.close();
+			}
+			stuck.forEach(boardRepository::delete);
+			boardRepository.delete(board);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.egorbatik.mancala.controller;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.service.BoardService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BoardRestControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	@DisplayName("Create, move and read a board through the JSON API")
+	public void TestMoveRoundTrip() throws Exception {
+		mockMvc.perform(post("/api/boards")).andExpect(status().isCreated())
+				.andExpect(jsonPath("$.nextPlayer").value("TOP"))
+				.andExpect(jsonPath("$.topPlayerBoard.length()").value(7));
+
+		final Board board = boardService.retriveNewBoard();
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"player\":\"TOP\",\"house\":6}")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.nextPlayer").value("BOTTOM"))
+				.andExpect(jsonPath("$.topPlayerBoard[6]").value(1))
+				.andExpect(jsonPath("$.bottomPlayerBoard[0]").value(7));
+
+		mockMvc.perform(get("/api/boards/" + board.getId())).andExpect(status().isOk())
+				.andExpect(jsonPath("$.moves").value(1));
+		boardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Errors are mapped to HTTP statuses")
+	public void TestErrors() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"player\":\"BOTTOM\",\"house\":1}")).andExpect(status().isConflict());
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"player\":\"NOBODY\",\"house\":1}")).andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/boards/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+		boardRepository.delete(board);
+	}
+	@Test
+	@DisplayName("Batch of moves reports the first illegal move")
+	public void TestBatch() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/moves/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"player\":\"TOP\",\"house\":1},{\"player\":\"TOP\",\"house\":1}]"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.applied").value(1))
+				.andExpect(jsonPath("$.firstIllegalMove").value(1))
+				.andExpect(jsonPath("$.board.nextPlayer").value("TOP"));
+		boardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("The computer plays the move of the next player")
+	public void TestComputerMove() throws Exception {
+		final Board board = boardService.retriveNewBoard();
+		mockMvc.perform(get("/api/boards/" + board.getId() + "/hint")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.depth").isNumber());
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/computer-moves").param("player", "TOP"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.moves").value(1));
+		mockMvc.perform(post("/api/boards/" + board.getId() + "/computer-moves").param("player", "FINISHED"))
+				.andExpect(status().isConflict());
+		assertTrue(meterRegistry.get("mancala.ai.nodes.per.second").gauge().value() > 0);
+		assertTrue(meterRegistry.get("mancala.ai.searches").functionCounter().count() > 0);
+		boardRepository.delete(board);
+	}
+}
@@ -0,0 +1,70 @@
+package com.egorbatik.mancala.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.jayway.jsonpath.JsonPath;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LobbyControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	@DisplayName("A waiting player is answered as soon as a second one joins, both on the same board")
+	public void TestMatch() throws Exception {
+		final String first = mockMvc.perform(post("/api/lobby/tickets").param("rating", "2200"))
+				.andExpect(status().isCreated()).andExpect(jsonPath("$.status").value("WAITING"))
+				.andReturn().getResponse().getContentAsString();
+		final String ticket = JsonPath.read(first, "$.id");
+
+		final MvcResult waiting = mockMvc.perform(get("/api/lobby/tickets/" + ticket).param("wait", "true"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		final String second = mockMvc.perform(post("/api/lobby/tickets").param("rating", "2300"))
+				.andExpect(status().isCreated()).andExpect(jsonPath("$.status").value("MATCHED"))
+				.andExpect(jsonPath("$.player").value("BOTTOM")).andReturn().getResponse().getContentAsString();
+		final Integer boardId = JsonPath.read(second, "$.boardId");
+
+		mockMvc.perform(asyncDispatch(waiting)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("MATCHED")).andExpect(jsonPath("$.player").value("TOP"))
+				.andExpect(jsonPath("$.boardId").value(boardId));
+		mockMvc.perform(get("/api/boards/" + boardId)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.nextPlayer").value("TOP"));
+
+		mockMvc.perform(delete("/api/lobby/tickets/" + ticket)).andExpect(status().isConflict())
+				.andExpect(jsonPath("$.error").value("ticket not waiting"));
+	}
+
+	@Test
+	@DisplayName("Cancelled, unknown and badly rated tickets")
+	public void TestErrors() throws Exception {
+		final String created = mockMvc.perform(post("/api/lobby/tickets").param("rating", "3900"))
+				.andReturn().getResponse().getContentAsString();
+		final String ticket = JsonPath.read(created, "$.id");
+		mockMvc.perform(delete("/api/lobby/tickets/" + ticket)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("CANCELLED"));
+		mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/lobby/tickets/" + ticket)).andReturn()))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.status").value("CANCELLED"));
+
+		mockMvc.perform(get("/api/lobby/tickets/nope")).andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.error").value("ticket not found"));
+		mockMvc.perform(post("/api/lobby/tickets").param("rating", "-5")).andExpect(status().isBadRequest());
+	}
+
+}
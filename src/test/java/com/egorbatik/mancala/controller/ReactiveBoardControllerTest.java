@@ -0,0 +1,85 @@
+package com.egorbatik.mancala.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
+import com.egorbatik.mancala.model.MoveLog;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.MoveLogRepository;
+import com.egorbatik.mancala.service.ReactiveBoardService;
+
+import reactor.core.publisher.Flux;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+public class ReactiveBoardControllerTest {
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Autowired
+	private ReactiveBoardService reactiveBoardService;
+
+	@Autowired
+	private MoveLogRepository moveLogRepository;
+
+	@Test
+	@DisplayName("Create, move and read a board through the reactive JSON API")
+	public void TestMoveRoundTrip() {
+		final Board board = webTestClient.post().uri("/api/boards").exchange().expectStatus()
+				.isCreated().expectBody(Board.class).returnResult().getResponseBody();
+		assertEquals(PlayerType.TOP, board.getNextPlayer());
+		assertEquals(7, board.getTopPlayerBoard().length);
+
+		webTestClient.post().uri("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"player\":\"TOP\",\"house\":6}").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.nextPlayer").isEqualTo("BOTTOM").jsonPath("$.topPlayerBoard[6]").isEqualTo(1)
+				.jsonPath("$.bottomPlayerBoard[0]").isEqualTo(7);
+
+		webTestClient.get().uri("/api/boards/" + board.getId()).exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.moves").isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Errors are mapped to the same HTTP statuses as the MVC API")
+	public void TestErrors() {
+		final Board board = reactiveBoardService.retriveNewBoard().block();
+		webTestClient.post().uri("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"player\":\"BOTTOM\",\"house\":1}").exchange().expectStatus()
+				.isEqualTo(HttpStatus.CONFLICT);
+		webTestClient.post().uri("/api/boards/" + board.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"player\":\"NOBODY\",\"house\":1}").exchange().expectStatus().isBadRequest();
+		webTestClient.get().uri("/api/boards/" + Long.MAX_VALUE).exchange().expectStatus().isNotFound();
+	}
+
+	@Test
+	@DisplayName("Concurrent moves on a board: exactly one wins, the rest see a wrong turn")
+	public void TestConcurrentMoves() {
+		final Board board = reactiveBoardService.retriveNewBoard().block();
+		final List<Boolean> results = Flux.range(2, 5)
+				.flatMap(house -> reactiveBoardService.applyGame(board.getId(), new Move(PlayerType.TOP, house))
+						.map(applied -> true).onErrorReturn(false))
+				.collectList().block();
+		assertEquals(1, results.stream().filter(Boolean::booleanValue).count());
+		assertEquals(1, reactiveBoardService.retrieveBoard(board.getId()).block().getMoves());
+		// Only the winning move is logged
+		final List<MoveLog> log = moveLogRepository.findByBoardIdAndSeqGreaterThanOrderBySeqAsc(board.getId(), 0);
+		assertEquals(1, log.size());
+		assertEquals(1, log.get(0).getSeq());
+		assertEquals(PlayerType.TOP, log.get(0).getPlayer());
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.egorbatik.mancala.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.InvalidParameterException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.service.StatelessBoard;
+import com.egorbatik.mancala.service.StatelessBoardService;
+import com.jayway.jsonpath.JsonPath;
+
+@SpringBootTest(properties = { "STATELESS_GAMES=true", "BOARD_TOKEN_SECRET=stateless-test" })
+@AutoConfigureMockMvc
+public class StatelessBoardControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private StatelessBoardService statelessBoardService;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	@Test
+	@DisplayName("A game is played on tokens without touching the database")
+	public void TestMoveRoundTrip() throws Exception {
+		final long boards = boardRepository.count();
+		final String created = mockMvc.perform(post("/api/stateless/boards")).andExpect(status().isCreated())
+				.andExpect(jsonPath("$.board.nextPlayer").value("TOP"))
+				.andExpect(jsonPath("$.board.id").doesNotExist()).andReturn().getResponse().getContentAsString();
+		final String token = JsonPath.read(created, "$.token");
+		// Header, game id, moves, 14 pits and the tag
+		assertTrue(token.length() <= 56, token);
+
+		final String moved = mockMvc
+				.perform(post("/api/stateless/boards/" + token + "/moves").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"player\":\"TOP\",\"house\":6}"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.board.nextPlayer").value("BOTTOM"))
+				.andExpect(jsonPath("$.board.topPlayerBoard[6]").value(1))
+				.andExpect(jsonPath("$.board.bottomPlayerBoard[0]").value(7)).andReturn().getResponse()
+				.getContentAsString();
+
+		mockMvc.perform(get("/api/stateless/boards/" + JsonPath.read(moved, "$.token")))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.board.moves").value(1));
+		assertEquals(boards, boardRepository.count());
+	}
+
+	@Test
+	@DisplayName("Forged tokens are rejected, spent tokens can't be replayed")
+	public void TestForgeryAndReplay() throws Exception {
+		final StatelessBoard board = statelessBoardService.retriveNewBoard();
+		final String token = board.getToken();
+
+		// Change the first pits (bytes 12 to 14, chars 16 to 19)
+		final char[] forged = token.toCharArray();
+		forged[17] = forged[17] == 'A' ? 'B' : 'A';
+		mockMvc.perform(get("/api/stateless/boards/" + new String(forged))).andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/stateless/boards/not-a-token")).andExpect(status().isBadRequest());
+
+		mockMvc.perform(post("/api/stateless/boards/" + token + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"player\":\"BOTTOM\",\"house\":1}")).andExpect(status().isConflict());
+
+		statelessBoardService.applyGame(token, PlayerType.TOP, 2);
+		assertThrows(InvalidParameterException.class, () -> statelessBoardService.applyGame(token, PlayerType.TOP, 3));
+		mockMvc.perform(post("/api/stateless/boards/" + token + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"player\":\"TOP\",\"house\":2}")).andExpect(status().isConflict());
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.egorbatik.mancala.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.egorbatik.mancala.service.TournamentService;
+import com.jayway.jsonpath.JsonPath;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TournamentControllerTest {
+
+	private static final String PLAYERS = "[{\"name\":\"alice\",\"policy\":\"greedy\"},"
+			+ "{\"name\":\"bob\",\"policy\":\"random\",\"rating\":1400},{\"name\":\"carol\",\"policy\":\"random\"}]";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private TournamentService tournamentService;
+
+	@Test
+	@DisplayName("A tournament is started by one request, its standings are read until it finishes")
+	public void TestTournament() throws Exception {
+		final String created = mockMvc
+				.perform(post("/api/tournaments").param("format", "SWISS").param("rounds", "3")
+						.contentType(MediaType.APPLICATION_JSON).content(PLAYERS))
+				.andExpect(status().isCreated()).andExpect(jsonPath("$.format").value("SWISS"))
+				.andExpect(jsonPath("$.standings.length()").value(3)).andReturn().getResponse().getContentAsString();
+		final Integer id = JsonPath.read(created, "$.id");
+
+		mockMvc.perform(get("/api/tournaments/" + id + "/standings")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3));
+		tournamentService.tournament(id.longValue()).getResult().get(60, TimeUnit.SECONDS);
+
+		mockMvc.perform(get("/api/tournaments/" + id)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("FINISHED")).andExpect(jsonPath("$.round").value(3))
+				.andExpect(jsonPath("$.finished").value(3)).andExpect(jsonPath("$.failed").value(0));
+	}
+
+	@Test
+	@DisplayName("Unknown tournaments, too few players and unknown policies")
+	public void TestErrors() throws Exception {
+		mockMvc.perform(get("/api/tournaments/999999")).andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.error").value("tournament not found"));
+		mockMvc.perform(post("/api/tournaments").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"name\":\"alice\",\"policy\":\"greedy\"}]")).andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("bad request"));
+		mockMvc.perform(post("/api/tournaments").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"name\":\"a\",\"policy\":\"greedy\"},{\"name\":\"b\",\"policy\":\"chess\"}]"))
+				.andExpect(status().isBadRequest());
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.egorbatik.mancala.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.InvalidParameterException;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MancalaEngineTest {
+
+	private final MancalaEngine engine = MancalaEngine.STANDARD;
+
+	@Test
+	@DisplayName("Sowing wraps into the first house and skips the rival store")
+	/**
+	 * Start TOP house 1 with 13 stones
+	 * TOP     0  0 0 0 0 0 13
+	 * BOTTOM     1 1 1 1 1 1 0
+	 * Expected (last stone back on house 1, captures the opposite)
+	 * TOP     3  1 1 1 1 1 1
+	 * BOTTOM     2 2 2 2 2 0 0
+	 */
+	public void TestWrapAndCapture() {
+		final int[] pits = { 13, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 0 };
+		final int result = engine.move(pits, MancalaEngine.TOP, 0);
+		assertArrayEquals(new int[] { 1, 1, 1, 1, 1, 1, 3, 2, 2, 2, 2, 2, 0, 0 }, pits);
+		assertEquals(MancalaEngine.BOTTOM, MancalaEngine.nextSide(result));
+		assertEquals(MancalaEngine.CAPTURE, result & MancalaEngine.CAPTURE);
+	}
+
+	@Test
+	@DisplayName("Several laps are dropped at once")
+	public void TestLaps() {
+		final int[] pits = { 27, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5 };
+		final int result = engine.move(pits, MancalaEngine.TOP, 0);
+		assertArrayEquals(new int[] { 2, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 5 }, pits);
+		assertEquals(MancalaEngine.BOTTOM, MancalaEngine.nextSide(result));
+	}
+
+	@Test
+	@DisplayName("Empty house and wrong side are rejected")
+	public void TestInvalidMoves() {
+		final int[] pits = new int[engine.pits()];
+		engine.fill(pits, 6);
+		pits[2] = 0;
+		assertThrows(InvalidParameterException.class, () -> engine.move(pits, MancalaEngine.TOP, 2));
+		assertThrows(InvalidParameterException.class, () -> engine.move(pits, MancalaEngine.FINISHED, 0));
+		assertThrows(InvalidParameterException.class, () -> engine.move(pits, MancalaEngine.TOP, 6));
+	}
+
+	@Test
+	@DisplayName("Random games always finish and keep every stone")
+	public void TestRandomGamesConserveStones() {
+		playRandomGames(engine, 1000, 20);
+	}
+
+	@Test
+	@DisplayName("Large variant, 12 houses and 48 stones")
+	public void TestLargeVariant() {
+		final MancalaEngine large = MancalaEngine.forHouses(12);
+		final int[] pits = new int[large.pits()];
+		large.fill(pits, 48);
+		assertEquals(26, pits.length);
+		assertEquals(48 * 24, large.total(pits));
+		// 48 stones from the last house: 1 lap of 25 pits plus 23, ending on house 10
+		final int result = large.move(pits, MancalaEngine.TOP, 11);
+		assertEquals(1, pits[11]);
+		assertEquals(50, pits[9]);
+		assertEquals(49, pits[10]);
+		assertEquals(48 * 24, large.total(pits));
+		assertEquals(MancalaEngine.BOTTOM, MancalaEngine.nextSide(result));
+		assertEquals(2, pits[large.store(MancalaEngine.TOP)]);
+		assertEquals(0, pits[large.store(MancalaEngine.BOTTOM)]);
+		playRandomGames(large, 100, 48);
+	}
+
+	@Test
+	@DisplayName("Engines are shared per geometry")
+	public void TestForHouses() {
+		assertSame(MancalaEngine.STANDARD, MancalaEngine.forHouses(6));
+		assertThrows(InvalidParameterException.class, () -> MancalaEngine.forHouses(0));
+		assertThrows(InvalidParameterException.class, () -> MancalaEngine.forHouses(MancalaEngine.MAX_HOUSES + 1));
+	}
+
+	private void playRandomGames(final MancalaEngine engine, final int games, final int maxStones) {
+		final Random random = new Random(42);
+		final int[] pits = new int[engine.pits()];
+		for (int game = 0; game < games; game++) {
+			engine.fill(pits, 1 + random.nextInt(maxStones));
+			final int stones = engine.total(pits);
+			int side = MancalaEngine.TOP;
+			while (side != MancalaEngine.FINISHED) {
+				int house = random.nextInt(engine.houses());
+				while (pits[engine.offset(side) + house] == 0) {
+					house = (house + 1) % engine.houses();
+				}
+				side = MancalaEngine.nextSide(engine.move(pits, side, house));
+				assertEquals(stones, engine.total(pits));
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.egorbatik.mancala.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.egorbatik.mancala.engine.PositionCache.Replacement;
+
+public class PositionCacheTest {
+
+	// Same slot, different key
+	private static final long KEY = 5L;
+	private static final long OTHER = KEY + (1L << 40);
+
+	@Test
+	@DisplayName("Priority keeps the deeper entry, aging lets a new generation in")
+	public void TestReplacement() {
+		final PositionCache<String> priority = new PositionCache<>(4, Replacement.PRIORITY);
+		assertTrue(priority.put(KEY, "deep", 10));
+		assertFalse(priority.put(OTHER, "shallow", 3));
+		assertEquals("deep", priority.get(KEY));
+		assertNull(priority.get(OTHER));
+		// The same position is always updated
+		assertTrue(priority.put(KEY, "again", 1));
+		assertEquals("again", priority.get(KEY));
+
+		final PositionCache<String> aging = new PositionCache<>(4, Replacement.AGING);
+		aging.put(KEY, "deep", 10);
+		assertFalse(aging.put(OTHER, "shallow", 3));
+		aging.newGeneration();
+		assertTrue(aging.put(OTHER, "shallow", 3));
+		assertEquals("shallow", aging.get(OTHER));
+
+		final PositionCache<String> always = new PositionCache<>(4, Replacement.ALWAYS);
+		always.put(KEY, "deep", 10);
+		assertTrue(always.put(OTHER, "shallow", 3));
+
+		assertEquals(2, priority.getHits());
+		assertEquals(1, priority.getMisses());
+		assertEquals(1, priority.getRejections());
+		assertEquals(2.0 / 3, priority.getHitRate(), 1e-9);
+	}
+
+	@Test
+	@DisplayName("Concurrent writers never mix a key with another value")
+	public void TestConcurrent() throws Exception {
+		final PositionCache<Long> cache = new PositionCache<>(8, Replacement.ALWAYS);
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final long seed = t;
+				futures.add(executor.submit(() -> {
+					for (long i = 0; i < 100_000; i++) {
+						final long key = i * 31 + seed;
+						cache.put(key, key, 0);
+						final Long value = cache.get(key);
+						if (value != null) {
+							assertEquals(key, value.longValue());
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(800_000, cache.getStores());
+	}
+}
@@ -0,0 +1,61 @@
+package com.egorbatik.mancala.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ZobristTest {
+
+	@Test
+	@DisplayName("Incremental hash matches the hash from scratch along random games")
+	public void TestIncrementalHash() {
+		playRandomGames(MancalaEngine.STANDARD, 500, 20);
+		// Counts beyond the key table and several laps
+		playRandomGames(MancalaEngine.forHouses(12), 50, 200);
+	}
+
+	@Test
+	@DisplayName("Same pits with another side to move hash differently")
+	public void TestSideToMove() {
+		final MancalaEngine engine = MancalaEngine.STANDARD;
+		final int[] pits = new int[engine.pits()];
+		engine.fill(pits, 6);
+		assertNotEquals(engine.zobrist().hash(pits, MancalaEngine.TOP),
+				engine.zobrist().hash(pits, MancalaEngine.BOTTOM));
+	}
+
+	@Test
+	@DisplayName("Moving a position gives the same pits and result as moving the array")
+	public void TestPositionMove() {
+		final MancalaEngine engine = MancalaEngine.STANDARD;
+		final int[] pits = { 13, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 0 };
+		final Position position = Position.of(engine, pits.clone(), MancalaEngine.TOP);
+		final int expected = engine.move(pits, MancalaEngine.TOP, 0);
+		assertEquals(expected, engine.move(position, 0));
+		assertArrayEquals(pits, position.getPits());
+		assertEquals(MancalaEngine.BOTTOM, position.getSide());
+	}
+
+	private void playRandomGames(final MancalaEngine engine, final int games, final int maxStones) {
+		final Random random = new Random(7);
+		for (int game = 0; game < games; game++) {
+			final int[] pits = new int[engine.pits()];
+			engine.fill(pits, 1 + random.nextInt(maxStones));
+			final Position position = Position.of(engine, pits, MancalaEngine.TOP);
+			while (position.getSide() != MancalaEngine.FINISHED) {
+				final int side = position.getSide();
+				int house = random.nextInt(engine.houses());
+				while (pits[engine.offset(side) + house] == 0) {
+					house = (house + 1) % engine.houses();
+				}
+				engine.move(position, house);
+				assertEquals(engine.zobrist().hash(pits, position.getSide()), position.getHash());
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.egorbatik.mancala.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PitsConverterTest {
+
+	private final PitsConverter converter = new PitsConverter();
+
+	@Test
+	@DisplayName("Half board round trip in 2 bytes per pit")
+	public void TestRoundTrip() {
+		final Integer[] pits = new Integer[] { 6, 0, 255, 256, 1000, PitsConverter.MAX_STONES, 72 };
+		final byte[] bytes = converter.convertToDatabaseColumn(pits);
+		assertEquals(pits.length * PitsConverter.BYTES_PER_PIT, bytes.length);
+		assertArrayEquals(pits, converter.convertToEntityAttribute(bytes));
+		assertNull(converter.convertToDatabaseColumn(null));
+		assertNull(converter.convertToEntityAttribute(null));
+	}
+
+	@Test
+	@DisplayName("Pits that don't fit are rejected")
+	public void TestOutOfRange() {
+		assertThrows(IllegalArgumentException.class,
+				() -> converter.convertToDatabaseColumn(new Integer[] { PitsConverter.MAX_STONES + 1 }));
+		assertThrows(IllegalArgumentException.class, () -> converter.convertToDatabaseColumn(new Integer[] { -1 }));
+	}
+}
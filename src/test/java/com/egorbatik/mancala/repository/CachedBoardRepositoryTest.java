@@ -0,0 +1,185 @@
+package com.egorbatik.mancala.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.BoardLocks;
+import com.egorbatik.mancala.service.BoardService;
+
+@SpringBootTest(properties = "BOARD_CACHE_FLUSH_MS=3600000")
+public class CachedBoardRepositoryTest {
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private CachedBoardRepository cachedBoardRepository;
+
+	@Autowired
+	private BoardLocks boardLocks;
+
+	@Autowired
+	@Qualifier("boardRepository")
+	private BoardRepository jpaBoardRepository; // Bypasses the cache
+
+	@Test
+	@DisplayName("Moves are coalesced in memory until the flush")
+	public void TestWriteBehind() {
+		Board board = boardService.getBoard(Optional.empty());
+		final long hits = cachedBoardRepository.getHits();
+		board = boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		board = boardService.applyGame(board.getId(), PlayerType.BOTTOM, 1);
+		assertTrue(cachedBoardRepository.getHits() >= hits + 2);
+		assertEquals(0, jpaBoardRepository.findById(board.getId()).get().getMoves());
+
+		final long flushes = cachedBoardRepository.getFlushes();
+		cachedBoardRepository.flush();
+		assertEquals(flushes + 1, cachedBoardRepository.getFlushes());
+		final Board stored = jpaBoardRepository.findById(board.getId()).get();
+		assertEquals(2, stored.getMoves());
+		assertArrayEquals(board.getTopPlayerBoard(), stored.getTopPlayerBoard());
+		assertArrayEquals(board.getBottomPlayerBoard(), stored.getBottomPlayerBoard());
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Finished games are written right away")
+	public void TestFinishedWriteThrough() {
+		Board board = boardService.getBoard(Optional.empty());
+		board.setTopPlayerBoard(new Integer[] { 3, 3, 3, 3, 3, 3, 0 });
+		board.setBottomPlayerBoard(new Integer[] { 0, 0, 0, 0, 0, 0, 20 });
+		cachedBoardRepository.save(board);
+		board = boardService.applyGame(board.getId(), PlayerType.TOP, 3);
+		assertEquals(PlayerType.FINISHED, jpaBoardRepository.findById(board.getId()).get().getNextPlayer());
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("A flush waits for the move in progress, never writes half a board")
+	public void TestFlushUnderBoardLock() throws Exception {
+		Board board = boardService.getBoard(Optional.empty());
+		board = boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		final Board live = cachedBoardRepository.findById(board.getId()).get();
+		final Lock lock = boardLocks.lockFor(board.getId());
+		final CompletableFuture<Void> flush;
+		lock.lock();
+		try {
+			// A move half way through
+			live.getTopPlayerBoard()[0] = 0;
+			flush = CompletableFuture.runAsync(cachedBoardRepository::flush);
+			Thread.sleep(200);
+			assertFalse(flush.isDone());
+			live.getBottomPlayerBoard()[0] = 0;
+			live.setMoves(2);
+		} finally {
+			lock.unlock();
+		}
+		flush.get(10, TimeUnit.SECONDS);
+		final Board stored = jpaBoardRepository.findById(board.getId()).get();
+		assertEquals(2, stored.getMoves());
+		assertEquals(0, stored.getTopPlayerBoard()[0]);
+		assertEquals(0, stored.getBottomPlayerBoard()[0]);
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Readers get a copy of the board, later moves don't change it")
+	public void TestRetrieveCopy() {
+		final Board board = boardService.getBoard(Optional.empty());
+		final Board before = boardService.retrieveBoard(board.getId());
+		boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		assertEquals(PlayerType.TOP, before.getNextPlayer());
+		assertEquals(6, before.getTopPlayerBoard()[5]);
+		assertEquals(PlayerType.BOTTOM, boardService.retrieveBoard(board.getId()).getNextPlayer());
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("A board written meanwhile by another node is kept, the stale cached one is dropped")
+	public void TestStaleWrite() {
+		Board board = boardService.getBoard(Optional.empty());
+		board = boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		// The new owner plays on from the stored board
+		final Board other = jpaBoardRepository.findById(board.getId()).get();
+		other.setMoves(5);
+		jpaBoardRepository.save(other);
+
+		final long conflicts = cachedBoardRepository.getConflicts();
+		cachedBoardRepository.flush();
+		assertEquals(conflicts + 1, cachedBoardRepository.getConflicts());
+		assertEquals(5, jpaBoardRepository.findById(board.getId()).get().getMoves());
+		assertEquals(5, boardService.retrieveBoard(board.getId()).getMoves());
+
+		// Later snapshots write over the version just read
+		final Board live = cachedBoardRepository.findById(board.getId()).get();
+		live.setMoves(6);
+		cachedBoardRepository.save(live);
+		cachedBoardRepository.flush();
+		assertEquals(conflicts + 1, cachedBoardRepository.getConflicts());
+		assertEquals(6, jpaBoardRepository.findById(board.getId()).get().getMoves());
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Orphans are deleted under the board lock, a first move in progress or not yet written keeps its board")
+	public void TestDeleteOrphansUnderBoardLock() throws Exception {
+		final Board moving = boardService.getBoard(Optional.empty());
+		final Board played = boardService.getBoard(Optional.empty());
+		final Board orphan = boardService.getBoard(Optional.empty());
+		final long before = System.currentTimeMillis() + 60000;
+
+		// First move cached, not written yet
+		boardService.applyGame(played.getId(), PlayerType.TOP, 6);
+		assertEquals(0, jpaBoardRepository.findById(played.getId()).get().getMoves());
+
+		// First move in progress
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CompletableFuture<Void> move = CompletableFuture.runAsync(() -> {
+			final Lock lock = boardLocks.lockFor(moving.getId());
+			lock.lock();
+			try {
+				locked.countDown();
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				lock.unlock();
+			}
+		});
+		try {
+			assertTrue(locked.await(10, TimeUnit.SECONDS));
+			assertEquals(1, cachedBoardRepository.deleteOrphans(before,
+					List.of(moving.getId(), played.getId(), orphan.getId())));
+		} finally {
+			release.countDown();
+		}
+		move.get(10, TimeUnit.SECONDS);
+
+		assertFalse(jpaBoardRepository.existsById(orphan.getId()));
+		assertFalse(cachedBoardRepository.findById(orphan.getId()).isPresent());
+		assertEquals(1, boardService.applyGame(moving.getId(), PlayerType.TOP, 6).getMoves());
+		cachedBoardRepository.flush();
+		assertEquals(1, jpaBoardRepository.findById(moving.getId()).get().getMoves());
+		assertEquals(1, jpaBoardRepository.findById(played.getId()).get().getMoves());
+		cachedBoardRepository.delete(moving);
+		cachedBoardRepository.delete(played);
+	}
+}
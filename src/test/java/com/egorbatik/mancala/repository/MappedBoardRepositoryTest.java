@@ -0,0 +1,267 @@
+package com.egorbatik.mancala.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import com.egorbatik.mancala.MancalaApplication;
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.service.BoardService;
+
+public class MappedBoardRepositoryTest {
+
+	@TempDir
+	Path dir;
+
+	private MappedBoardRepository open(final String name) throws Exception {
+		final MappedBoardRepository repository = new MappedBoardRepository(dir.resolve(name).toString(), 6);
+		repository.open();
+		return repository;
+	}
+
+	private static Board board(final int stones, final Integer moves, final Long lastUpdate) {
+		final Board board = new Board();
+		final Integer[] top = new Integer[7];
+		final Integer[] bottom = new Integer[7];
+		Arrays.fill(top, stones);
+		Arrays.fill(bottom, stones + 1);
+		top[6] = 0;
+		bottom[6] = 0;
+		board.setTopPlayerBoard(top);
+		board.setBottomPlayerBoard(bottom);
+		board.setNextPlayer(PlayerType.TOP);
+		board.setMoves(moves);
+		board.setLastUpdate(lastUpdate);
+		return board;
+	}
+
+	private static List<Long> ids(final Iterable<Board> boards) {
+		final List<Long> ids = new ArrayList<>();
+		boards.forEach(board -> ids.add(board.getId()));
+		return ids;
+	}
+
+	@Test
+	@DisplayName("Boards are written in place, deleted slots are reused and pages come by id")
+	public void TestCrud() throws Exception {
+		final MappedBoardRepository repository = open("crud.boards");
+		try {
+			final Board board = repository.save(board(6, 0, 1L));
+			assertEquals(1L, board.getId());
+			board.getTopPlayerBoard()[0] = 0;
+			board.getTopPlayerBoard()[6] = 1;
+			board.setNextPlayer(PlayerType.BOTTOM);
+			board.setMoves(1);
+			board.setPositionHash(42L);
+			repository.save(board);
+
+			final Board stored = repository.findById(1L).get();
+			assertArrayEquals(board.getTopPlayerBoard(), stored.getTopPlayerBoard());
+			assertArrayEquals(board.getBottomPlayerBoard(), stored.getBottomPlayerBoard());
+			assertEquals(PlayerType.BOTTOM, stored.getNextPlayer());
+			assertEquals(1, stored.getMoves());
+			assertEquals(42L, stored.getPositionHash());
+			assertTrue(stored.isStale());
+
+			for (int i = 0; i < 9; i++) {
+				repository.save(board(4, i % 2 == 0 ? null : 3, 10L + i));
+			}
+			assertEquals(10, repository.count());
+			repository.deleteById(5L);
+			assertFalse(repository.existsById(5L));
+			final Board reused = repository.save(board(3, null, null));
+			assertEquals(11L, reused.getId());
+			assertNull(repository.findById(11L).get().getMoves());
+			assertNull(repository.findById(11L).get().getLastUpdate());
+
+			final Slice<Board> page = repository.findByIdGreaterThan(3L, PageRequest.of(0, 4, Sort.by("id")));
+			assertEquals(Arrays.asList(4L, 6L, 7L, 8L), ids(page));
+			assertTrue(page.hasNext());
+			assertEquals(Arrays.asList(10L, 11L),
+					ids(repository.findByIdGreaterThan(9L, PageRequest.of(0, 4, Sort.by("id")))));
+			assertThrows(UnsupportedOperationException.class,
+					() -> repository.findAll(Sort.by(Sort.Direction.DESC, "id")));
+
+			// No moves and older than 15: 2, 4, 6 (null moves, 10, 12, 14)
+			assertEquals(Arrays.asList(2L, 4L, 6L), repository.findOrphanIds(15L, 0L, PageRequest.of(0, 10)));
+			assertEquals(Arrays.asList(4L), repository.findOrphanIds(15L, 2L, PageRequest.of(0, 1)));
+			// Only the ones still orphans
+			assertEquals(1, repository.deleteOrphans(15L, Arrays.asList(4L, 7L, 8L)));
+			assertEquals(2, repository.deleteOrphans(15L));
+			assertEquals(Arrays.asList(1L, 3L, 7L, 8L, 9L, 10L, 11L), ids(repository.findAll()));
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Id 0 and negative ids are never found nor saved, slot 0 keeps its board")
+	public void TestNonPositiveIds() throws Exception {
+		final MappedBoardRepository repository = open("zero.boards");
+		try {
+			final Board first = repository.save(board(6, 0, 1L));
+			assertFalse(repository.findById(0L).isPresent());
+			assertFalse(repository.existsById(0L));
+			assertFalse(repository.findById(-1L).isPresent());
+
+			final Board zero = board(1, 0, 1L);
+			zero.setId(0L);
+			assertThrows(IllegalArgumentException.class, () -> repository.save(zero));
+			repository.deleteById(0L);
+			assertEquals(1, repository.count());
+			assertArrayEquals(first.getTopPlayerBoard(), repository.findById(first.getId()).get().getTopPlayerBoard());
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Boards survive a restart and ids are never handed out twice")
+	public void TestReopen() throws Exception {
+		MappedBoardRepository repository = open("reopen.boards");
+		for (int i = 0; i < 20000; i++) {
+			repository.save(board(i % 10, i, (long) i));
+		}
+		repository.deleteById(20000L);
+		repository.close();
+
+		final MappedBoardRepository reopened = open("reopen.boards");
+		try {
+			assertEquals(19999, reopened.count());
+			final Board board = reopened.findById(17000L).get();
+			assertEquals(16999, board.getMoves());
+			assertEquals(9, board.getTopPlayerBoard()[0]);
+			assertEquals(20001L, reopened.save(board(1, 0, 0L)).getId());
+			assertThrows(IllegalArgumentException.class, () -> {
+				final Board other = board(1, 0, 0L);
+				other.setTopPlayerBoard(new Integer[] { 1, 0 });
+				reopened.save(other);
+			});
+		} finally {
+			reopened.close();
+		}
+		assertThrows(IllegalStateException.class,
+				() -> new MappedBoardRepository(dir.resolve("reopen.boards").toString(), 4).open());
+	}
+
+	@Test
+	@DisplayName("Torn records are put back from the log after a crash")
+	public void TestRecovery() throws Exception {
+		final MappedBoardRepository crashed = open("crash.boards");
+		for (int i = 0; i < 3; i++) {
+			crashed.save(board(5, 7, 100L));
+		}
+		final Board board = crashed.findById(2L).get();
+		board.setMoves(8);
+		crashed.save(board);
+		crashed.force();
+		// Never closed, as if the process died before the checkpoint
+
+		final Path file = dir.resolve("crash.boards");
+		try (FileChannel data = FileChannel.open(file, StandardOpenOption.WRITE);
+				FileChannel wal = FileChannel.open(dir.resolve("crash.boards.wal"), StandardOpenOption.WRITE)) {
+			// Header is 64 bytes, records 88: tears the second one
+			data.write(ByteBuffer.wrap(new byte[40]), 64 + 88 + 8);
+			// Half an entry at the end of the log
+			wal.write(ByteBuffer.wrap(new byte[50]), wal.size());
+		}
+
+		final MappedBoardRepository recovered = open("crash.boards");
+		try {
+			assertEquals(3, recovered.count());
+			final Board stored = recovered.findById(2L).get();
+			assertEquals(8, stored.getMoves());
+			assertEquals(PlayerType.TOP, stored.getNextPlayer());
+			assertEquals(100L, stored.getLastUpdate());
+			assertArrayEquals(board.getTopPlayerBoard(), stored.getTopPlayerBoard());
+		} finally {
+			recovered.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Records only reach the file once logged and forced, the log keeps the next id")
+	public void TestWriteOrder() throws Exception {
+		final MappedBoardRepository crashed = open("order.boards");
+		for (int i = 0; i < 3; i++) {
+			crashed.save(board(5, 7, 100L));
+		}
+		final Path file = dir.resolve("order.boards");
+		final ByteBuffer record = ByteBuffer.allocate(88);
+		try (FileChannel data = FileChannel.open(file, StandardOpenOption.READ)) {
+			data.read(record, 64 + 88);
+		}
+		// Not forced: nothing in the file, read from memory
+		assertArrayEquals(new byte[88], record.array());
+		assertEquals(7, crashed.findById(2L).get().getMoves());
+
+		crashed.force();
+		record.clear();
+		try (FileChannel data = FileChannel.open(file, StandardOpenOption.READ)) {
+			data.read(record, 64 + 88);
+		}
+		assertEquals(2L, record.getLong(0));
+		crashed.deleteById(3L);
+		crashed.force();
+		// Never closed, and the header page with the next id never written back
+		try (FileChannel data = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			data.write(ByteBuffer.wrap(new byte[8]), 16);
+		}
+
+		final MappedBoardRepository recovered = open("order.boards");
+		try {
+			assertEquals(2, recovered.count());
+			assertEquals(4L, recovered.save(board(1, 0, 0L)).getId());
+		} finally {
+			recovered.close();
+		}
+	}
+
+	@Test
+	@DisplayName("The mapped profile plays games on the file instead of JPA")
+	public void TestProfile() throws Exception {
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(MancalaApplication.class)
+				.profiles("mapped").web(WebApplicationType.NONE)
+				.run("--BOARD_STORE_FILE=" + dir.resolve("profile.boards"),
+						"--spring.datasource.url=jdbc:h2:mem:mapped");
+		try {
+			final BoardRepository store = context.getBean("boardRepository", BoardRepository.class);
+			assertTrue(store instanceof MappedBoardRepository);
+			final BoardService boardService = context.getBean(BoardService.class);
+			final List<Long> boards = IntStream.range(0, 3)
+					.mapToObj(i -> boardService.retriveNewBoard().getId()).collect(Collectors.toList());
+			boardService.applyGame(boards.get(1), PlayerType.TOP, 6);
+			context.getBean(CachedBoardRepository.class).flush();
+			final Board stored = store.findById(boards.get(1)).get();
+			assertEquals(1, stored.getMoves());
+			assertEquals(PlayerType.BOTTOM, stored.getNextPlayer());
+		} finally {
+			context.close();
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+
+@SpringBootTest(properties = "ARCHIVE_PAGE_SIZE=2")
+public class BoardArchiveServiceTest {
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private BoardArchiveService boardArchiveService;
+
+	@Autowired
+	private MoveJournal moveJournal;
+
+	@Autowired
+	@Qualifier("boardRepository")
+	private BoardRepository jpaBoardRepository; // Bypasses the cache
+
+	// Three boards with 0, 1 and 2 moves
+	private List<Board> play() {
+		final List<Board> boards = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Board board = boardService.getBoard(Optional.empty());
+			if (i > 0) {
+				board = boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+			}
+			if (i > 1) {
+				board = boardService.applyGame(board.getId(), PlayerType.BOTTOM, 2);
+			}
+			boards.add(board);
+		}
+		return boards;
+	}
+
+	private byte[] export(final long after, final boolean history, final boolean compress) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		boardArchiveService.export(Channels.newChannel(out), after, history, compress);
+		return out.toByteArray();
+	}
+
+	private List<Board> importedAfter(final long id) {
+		return jpaBoardRepository.findByIdGreaterThan(id, PageRequest.of(0, 100, Sort.by("id"))).getContent();
+	}
+
+	@Test
+	@DisplayName("Export and import round trip, compressed, with the moves")
+	public void TestRoundTrip() throws Exception {
+		final List<Board> boards = play();
+		final long after = boards.get(0).getId() - 1;
+		final byte[] archive = export(after, true, true);
+
+		final long last = importedAfter(0).stream().mapToLong(Board::getId).max().getAsLong();
+		final ArchiveResult result = boardArchiveService
+				.importBoards(Channels.newChannel(new ByteArrayInputStream(archive)), 0);
+		assertEquals(3, result.getBoards());
+		assertEquals(3, result.getMoves());
+		assertEquals(boards.get(2).getId(), result.getLastBoardId());
+
+		final List<Board> imported = importedAfter(last);
+		assertEquals(3, imported.size());
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(boards.get(i).getTopPlayerBoard(), imported.get(i).getTopPlayerBoard());
+			assertArrayEquals(boards.get(i).getBottomPlayerBoard(), imported.get(i).getBottomPlayerBoard());
+			assertEquals(boards.get(i).getNextPlayer(), imported.get(i).getNextPlayer());
+			assertEquals(boards.get(i).getMoves(), imported.get(i).getMoves());
+			assertEquals(i, moveJournal.tail(imported.get(i).getId(), 0).size());
+		}
+	}
+
+	@Test
+	@DisplayName("Export resumes after an id, import after a truncation")
+	public void TestResume() throws Exception {
+		final List<Board> boards = play();
+		final byte[] archive = export(boards.get(0).getId() - 1, false, false);
+		final byte[] tail = export(boards.get(0).getId(), false, false);
+
+		// Cut in the last board, the first page (2 boards) gets in
+		final byte[] truncated = Arrays.copyOf(archive, archive.length - 10);
+		final long last = importedAfter(0).stream().mapToLong(Board::getId).max().getAsLong();
+		final EOFException e = assertThrows(EOFException.class, () -> boardArchiveService
+				.importBoards(Channels.newChannel(new ByteArrayInputStream(truncated)), 0));
+		assertTrue(e.getMessage().contains("skipping 2 boards"));
+		assertEquals(2, importedAfter(last).size());
+
+		final ArchiveResult resumed = boardArchiveService
+				.importBoards(Channels.newChannel(new ByteArrayInputStream(archive)), 2);
+		assertEquals(1, resumed.getBoards());
+		assertEquals(3, importedAfter(last).size());
+
+		// The export after the first board has the other two
+		assertEquals(2, boardArchiveService
+				.importBoards(Channels.newChannel(new ByteArrayInputStream(tail)), 0).getBoards());
+	}
+}
@@ -0,0 +1,91 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+
+@SpringBootTest
+public class BoardServiceConcurrencyTest {
+
+	private static final int BOARDS = 4;
+	private static final int THREADS = 16;
+	private static final int ATTEMPTS = 2000;
+	private static final int STONES = 40;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	private static int total(final Board board) {
+		return Stream.concat(Stream.of(board.getTopPlayerBoard()), Stream.of(board.getBottomPlayerBoard()))
+				.mapToInt(Integer::intValue).sum();
+	}
+
+	@Test
+	@DisplayName("Many threads on a few boards keep every stone and every move")
+	public void TestContention() throws Exception {
+		final List<Board> boards = new ArrayList<>();
+		final AtomicInteger[] applied = new AtomicInteger[BOARDS];
+		for (int i = 0; i < BOARDS; i++) {
+			final Board board = boardService.getBoard(Optional.empty());
+			board.setTopPlayerBoard(new Integer[] { STONES, STONES, STONES, STONES, STONES, STONES, 0 });
+			board.setBottomPlayerBoard(new Integer[] { STONES, STONES, STONES, STONES, STONES, STONES, 0 });
+			boards.add(boardRepository.save(board));
+			applied[i] = new AtomicInteger();
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+					final int index = random.nextInt(BOARDS);
+					final Long id = boards.get(index).getId();
+					final PlayerType player = random.nextBoolean() ? PlayerType.TOP : PlayerType.BOTTOM;
+					try {
+						boardService.applyGame(id, player, 1 + random.nextInt(6));
+						applied[index].incrementAndGet();
+					} catch (InvalidParameterException e) {
+						// Lost the turn or empty house, expected under contention
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		int moves = 0;
+		for (int i = 0; i < BOARDS; i++) {
+			final Board board = boardService.retrieveBoard(boards.get(i).getId());
+			assertEquals(STONES * 12, total(board));
+			assertEquals(applied[i].get(), board.getMoves());
+			moves += board.getMoves();
+			boardRepository.delete(board);
+		}
+		assertTrue(moves > 0);
+	}
+}
@@ -3,8 +3,11 @@ package com.egorbatik.mancala.service;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.DisplayName;
@@ -12,7 +15,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.egorbatik.mancala.engine.MancalaEngine;
+import com.egorbatik.mancala.engine.Position;
 import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.Move;
 import com.egorbatik.mancala.model.PlayerType;
 import com.egorbatik.mancala.repository.BoardRepository;
 import com.egorbatik.mancala.service.BoardService;
@@ -336,4 +342,81 @@ public class BoardServiceImplTest {
 		 boardRepository.delete(board);
 	 }
 	 
+	 @Test
+	 @DisplayName("Reloading a board must not create a new one")
+	 public void TestReloadDoesNotCreate() {
+		 Board board=boardService.getBoard(Optional.empty());
+		 long count=boardRepository.count();
+		 boardService.getBoard(Optional.of(board.getId()));
+		 boardService.getBoard(Optional.of(board.getId()));
+		 assertEquals(count,boardRepository.count());
+		 boardRepository.delete(board);
+	 }
+
+	 @Test
+	 @DisplayName("Batch of moves, stops at the first illegal one")
+	 /**
+	  * TOP 6 (turn BOTTOM), BOTTOM 6 (turn TOP), BOTTOM 1 is illegal
+	  */
+	 public void TestBatch() {
+		 Board board=boardService.getBoard(Optional.empty());
+		 BatchResult result = boardService.applyGames(board.getId(), Arrays.asList(
+				 new Move(PlayerType.TOP, 6), new Move(PlayerType.BOTTOM, 6), new Move(PlayerType.BOTTOM, 1),
+				 new Move(PlayerType.TOP, 1)));
+		 assertEquals(2, result.getApplied());
+		 assertEquals(2, result.getFirstIllegalMove());
+		 board = boardService.retrieveBoard(board.getId());
+		 assertArrayEquals(board.getTopPlayerBoard(),new Integer[] { 7,7,7,7,7,0,1});
+		 assertArrayEquals(board.getBottomPlayerBoard(),new Integer[] { 7,7,7,7,7,0,1});
+		 assertEquals(board.getNextPlayer(),PlayerType.TOP);
+		 assertEquals(2, board.getMoves());
+		 boardRepository.delete(board);
+	 }
+
+	 @Test
+	 @DisplayName("Boards handed out after a move are copies, changing them leaves the cached board alone")
+	 public void TestMoveReturnsCopy() {
+		 Board board=boardService.getBoard(Optional.empty());
+		 Board moved = boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		 moved.getTopPlayerBoard()[0] = 99;
+		 moved.setNextPlayer(PlayerType.FINISHED);
+		 Board batched = boardService.applyGames(board.getId(), Arrays.asList(new Move(PlayerType.BOTTOM, 6))).getBoard();
+		 batched.getBottomPlayerBoard()[0] = 99;
+		 board = boardService.retrieveBoard(board.getId());
+		 assertArrayEquals(board.getTopPlayerBoard(),new Integer[] { 7,7,7,7,7,0,1});
+		 assertArrayEquals(board.getBottomPlayerBoard(),new Integer[] { 7,7,7,7,7,0,1});
+		 assertEquals(board.getNextPlayer(),PlayerType.TOP);
+		 boardRepository.delete(board);
+	 }
+
+	 @Test
+	 @DisplayName("Stored position hash follows the moves and matches a hash from scratch")
+	 public void TestPositionHash() {
+		 Board board=boardService.getBoard(Optional.empty());
+		 boardService.applyGame(board.getId(), PlayerType.TOP, 6);
+		 boardService.applyGame(board.getId(), PlayerType.BOTTOM, 2);
+		 board = boardService.retrieveBoard(board.getId());
+		 Position position = boardService.retrievePosition(board.getId());
+		 assertEquals(board.getPositionHash(), position.getHash());
+		 assertEquals(MancalaEngine.STANDARD.zobrist().hash(position.getPits(), PlayerType.TOP.ordinal()),
+				 position.getHash());
+		 boardRepository.delete(board);
+	 }
+
+	 @Test
+	 @DisplayName("Boards created in bulk are new games with their own ids")
+	 public void TestNewBoards() {
+		 List<Board> boards = boardService.retriveNewBoards(120);
+		 assertEquals(120, boards.size());
+		 assertEquals(120, boards.stream().map(Board::getId).distinct().count());
+		 for (Board board : boards) {
+			 assertEquals(PlayerType.TOP, boardService.retrieveBoard(board.getId()).getNextPlayer());
+			 assertArrayEquals(board.getBottomPlayerBoard(),new Integer[] { 6,6,6,6,6,6,0});
+		 }
+		 boardService.applyGame(boards.get(7).getId(), PlayerType.TOP, 6);
+		 assertEquals(PlayerType.BOTTOM, boardService.retrieveBoard(boards.get(7).getId()).getNextPlayer());
+		 assertTrue(boardService.retriveNewBoards(0).isEmpty());
+		 boardRepository.deleteAll(boards);
+	 }
+
 }
@@ -0,0 +1,70 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.InvalidParameterException;
+import java.util.Optional;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class GameMetricsTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private double rejected(final String reason) {
+		return meterRegistry.counter("mancala.moves.rejected", "reason", reason).count();
+	}
+
+	@Test
+	@DisplayName("Phases, results and rejections are measured and exported to Prometheus")
+	public void TestMetrics() throws Exception {
+		final double extraTurns = meterRegistry.counter("mancala.moves.extra.turns").count();
+		final double wrongPlayer = rejected("wrong_player");
+		final double emptyHouse = rejected("empty_house");
+		final long moves = meterRegistry.timer("mancala.apply.phase", "phase", "move").count();
+
+		final Board board = boardService.getBoard(Optional.empty());
+		// 6 stones from house 1 end in the store
+		boardService.applyGame(board.getId(), PlayerType.TOP, 1);
+		assertThrows(InvalidParameterException.class, () -> boardService.applyGame(board.getId(), PlayerType.BOTTOM, 1));
+		assertThrows(InvalidParameterException.class, () -> boardService.applyGame(board.getId(), PlayerType.TOP, 1));
+
+		assertEquals(extraTurns + 1, meterRegistry.counter("mancala.moves.extra.turns").count());
+		assertEquals(wrongPlayer + 1, rejected("wrong_player"));
+		assertEquals(emptyHouse + 1, rejected("empty_house"));
+		assertEquals(moves + 1, meterRegistry.timer("mancala.apply.phase", "phase", "move").count());
+		assertTrue(meterRegistry.get("mancala.boards.active").gauge().value() > 0);
+
+		mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isOk())
+				.andExpect(content().string(Matchers.containsString("mancala_apply_seconds_bucket")))
+				.andExpect(content().string(Matchers.containsString("mancala_apply_phase_seconds_bucket{phase=\"save\"")))
+				.andExpect(content().string(Matchers.containsString("mancala_moves_rejected_total{reason=\"wrong_player\"")));
+	}
+}
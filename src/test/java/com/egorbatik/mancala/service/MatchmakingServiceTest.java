@@ -0,0 +1,131 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.egorbatik.mancala.model.PlayerType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = { "LOBBY_TICKET_TTL_MS=1000", "LOBBY_RESULT_TTL_MS=500", "LOBBY_SWEEP_MS=3600000" })
+public class MatchmakingServiceTest {
+
+	private static final int THREADS = 8;
+	private static final int JOINS = 1000;
+
+	@Autowired
+	private MatchmakingService matchmakingService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	@DisplayName("Players joining from many threads are all paired once, one TOP and one BOTTOM per board")
+	public void TestConcurrentPairing() throws Exception {
+		final long timed = meterRegistry.get("mancala.lobby.time.to.match").timer().count();
+		final ExecutorService players = Executors.newFixedThreadPool(THREADS);
+		final List<Future<List<LobbyTicket>>> joined = new ArrayList<>();
+		try {
+			for (int t = 0; t < THREADS; t++) {
+				joined.add(players.submit(() -> {
+					final List<LobbyTicket> tickets = new ArrayList<>();
+					for (int i = 0; i < JOINS; i++) {
+						tickets.add(matchmakingService.join(null));
+					}
+					return tickets;
+				}));
+			}
+
+			final Map<Long, List<PlayerType>> boards = new HashMap<>();
+			for (Future<List<LobbyTicket>> future : joined) {
+				for (LobbyTicket ticket : future.get()) {
+					ticket.getResult().get(10, TimeUnit.SECONDS);
+					assertEquals(LobbyTicket.Status.MATCHED, ticket.getStatus());
+					boards.computeIfAbsent(ticket.getBoardId(), id -> new ArrayList<>()).add(ticket.getPlayer());
+				}
+			}
+			assertEquals(THREADS * JOINS / 2, boards.size());
+			boards.values().forEach(pair -> {
+				assertEquals(2, pair.size());
+				assertNotEquals(pair.get(0), pair.get(1));
+			});
+			assertEquals(0, matchmakingService.getWaiting());
+			assertEquals(timed + THREADS * JOINS, meterRegistry.get("mancala.lobby.time.to.match").timer().count());
+		} finally {
+			players.shutdownNow();
+		}
+	}
+
+	@Test
+	@DisplayName("Only players of the same rating band meet, cancelled and expired ones never do")
+	public void TestBandsCancelAndExpiry() throws Exception {
+		final LobbyTicket strong = matchmakingService.join(1500);
+		final LobbyTicket weak = matchmakingService.join(100);
+		assertEquals(LobbyTicket.Status.WAITING, strong.getStatus());
+		assertEquals(LobbyTicket.Status.WAITING, weak.getStatus());
+		assertThrows(IllegalArgumentException.class, () -> matchmakingService.join(-1));
+
+		matchmakingService.cancel(weak.getId());
+		assertEquals(LobbyTicket.Status.CANCELLED, weak.getResult().get().getStatus());
+		assertEquals(LobbyTicket.Status.WAITING, matchmakingService.join(150).getStatus());
+
+		final LobbyTicket other = matchmakingService.join(1550);
+		assertEquals(LobbyTicket.Status.MATCHED, other.getStatus());
+		assertEquals(PlayerType.TOP, strong.getPlayer());
+		assertEquals(PlayerType.BOTTOM, other.getPlayer());
+		assertEquals(strong.getBoardId(), other.getBoardId());
+		assertThrows(InvalidParameterException.class, () -> matchmakingService.cancel(strong.getId()));
+
+		final LobbyTicket alone = matchmakingService.join(3000);
+		Thread.sleep(1100);
+		matchmakingService.sweep();
+		assertEquals(LobbyTicket.Status.EXPIRED, alone.getStatus());
+		final LobbyTicket late = matchmakingService.join(3000);
+		assertEquals(LobbyTicket.Status.WAITING, late.getStatus());
+		matchmakingService.cancel(late.getId());
+		assertEquals(0, matchmakingService.getWaiting());
+	}
+
+	@Test
+	@DisplayName("Finished tickets are kept for LOBBY_RESULT_TTL_MS, waiting ones until they expire")
+	public void TestResultRetention() throws Exception {
+		final LobbyTicket first = matchmakingService.join(5000);
+		final LobbyTicket second = matchmakingService.join(5000);
+		final LobbyTicket waiting = matchmakingService.join(7000);
+		assertEquals(LobbyTicket.Status.MATCHED, second.getStatus());
+		matchmakingService.sweep();
+		assertEquals(first, matchmakingService.ticket(first.getId()));
+
+		Thread.sleep(600);
+		matchmakingService.sweep();
+		assertThrows(NoSuchElementException.class, () -> matchmakingService.ticket(first.getId()));
+		assertThrows(NoSuchElementException.class, () -> matchmakingService.ticket(second.getId()));
+		assertEquals(LobbyTicket.Status.WAITING, matchmakingService.ticket(waiting.getId()).getStatus());
+
+		Thread.sleep(500);
+		matchmakingService.sweep();
+		assertEquals(LobbyTicket.Status.EXPIRED, waiting.getStatus());
+		assertEquals(waiting, matchmakingService.ticket(waiting.getId()));
+		Thread.sleep(600);
+		matchmakingService.sweep();
+		assertThrows(NoSuchElementException.class, () -> matchmakingService.ticket(waiting.getId()));
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.MoveLog;
+import com.egorbatik.mancala.repository.BoardRepository;
+import com.egorbatik.mancala.repository.CachedBoardRepository;
+import com.egorbatik.mancala.repository.MoveLogRepository;
+
+@SpringBootTest(properties = { "BOARD_SNAPSHOT_MOVES=4", "BOARD_CACHE_IDLE_MS=0",
+		"BOARD_CACHE_FLUSH_MS=3600000", "MOVE_LOG_FLUSH_MS=3600000" })
+public class MoveJournalTest {
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private MoveJournal moveJournal;
+
+	@Autowired
+	private CachedBoardRepository cachedBoardRepository;
+
+	@Autowired
+	private MoveLogRepository moveLogRepository;
+
+	@Autowired
+	@Qualifier("boardRepository")
+	private BoardRepository jpaBoardRepository; // Bypasses the cache
+
+	// First non empty house of the next player
+	private Board playFirstHouse(final Board board) {
+		final Integer[] half = board.getNextPlayer().ordinal() == 0 ? board.getTopPlayerBoard()
+				: board.getBottomPlayerBoard();
+		int house = 0;
+		while (half[house] == 0) {
+			house++;
+		}
+		return boardService.applyGame(board.getId(), board.getNextPlayer(), house + 1);
+	}
+
+	// Flushes and drops every cached board
+	private void evictAll() throws InterruptedException {
+		Thread.sleep(5);
+		cachedBoardRepository.flush();
+	}
+
+	@Test
+	@DisplayName("Board rebuilt from the last snapshot plus the logged moves")
+	public void TestReplay() throws Exception {
+		Board board = boardService.getBoard(Optional.empty());
+		for (int i = 0; i < 4; i++) {
+			board = playFirstHouse(board);
+		}
+		evictAll();
+		assertEquals(4, jpaBoardRepository.findById(board.getId()).get().getMoves());
+
+		// Below the next snapshot, only logged
+		board = boardService.retrieveBoard(board.getId());
+		board = playFirstHouse(board);
+		board = playFirstHouse(board);
+		final Integer[] top = board.getTopPlayerBoard().clone();
+		final Integer[] bottom = board.getBottomPlayerBoard().clone();
+		evictAll();
+		assertEquals(4, jpaBoardRepository.findById(board.getId()).get().getMoves());
+
+		final Board rebuilt = boardService.retrieveBoard(board.getId());
+		assertNotSame(board, rebuilt);
+		assertEquals(6, rebuilt.getMoves());
+		assertArrayEquals(top, rebuilt.getTopPlayerBoard());
+		assertArrayEquals(bottom, rebuilt.getBottomPlayerBoard());
+		assertEquals(board.getNextPlayer(), rebuilt.getNextPlayer());
+		assertEquals(board.getPositionHash(), rebuilt.getPositionHash());
+
+		final List<MoveLog> log = moveJournal.tail(board.getId(), 0);
+		assertEquals(6, log.size());
+		for (int i = 0; i < log.size(); i++) {
+			assertEquals(i + 1, log.get(i).getSeq());
+		}
+		cachedBoardRepository.delete(rebuilt);
+	}
+
+	@Test
+	@DisplayName("An illegal logged move stops the replay there, the board stays readable")
+	public void TestCorruptedLog() throws Exception {
+		Board board = boardService.getBoard(Optional.empty());
+		for (int i = 0; i < 5; i++) {
+			board = playFirstHouse(board);
+		}
+		final Integer[] top = board.getTopPlayerBoard().clone();
+		final Integer[] bottom = board.getBottomPlayerBoard().clone();
+		moveJournal.flush();
+		// A house that doesn't exist, then a move after it
+		moveLogRepository.save(new MoveLog(board.getId(), 6, board.getNextPlayer(), 7));
+		moveLogRepository.save(new MoveLog(board.getId(), 7, board.getNextPlayer(), 1));
+		evictAll();
+
+		for (int i = 0; i < 2; i++) {
+			final Board rebuilt = boardService.retrieveBoard(board.getId());
+			assertEquals(5, rebuilt.getMoves());
+			assertArrayEquals(top, rebuilt.getTopPlayerBoard());
+			assertArrayEquals(bottom, rebuilt.getBottomPlayerBoard());
+			assertEquals(board.getNextPlayer(), rebuilt.getNextPlayer());
+		}
+		cachedBoardRepository.delete(board);
+	}
+
+	@Test
+	@DisplayName("Moves of a failed flush stay queued and are written by the next one")
+	public void TestFailedFlush() throws Exception {
+		Board board = boardService.getBoard(Optional.empty());
+		moveJournal.flush();
+		board = playFirstHouse(board);
+		board = playFirstHouse(board);
+		assertEquals(2, moveJournal.getPending());
+
+		final MoveLogRepository down = mock(MoveLogRepository.class, delegatesTo(moveLogRepository));
+		doThrow(new DataAccessResourceFailureException("Database down")).when(down).saveAll(any());
+		final Object journal = AopTestUtils.getTargetObject(moveJournal);
+		ReflectionTestUtils.setField(journal, "moveLogRepository", down);
+		try {
+			assertThrows(DataAccessResourceFailureException.class, moveJournal::flush);
+			assertEquals(2, moveJournal.getPending());
+			board = playFirstHouse(board);
+			assertEquals(3, moveJournal.getPending());
+		} finally {
+			ReflectionTestUtils.setField(journal, "moveLogRepository", moveLogRepository);
+		}
+
+		final List<MoveLog> log = moveJournal.tail(board.getId(), 0);
+		assertEquals(0, moveJournal.getPending());
+		assertEquals(3, log.size());
+		for (int i = 0; i < log.size(); i++) {
+			assertEquals(i + 1, log.get(i).getSeq());
+		}
+		cachedBoardRepository.delete(board);
+	}
+}
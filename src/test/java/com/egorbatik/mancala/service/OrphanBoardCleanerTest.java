@@ -0,0 +1,48 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.egorbatik.mancala.model.Board;
+import com.egorbatik.mancala.model.PlayerType;
+import com.egorbatik.mancala.repository.BoardRepository;
+
+@SpringBootTest
+public class OrphanBoardCleanerTest {
+
+	@Autowired
+	private BoardService boardService;
+
+	@Autowired
+	private BoardRepository boardRepository;
+
+	@Autowired
+	private OrphanBoardCleaner orphanBoardCleaner;
+
+	@Test
+	@DisplayName("Old boards without moves are reclaimed, played ones are kept")
+	public void TestCleanup() {
+		final Board orphan = boardService.getBoard(Optional.empty());
+		orphan.setLastUpdate(0L);
+		boardRepository.save(orphan);
+
+		Board played = boardService.getBoard(Optional.empty());
+		played = boardService.applyGame(played.getId(), PlayerType.TOP, 1);
+		played.setLastUpdate(0L);
+		boardRepository.save(played);
+
+		final long before = orphanBoardCleaner.getReclaimed();
+		assertTrue(orphanBoardCleaner.cleanup() >= 1);
+		assertTrue(orphanBoardCleaner.getReclaimed() > before);
+		assertFalse(boardRepository.findById(orphan.getId()).isPresent());
+		assertTrue(boardRepository.findById(played.getId()).isPresent());
+		boardRepository.delete(played);
+	}
+}
@@ -0,0 +1,151 @@
+package com.egorbatik.mancala.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.egorbatik.mancala.simulation.Policy;
+
+@SpringBootTest(properties = { "TOURNAMENT_THREADS=4", "TOURNAMENT_QUEUE=4" })
+public class TournamentServiceTest {
+
+	@Autowired
+	private TournamentService tournamentService;
+
+	private static List<TournamentPlayer> players(final String... policies) {
+		final List<TournamentPlayer> players = new ArrayList<>();
+		for (int i = 0; i < policies.length; i++) {
+			players.add(new TournamentPlayer("bot" + i, policies[i], null));
+		}
+		return players;
+	}
+
+	private static double sum(final List<Standing> standings, final ToDoubleFunction<Standing> f) {
+		return standings.stream().mapToDouble(f).sum();
+	}
+
+	@Test
+	@DisplayName("A double round robin meets every pair twice, once with each color")
+	public void TestRoundRobinPairings() {
+		final List<Tournament.Entrant> entrants = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			entrants.add(new Tournament.Entrant("bot" + i, "RANDOM", Policy.random(), 1500));
+		}
+		final List<int[]> pairings = new Tournament(0, Tournament.Format.ROUND_ROBIN, 2, entrants).roundRobin();
+		assertEquals(20, pairings.size());
+		final Map<String, Integer> games = new HashMap<>();
+		pairings.forEach(pair -> {
+			assertNotEquals(pair[0], pair[1]);
+			games.merge(pair[0] + "-" + pair[1], 1, Integer::sum);
+		});
+		assertEquals(20, games.size());
+	}
+
+	@Test
+	@DisplayName("Every game of a round robin is played and rated, the standings stay consistent while it runs")
+	public void TestRoundRobin() throws Exception {
+		final Tournament tournament = tournamentService.create(Tournament.Format.ROUND_ROBIN, 2,
+				players("random", "greedy", "random", "greedy", "ai:2", "random"));
+		while (!tournament.getResult().isDone()) {
+			// Each snapshot is taken after a whole game
+			final List<Standing> standings = tournament.getStandings();
+			final double games = sum(standings, Standing::getGames);
+			assertEquals(games / 2, sum(standings, Standing::getPoints), 1e-9);
+			assertEquals(6 * 1500, sum(standings, Standing::getRating), 1e-6);
+		}
+		tournament.getResult().get(60, TimeUnit.SECONDS);
+
+		assertEquals(Tournament.Status.FINISHED, tournament.getStatus());
+		assertEquals(30, tournament.getScheduled());
+		assertEquals(30, tournament.getFinished());
+		assertEquals(0, tournament.getFailed());
+		final List<Standing> standings = tournament.getStandings();
+		assertEquals(6, standings.size());
+		standings.forEach(standing -> {
+			assertEquals(10, standing.getGames());
+			assertEquals(10, standing.getWins() + standing.getDraws() + standing.getLosses());
+		});
+		assertEquals(30, sum(standings, Standing::getPoints), 1e-9);
+		assertEquals(6 * 1500, sum(standings, Standing::getRating), 1e-6);
+		for (int i = 1; i < standings.size(); i++) {
+			assertTrue(standings.get(i - 1).getPoints() >= standings.get(i).getPoints());
+		}
+	}
+
+	@Test
+	@DisplayName("A long round robin only has the boards the pool can play soon")
+	public void TestBoardsInChunks() throws Exception {
+		final Tournament tournament = tournamentService.create(Tournament.Format.ROUND_ROBIN, 2,
+				players("random", "random", "random", "random", "random", "random", "random", "random"));
+		int active = 0;
+		while (!tournament.getResult().isDone()) {
+			active = Math.max(active, tournamentService.getActiveGames());
+		}
+		assertEquals(56, tournament.getFinished());
+		// Playing, queued and the one waiting for a queue slot
+		assertTrue(active <= 4 + 4 + 1, "active " + active);
+	}
+
+	@Test
+	@DisplayName("A Swiss tournament plays round after round, a different bye each time")
+	public void TestSwiss() throws Exception {
+		final List<TournamentPlayer> players = players("greedy", "random", "greedy", "random", "random");
+		players.get(0).setRating(1800.0);
+		final Tournament tournament = tournamentService.create(Tournament.Format.SWISS, 4, players);
+		tournament.getResult().get(60, TimeUnit.SECONDS);
+
+		assertEquals(Tournament.Status.FINISHED, tournament.getStatus());
+		assertEquals(4, tournament.getRound());
+		assertEquals(8, tournament.getFinished());
+		final List<Standing> standings = tournament.getStandings();
+		// Two games and a bye a round, only one player never rests
+		assertEquals(16, sum(standings, Standing::getGames), 1e-9);
+		assertEquals(1, standings.stream().filter(standing -> standing.getGames() == 4).count());
+		assertEquals(12, sum(standings, Standing::getPoints), 1e-9);
+		assertEquals(4 * 1500 + 1800, sum(standings, Standing::getRating), 1e-6);
+		assertEquals(tournament, tournamentService.tournament(tournament.getId()));
+	}
+
+	@Test
+	@DisplayName("Standings are read without the lock the games record their results under")
+	public void TestStandingsDontBlock() throws Exception {
+		final Tournament tournament = tournamentService.create(Tournament.Format.ROUND_ROBIN, 1,
+				players("random", "random"));
+		synchronized (tournament) {
+			assertEquals(2, CompletableFuture.supplyAsync(tournament::getStandings).get(1, TimeUnit.SECONDS).size());
+		}
+		tournament.getResult().get(60, TimeUnit.SECONDS);
+		assertEquals(1, tournament.getFinished());
+	}
+
+	@Test
+	@DisplayName("Tournaments without enough or with repeated players, unknown policies or ids")
+	public void TestErrors() {
+		assertThrows(IllegalArgumentException.class,
+				() -> tournamentService.create(Tournament.Format.SWISS, 3, players("random")));
+		assertThrows(IllegalArgumentException.class, () -> tournamentService.create(Tournament.Format.SWISS, 3,
+				Arrays.asList(new TournamentPlayer("a", "random", null), new TournamentPlayer("a", "greedy", null))));
+		assertThrows(IllegalArgumentException.class,
+				() -> tournamentService.create(Tournament.Format.SWISS, 3, players("random", "chess")));
+		assertThrows(IllegalArgumentException.class,
+				() -> tournamentService.create(Tournament.Format.ROUND_ROBIN, 0, players("random", "random")));
+		assertThrows(NoSuchElementException.class, () -> tournamentService.tournament(-1L));
+	}
+
+}
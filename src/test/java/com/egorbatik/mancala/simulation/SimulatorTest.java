@@ -0,0 +1,75 @@
+package com.egorbatik.mancala.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.egorbatik.mancala.engine.MancalaEngine;
+
+public class SimulatorTest {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	private final Simulator simulator = new Simulator(POOL);
+
+	@AfterAll
+	public static void shutdown() {
+		POOL.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Random against greedy, every game scored and no rule broken")
+	public void TestRandomAgainstGreedy() {
+		final SimulationReport report = simulator.run(MancalaEngine.STANDARD, 6, Policy.random(), Policy.greedy(),
+				5000, 1);
+		assertEquals(0, report.getViolations());
+		assertEquals(5000, report.getTopWins() + report.getBottomWins() + report.getDraws());
+		assertTrue(report.getBottomWins() > report.getTopWins());
+		assertTrue(report.getAverageLength() > 10);
+		assertTrue(report.getLongestGame() >= report.getAverageLength());
+	}
+
+	@Test
+	@DisplayName("Same seed, same result, whatever the pool")
+	public void TestReproducible() {
+		final MancalaEngine engine = MancalaEngine.forHouses(8);
+		final SimulationReport first = simulator.run(engine, 20, Policy.random(), Policy.random(), 2000, 7);
+		final SimulationReport second = new Simulator(new ForkJoinPool(1)).run(engine, 20, Policy.random(),
+				Policy.random(), 2000, 7);
+		assertEquals(first.getTopWins(), second.getTopWins());
+		assertEquals(first.getMoves(), second.getMoves());
+		assertEquals(0, first.getViolations());
+	}
+
+	@Test
+	@DisplayName("The computer beats the random player")
+	public void TestComputer() {
+		final SimulationReport report = simulator.run(MancalaEngine.STANDARD, 4, Policy.random(), Policy.of("ai:3"),
+				50, 3);
+		assertEquals(0, report.getViolations());
+		assertTrue(report.getBottomWins() > 40);
+		assertThrows(IllegalArgumentException.class, () -> Policy.of("minimax"));
+	}
+
+	@Test
+	@DisplayName("An illegal choice counts as a violation")
+	public void TestViolation() {
+		final SimulationReport report = simulator.run(MancalaEngine.STANDARD, 6, (position, random) -> 99,
+				Policy.random(), 10, 1);
+		assertEquals(10, report.getViolations());
+		assertEquals(0, report.getAverageLength(), 1e-9);
+	}
+
+	@Test
+	@DisplayName("Broken games don't shorten the average length")
+	public void TestAverageLength() {
+		final SimulationReport report = new SimulationReport(10, 4, 3, 1, 240, 40, 2, 1);
+		assertEquals(30, report.getAverageLength(), 1e-9);
+	}
+}